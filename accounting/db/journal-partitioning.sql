@@ -0,0 +1,132 @@
+-- Range partitions the journal by month of transaction_date.
+--
+-- Run once, on new databases too (after the DDL in the root README). The existing table is
+-- renamed to journal_unpartitioned, a partitioned journal with the same columns is created
+-- with one partition per month from the oldest entry through three months ahead, and the
+-- rows are copied over. Stop the accounting service first: the copy rewrites the whole
+-- journal in one transaction. The old table is kept until you drop it.
+--
+-- Primary keys and unique constraints of a partitioned table must include the partition
+-- key. The primary key becomes (id, transaction_date); ids still come from journal_id_seq.
+-- journal_entry_number stays unique across partitions through the journal_entry_number_registry
+-- table, kept in sync by a trigger.
+
+BEGIN;
+
+LOCK TABLE journal IN ACCESS EXCLUSIVE MODE;
+
+ALTER TABLE journal RENAME TO journal_unpartitioned;
+ALTER TABLE journal_unpartitioned RENAME CONSTRAINT journal_pkey TO journal_unpartitioned_pkey;
+ALTER TABLE journal_unpartitioned RENAME CONSTRAINT journal_journal_entry_number_key TO journal_unpartitioned_journal_entry_number_key;
+ALTER INDEX IF EXISTS idx_journal_posted_date RENAME TO idx_journal_unpartitioned_posted_date;
+-- Otherwise the sequence would be dropped with the old table
+ALTER SEQUENCE journal_id_seq OWNED BY NONE;
+
+CREATE TABLE journal (
+    id INTEGER NOT NULL DEFAULT nextval('journal_id_seq'),
+    journal_entry_number VARCHAR(20) NOT NULL,
+    transaction_date DATE NOT NULL,
+    posting_date DATE DEFAULT CURRENT_DATE,
+    account_code VARCHAR(20) NOT NULL,
+    account_name VARCHAR(255) NOT NULL,
+    description TEXT NOT NULL,
+    reference_number VARCHAR(50),
+    debit_amount DECIMAL(15,2) DEFAULT 0.00,
+    credit_amount DECIMAL(15,2) DEFAULT 0.00,
+    balance_type CHAR(1) CHECK (balance_type IN ('D', 'C')),
+    department VARCHAR(100),
+    cost_center VARCHAR(50),
+    project_code VARCHAR(50),
+    currency_code CHAR(3) DEFAULT 'USD',
+    exchange_rate DECIMAL(10,6) DEFAULT 1.000000,
+    source_document VARCHAR(100),
+    created_by VARCHAR(100) NOT NULL,
+    approved_by VARCHAR(100),
+    approval_date TIMESTAMP,
+    status VARCHAR(20) DEFAULT 'draft' CHECK (status IN ('draft', 'posted', 'reversed')),
+    reversed_by_entry VARCHAR(20),
+    notes TEXT,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, transaction_date),
+    CONSTRAINT chk_not_both_debit_credit CHECK (NOT (debit_amount > 0 AND credit_amount > 0))
+) PARTITION BY RANGE (transaction_date);
+ALTER SEQUENCE journal_id_seq OWNED BY journal.id;
+
+-- Declared on the parent, created on every partition (including future ones)
+CREATE INDEX idx_journal_entry_number ON journal (journal_entry_number);
+CREATE INDEX idx_journal_date_status ON journal (transaction_date, status);
+CREATE INDEX idx_journal_account_date ON journal (account_code, transaction_date);
+-- Covering index for the per-month GROUP BY of trial balances (index-only scans of booked entries;
+-- reversed entries stay booked, offset by their reversal)
+CREATE INDEX idx_journal_posted_date ON journal (transaction_date, account_code)
+    INCLUDE (account_name, debit_amount, credit_amount) WHERE status IN ('posted', 'reversed');
+
+-- One row per journal entry number; its primary key rejects duplicates across partitions
+CREATE TABLE journal_entry_number_registry (
+    journal_entry_number VARCHAR(20) PRIMARY KEY,
+    transaction_date DATE NOT NULL
+);
+
+CREATE FUNCTION journal_entry_number_sync() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO journal_entry_number_registry VALUES (NEW.journal_entry_number, NEW.transaction_date);
+    ELSIF TG_OP = 'UPDATE' THEN
+        IF NEW.journal_entry_number IS DISTINCT FROM OLD.journal_entry_number
+                OR NEW.transaction_date IS DISTINCT FROM OLD.transaction_date THEN
+            UPDATE journal_entry_number_registry
+            SET journal_entry_number = NEW.journal_entry_number, transaction_date = NEW.transaction_date
+            WHERE journal_entry_number = OLD.journal_entry_number;
+        END IF;
+    ELSE
+        DELETE FROM journal_entry_number_registry WHERE journal_entry_number = OLD.journal_entry_number;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- An update moving a row to another partition fires the delete and insert branches
+CREATE TRIGGER journal_entry_number_sync
+    AFTER INSERT OR UPDATE OF journal_entry_number, transaction_date OR DELETE ON journal
+    FOR EACH ROW EXECUTE FUNCTION journal_entry_number_sync();
+
+-- Catches entries dated outside the monthly partitions; the service keeps it empty by
+-- creating partitions ahead of time (a month cannot get its partition while
+-- journal_default holds rows of it)
+CREATE TABLE journal_default PARTITION OF journal DEFAULT;
+
+DO $$
+DECLARE
+    partition_start DATE;
+BEGIN
+    FOR partition_start IN
+        SELECT generate_series(
+                   date_trunc('month', LEAST(COALESCE(first_date, CURRENT_DATE), CURRENT_DATE)::timestamp),
+                   date_trunc('month', GREATEST(COALESCE(last_date, CURRENT_DATE), CURRENT_DATE + 92)::timestamp),
+                   INTERVAL '1 month')::date
+        FROM (SELECT MIN(transaction_date) AS first_date, MAX(transaction_date) AS last_date FROM journal_unpartitioned) bounds
+    LOOP
+        EXECUTE format('CREATE TABLE %I PARTITION OF journal FOR VALUES FROM (%L) TO (%L)',
+                       'journal_p' || to_char(partition_start, 'YYYY_MM'), partition_start,
+                       (partition_start + INTERVAL '1 month')::date);
+    END LOOP;
+END;
+$$;
+
+INSERT INTO journal (id, journal_entry_number, transaction_date, posting_date, account_code, account_name,
+                     description, reference_number, debit_amount, credit_amount, balance_type, department,
+                     cost_center, project_code, currency_code, exchange_rate, source_document, created_by,
+                     approved_by, approval_date, status, reversed_by_entry, notes, created_at, updated_at)
+SELECT id, journal_entry_number, transaction_date, posting_date, account_code, account_name,
+       description, reference_number, debit_amount, credit_amount, balance_type, department,
+       cost_center, project_code, currency_code, exchange_rate, source_document, created_by,
+       approved_by, approval_date, status, reversed_by_entry, notes, created_at, updated_at
+FROM journal_unpartitioned;
+
+COMMIT;
+
+ANALYZE journal;
+
+-- Once the service runs fine on the partitioned journal:
+-- DROP TABLE journal_unpartitioned;
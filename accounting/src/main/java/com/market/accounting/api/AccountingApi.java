@@ -1,15 +1,34 @@
 package com.market.accounting.api;
 
+import com.market.accounting.bl.AccountBalanceBl;
+import com.market.accounting.bl.AccountingPeriodBl;
 import com.market.accounting.bl.JournalBl;
+import com.market.accounting.bl.JournalExportBl;
+import com.market.accounting.bl.ReportBl;
+import com.market.accounting.dto.AccountBalanceDto;
+import com.market.accounting.dto.AccountingPeriodDto;
+import com.market.accounting.dto.BalanceVerificationDto;
+import com.market.accounting.dto.JournalBatchResponseDto;
 import com.market.accounting.dto.JournalDto;
+import com.market.accounting.dto.TrialBalanceDto;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Pageable;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/accounting")
@@ -18,6 +37,18 @@ public class AccountingApi {
     @Autowired
     private JournalBl journalService;
 
+    @Autowired
+    private AccountBalanceBl accountBalanceService;
+
+    @Autowired
+    private AccountingPeriodBl accountingPeriodService;
+
+    @Autowired
+    private ReportBl reportService;
+
+    @Autowired
+    private JournalExportBl journalExportService;
+
     @GetMapping("/health")
     public String health() {
         return "Accounting service is running";
@@ -29,6 +60,46 @@ public class AccountingApi {
         return ResponseEntity.ok(journals);
     }
 
+    /**
+     * Export the journal entries dated from..to (inclusive) as csv or ndjson
+     * Streamed from a database cursor while it is read; gzip-compressed when the client
+     * accepts it. A failure mid-export aborts the response, leaving it truncated.
+     */
+    @GetMapping("/journals/export")
+    public ResponseEntity<StreamingResponseBody> exportJournals(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                                @RequestParam(defaultValue = "csv") String format,
+                                                                @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        try {
+            JournalExportBl.Format exportFormat = JournalExportBl.Format.parse(format);
+            journalExportService.validateRange(from, to);
+            boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+
+            StreamingResponseBody body = out -> {
+                if (gzip) {
+                    // Sync flush: every flush of the export reaches the client
+                    GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024, true);
+                    journalExportService.export(from, to, exportFormat, compressed);
+                    compressed.finish();
+                } else {
+                    journalExportService.export(from, to, exportFormat, out);
+                }
+            };
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                            .filename("journal-" + from + "-" + to + "." + exportFormat.getExtension()).build().toString())
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (gzip) {
+                response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+            return response.body(body);
+        } catch (IllegalArgumentException e) {
+            // Unknown format, or from after to
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/journals/{id}")
     public ResponseEntity<JournalDto> getJournalById(@PathVariable Integer id) {
         JournalDto journal = journalService.getJournalEntryById(id);
@@ -40,19 +111,73 @@ public class AccountingApi {
 
     @PostMapping("/journals")
     public ResponseEntity<JournalDto> createJournal(@RequestBody JournalDto journalDto) {
-        JournalDto createdJournal = journalService.createJournalEntry(journalDto);
-        return ResponseEntity.ok(createdJournal);
+        try {
+            JournalDto createdJournal = journalService.createJournalEntry(journalDto);
+            return ResponseEntity.ok(createdJournal);
+        } catch (IllegalStateException e) {
+            // Dated in a closed period
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    /**
+     * Create many journal entries in one transaction
+     * Each entry gets its own result so callers can retry only the failures
+     */
+    @PostMapping("/journals/batch")
+    public ResponseEntity<JournalBatchResponseDto> createJournalBatch(@RequestBody List<JournalDto> journalDtos) {
+        try {
+            JournalBatchResponseDto response = journalService.createJournalEntries(journalDtos);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            // Empty or oversized batch
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     @PutMapping("/journals")
     public ResponseEntity<JournalDto> updateJournal(@RequestBody JournalDto journalDto) {
-        JournalDto updatedJournal = journalService.updateJournalEntry(journalDto);
-        if (updatedJournal != null) {
-            return ResponseEntity.ok(updatedJournal);
+        try {
+            JournalDto updatedJournal = journalService.updateJournalEntry(journalDto);
+            if (updatedJournal != null) {
+                return ResponseEntity.ok(updatedJournal);
+            }
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            // Moves into or out of a closed period, or the entry is reversed
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    /**
+     * Reverse a posted journal entry: books an offsetting entry dated date (default today)
+     * and marks the original reversed. Returns the reversal; repeating the call returns
+     * the same reversal
+     */
+    @PostMapping("/journals/{id}/reverse")
+    public ResponseEntity<JournalDto> reverseJournal(@PathVariable Integer id,
+                                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date,
+                                                     @RequestParam(required = false) String reversedBy) {
+        try {
+            JournalDto reversal = journalService.reverseJournalEntry(id, date, reversedBy);
+            if (reversal != null) {
+                return ResponseEntity.ok(reversal);
+            }
+            return ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            // Dated before the entry it reverses
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            // A draft, or the reversal date is in a closed period
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
-        return ResponseEntity.notFound().build();
     }
 
+    /**
+     * Delete a draft journal entry; posted entries must be reversed
+     */
     @DeleteMapping("/journals/{id}")
     public ResponseEntity<Void> deleteJournal(@PathVariable Integer id) {
         try {
@@ -62,7 +187,80 @@ public class AccountingApi {
             }
             return ResponseEntity.notFound().build();
         } catch (IllegalStateException e) {
-            // Entry is not in a state that allows deletion (e.g., not draft)
+            // Not a draft, or its period is closed
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Balances of all accounts with posted entries, read from the account_balance table
+     */
+    @GetMapping("/balances")
+    public ResponseEntity<List<AccountBalanceDto>> getBalances() {
+        return ResponseEntity.ok(accountBalanceService.getBalances());
+    }
+
+    /**
+     * Balance of one account: a primary key lookup, independent of the journal size
+     */
+    @GetMapping("/balances/{accountCode}")
+    public ResponseEntity<AccountBalanceDto> getBalance(@PathVariable String accountCode) {
+        AccountBalanceDto balance = accountBalanceService.getBalance(accountCode);
+        if (balance != null) {
+            return ResponseEntity.ok(balance);
+        }
+        return ResponseEntity.notFound().build();
+    }
+
+    /**
+     * Recompute the balances from the posted journal entries and report the accounts that
+     * differ; with rebuild=true the balance table is rebuilt when any account differs
+     */
+    @PostMapping("/balances/verify")
+    public ResponseEntity<BalanceVerificationDto> verifyBalances(@RequestParam(defaultValue = "false") boolean rebuild) {
+        try {
+            return ResponseEntity.ok(accountBalanceService.verify(rebuild));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    /**
+     * Trial balance: totals per account of the posted entries dated from..to (inclusive)
+     * Months are aggregated in parallel; closed months come from their frozen totals
+     */
+    @GetMapping("/reports/trial-balance")
+    public ResponseEntity<TrialBalanceDto> getTrialBalance(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                           @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            return ResponseEntity.ok(reportService.getTrialBalance(from, to));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/periods")
+    public ResponseEntity<List<AccountingPeriodDto>> getPeriods() {
+        return ResponseEntity.ok(accountingPeriodService.getPeriods());
+    }
+
+    /**
+     * Close a month (e.g. 2024-01): its entries can no longer be created, changed or deleted
+     */
+    @PostMapping("/periods/{period}/close")
+    public ResponseEntity<AccountingPeriodDto> closePeriod(@PathVariable String period,
+                                                           @RequestParam(required = false) String closedBy) {
+        try {
+            return ResponseEntity.ok(accountingPeriodService.closePeriod(YearMonth.parse(period), closedBy));
+        } catch (DateTimeException | IllegalArgumentException e) {
+            // Not a yyyy-MM month, or a month that has not ended
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            // Already closed
             return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -0,0 +1,200 @@
+package com.market.accounting.bl;
+
+import com.market.accounting.dto.AccountBalanceDto;
+import com.market.accounting.dto.BalanceMismatchDto;
+import com.market.accounting.dto.BalanceVerificationDto;
+import com.market.accounting.entity.AccountBalance;
+import com.market.accounting.entity.Journal;
+import com.market.accounting.repository.AccountBalanceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains account_balance, the running debit and credit totals of the posted (and
+ * reversed) journal entries of each account, so balances are read by primary key instead
+ * of summing the whole journal history of an account. Journal writes call post/replace in
+ * their own transaction; verify recomputes the totals from the journal and can rebuild them.
+ */
+@Service
+public class AccountBalanceBl {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountBalanceBl.class);
+
+    @Autowired
+    private AccountBalanceRepository accountBalanceRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Lets the nightly verification repair the table instead of only reporting mismatches
+    @Value("${accounting.balance.verify.rebuild:false}")
+    private boolean rebuildOnMismatch;
+
+    /**
+     * Adds the posted entries among journals to the balances of their accounts
+     * Must run in the transaction that writes the entries
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void post(Collection<Journal> journals) {
+        Map<String, Delta> deltas = new TreeMap<>();
+        journals.forEach(journal -> collect(deltas, journal, 1));
+        apply(deltas);
+    }
+
+    /**
+     * Replaces the contribution of an entry as it was (before) by the entry as it is now
+     * (after); covers changes of amounts, account and status
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void replace(Journal before, Journal after) {
+        Map<String, Delta> deltas = new TreeMap<>();
+        collect(deltas, before, -1);
+        collect(deltas, after, 1);
+        apply(deltas);
+    }
+
+    @Transactional(readOnly = true)
+    public AccountBalanceDto getBalance(String accountCode) {
+        return accountBalanceRepository.findById(accountCode).map(this::convertToDto).orElse(null);
+    }
+
+    @Transactional(readOnly = true)
+    public List<AccountBalanceDto> getBalances() {
+        return accountBalanceRepository.findAllByOrderByAccountCodeAsc().stream()
+                .map(this::convertToDto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Compares every stored balance with the totals recomputed from the posted journal
+     * entries (one full scan of the journal) and optionally rebuilds the table
+     * @param rebuild Rebuild account_balance from the journal when a mismatch is found
+     * @return The accounts checked and the mismatches found
+     */
+    public BalanceVerificationDto verify(boolean rebuild) {
+        List<Object[]> rows = accountBalanceRepository.compareWithJournal();
+        List<BalanceMismatchDto> mismatches = new ArrayList<>();
+        for (Object[] row : rows) {
+            BigDecimal storedDebit = decimal(row[1]);
+            BigDecimal storedCredit = decimal(row[2]);
+            long storedEntries = count(row[3]);
+            BigDecimal journalDebit = decimal(row[4]);
+            BigDecimal journalCredit = decimal(row[5]);
+            long journalEntries = count(row[6]);
+            if (storedDebit.compareTo(journalDebit) != 0 || storedCredit.compareTo(journalCredit) != 0
+                    || storedEntries != journalEntries) {
+                mismatches.add(new BalanceMismatchDto((String) row[0], storedDebit, storedCredit, storedEntries,
+                        journalDebit, journalCredit, journalEntries));
+            }
+        }
+        boolean rebuilt = false;
+        if (rebuild && !mismatches.isEmpty()) {
+            rebuild();
+            rebuilt = true;
+        }
+        return new BalanceVerificationDto(rows.size(), mismatches, rebuilt);
+    }
+
+    /**
+     * Recomputes account_balance from the posted journal entries in one transaction
+     * Journal writes wait for it; balance reads keep seeing the old totals until it commits
+     * @return The number of accounts with posted entries
+     */
+    public int rebuild() {
+        Integer accounts = new TransactionTemplate(transactionManager).execute(status -> {
+            accountBalanceRepository.lockForRebuild();
+            accountBalanceRepository.deleteAllBalances();
+            return accountBalanceRepository.insertBalancesFromJournal();
+        });
+        log.info("Account balances rebuilt from the journal: {} accounts", accounts);
+        return accounts != null ? accounts : 0;
+    }
+
+    // Nightly consistency check of the incrementally maintained balances
+    @Scheduled(cron = "${accounting.balance.verify-cron:0 30 3 * * *}")
+    public void verifyNightly() {
+        BalanceVerificationDto result = verify(rebuildOnMismatch);
+        if (result.getMismatches().isEmpty()) {
+            log.info("Account balances verified: {} accounts match the journal", result.getAccountsChecked());
+            return;
+        }
+        for (BalanceMismatchDto mismatch : result.getMismatches()) {
+            log.error("Account balance {} differs from the journal: stored D {} C {} ({} entries), journal D {} C {} ({} entries)",
+                    mismatch.getAccountCode(), mismatch.getStoredDebitTotal(), mismatch.getStoredCreditTotal(),
+                    mismatch.getStoredPostedEntries(), mismatch.getJournalDebitTotal(), mismatch.getJournalCreditTotal(),
+                    mismatch.getJournalPostedEntries());
+        }
+        log.error("{} account balances differ from the journal{}", result.getMismatches().size(),
+                result.isRebuilt() ? "; balances were rebuilt" : "");
+    }
+
+    private void collect(Map<String, Delta> deltas, Journal journal, int sign) {
+        if (journal == null || !journal.isBooked()) {
+            return;
+        }
+        Delta delta = deltas.computeIfAbsent(journal.getAccountCode(), code -> new Delta());
+        delta.accountName = journal.getAccountName();
+        delta.debit = delta.debit.add(amount(journal.getDebitAmount()).multiply(BigDecimal.valueOf(sign)));
+        delta.credit = delta.credit.add(amount(journal.getCreditAmount()).multiply(BigDecimal.valueOf(sign)));
+        delta.entries += sign;
+    }
+
+    // One upsert per account, in account code order so concurrent postings lock balance
+    // rows in the same order. Net zero changes (e.g. a posted entry whose description was
+    // edited) are skipped.
+    private void apply(Map<String, Delta> deltas) {
+        deltas.forEach((accountCode, delta) -> {
+            if (delta.entries != 0 || delta.debit.signum() != 0 || delta.credit.signum() != 0) {
+                accountBalanceRepository.addToBalance(accountCode, delta.accountName, delta.debit, delta.credit, delta.entries);
+            }
+        });
+    }
+
+    private AccountBalanceDto convertToDto(AccountBalance accountBalance) {
+        AccountBalanceDto dto = new AccountBalanceDto();
+        dto.setAccountCode(accountBalance.getAccountCode());
+        dto.setAccountName(accountBalance.getAccountName());
+        dto.setDebitTotal(accountBalance.getDebitTotal());
+        dto.setCreditTotal(accountBalance.getCreditTotal());
+        dto.setBalance(accountBalance.getDebitTotal().subtract(accountBalance.getCreditTotal()));
+        dto.setPostedEntries(accountBalance.getPostedEntries());
+        dto.setUpdatedAt(accountBalance.getUpdatedAt());
+        return dto;
+    }
+
+    private static BigDecimal amount(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    private static BigDecimal decimal(Object value) {
+        return value != null ? new BigDecimal(value.toString()) : BigDecimal.ZERO;
+    }
+
+    private static long count(Object value) {
+        return value != null ? ((Number) value).longValue() : 0;
+    }
+
+    // Net change of one account's totals within a transaction
+    private static final class Delta {
+        String accountName;
+        BigDecimal debit = BigDecimal.ZERO;
+        BigDecimal credit = BigDecimal.ZERO;
+        long entries;
+    }
+}
@@ -0,0 +1,110 @@
+package com.market.accounting.bl;
+
+import com.market.accounting.dto.AccountingPeriodDto;
+import com.market.accounting.entity.AccountingPeriod;
+import com.market.accounting.repository.AccountingPeriodRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Monthly accounting periods. Journal writes lock the periods of the dates they touch and
+ * are rejected in closed periods, so the totals frozen when a period is closed never go
+ * stale and trial balances can cache them permanently.
+ */
+@Service
+public class AccountingPeriodBl {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountingPeriodBl.class);
+
+    @Autowired
+    private AccountingPeriodRepository accountingPeriodRepository;
+
+    @Transactional(readOnly = true)
+    public List<AccountingPeriodDto> getPeriods() {
+        return accountingPeriodRepository.findAllByOrderByPeriodStartAsc().stream()
+                .map(this::convertToDto)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Closes a month that has ended and freezes its totals per account
+     * Waits for journal writes in flight in that month; later ones are rejected
+     * @param period The month to close
+     * @param closedBy Who closes it
+     * @return The closed period
+     * @throws IllegalArgumentException if the month has not ended yet
+     * @throws IllegalStateException if the period is already closed
+     */
+    @Transactional
+    public AccountingPeriodDto closePeriod(YearMonth period, String closedBy) {
+        if (!period.atEndOfMonth().isBefore(LocalDate.now())) {
+            throw new IllegalArgumentException("Period " + period + " has not ended yet.");
+        }
+        LocalDate periodStart = period.atDay(1);
+        accountingPeriodRepository.insertIfMissing(periodStart);
+        AccountingPeriod accountingPeriod = accountingPeriodRepository.lockByPeriodStart(periodStart).orElseThrow();
+        if (accountingPeriod.isClosed()) {
+            throw new IllegalStateException("Period " + period + " is already closed.");
+        }
+        accountingPeriod.setStatus(AccountingPeriod.Status.CLOSED);
+        accountingPeriod.setClosedAt(LocalDateTime.now());
+        accountingPeriod.setClosedBy(closedBy);
+        // Runs after the lock was granted, so it sees every journal write of the period
+        int accounts = accountingPeriodRepository.insertPeriodTotals(periodStart, period.atEndOfMonth());
+        log.info("Period {} closed by {}: totals of {} accounts frozen", period, closedBy, accounts);
+        return convertToDto(accountingPeriod);
+    }
+
+    /**
+     * Locks the periods of the given dates for the rest of the calling transaction
+     * @param dates Transaction dates of the journal entries being written
+     * @return The months among them that are closed
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public Set<YearMonth> lockPeriods(Collection<LocalDate> dates) {
+        Set<LocalDate> periodStarts = dates.stream()
+                .filter(Objects::nonNull)
+                .map(date -> date.withDayOfMonth(1))
+                .collect(Collectors.toCollection(TreeSet::new));
+        if (periodStarts.isEmpty()) {
+            return Set.of();
+        }
+        // Row locks need rows: a month's first entry creates its (open) period
+        periodStarts.forEach(accountingPeriodRepository::insertIfMissing);
+        return accountingPeriodRepository.lockPeriods(periodStarts).stream()
+                .filter(AccountingPeriod::isClosed)
+                .map(period -> YearMonth.from(period.getPeriodStart()))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Like lockPeriods, but throws when any of the dates falls in a closed period
+     * @throws IllegalStateException if a period is closed
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void requireOpen(Collection<LocalDate> dates) {
+        Set<YearMonth> closed = lockPeriods(dates);
+        if (!closed.isEmpty()) {
+            throw new IllegalStateException("Period " + closed.iterator().next() + " is closed.");
+        }
+    }
+
+    private AccountingPeriodDto convertToDto(AccountingPeriod period) {
+        return new AccountingPeriodDto(YearMonth.from(period.getPeriodStart()).toString(), period.getStatus().name(),
+                period.getClosedAt(), period.getClosedBy());
+    }
+}
@@ -1,16 +1,28 @@
 package com.market.accounting.bl;
 
+import com.market.accounting.dto.JournalBatchResponseDto;
+import com.market.accounting.dto.JournalBatchResultDto;
 import com.market.accounting.dto.JournalDto;
 import com.market.accounting.entity.Journal;
 import com.market.accounting.repository.JournalRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -19,6 +31,28 @@ public class JournalBl {
     @Autowired
     private JournalRepository journalRepository;
 
+    @Autowired
+    private AccountBalanceBl accountBalanceBl;
+
+    @Autowired
+    private AccountingPeriodBl accountingPeriodBl;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Must match hibernate.jdbc.batch_size so each flush sends full JDBC batches
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:500}")
+    private int jdbcBatchSize;
+
+    @Value("${accounting.journal.batch.max-entries:10000}")
+    private int maxBatchEntries;
+
+    // IN-list size used when checking which entry numbers already exist
+    private static final int LOOKUP_CHUNK_SIZE = 1000;
+
+    // Reversal entries are numbered REV<id of the reversed entry>
+    private static final String REVERSAL_NUMBER_PREFIX = "REV";
+
     public List<JournalDto> getAllJournalEntries(Pageable pageable) {
         Page<Journal> journalPage = journalRepository.findAll(pageable);
         return journalPage.getContent().stream()
@@ -36,39 +70,288 @@ public class JournalBl {
         return journal.map(this::convertToDto).orElse(null);
     }
 
+    @Transactional
     public JournalDto createJournalEntry(JournalDto journalDto) {
         // Validate accounting rules before saving
         validateJournalEntry(journalDto);
+        rejectReversedStatus(journalDto);
+        accountingPeriodBl.requireOpen(List.of(journalDto.getTransactionDate()));
+        // Makes a concurrent batch with this number see it as a duplicate
+        journalRepository.lockJournalEntryNumbers(List.of(journalDto.getJournalEntryNumber()));
         
         Journal journal = convertToEntity(journalDto);
+        // Always a new row: an id sent by the client must not overwrite an existing entry
+        journal.setId(null);
         Journal savedJournal = journalRepository.save(journal);
+        accountBalanceBl.post(List.of(savedJournal));
         return convertToDto(savedJournal);
     }
 
+    /**
+     * Creates many journal entries in a single transaction using JDBC batch inserts
+     * Each entry is validated on its own; invalid or duplicate entries are reported and skipped
+     * The entry numbers are locked before the duplicate check, so a number written by a
+     * concurrent request is reported as DUPLICATE once that request commits instead of
+     * failing the whole batch
+     * @param journalDtos The entries to create
+     * @return Per-entry results in request order
+     */
+    @Transactional
+    public JournalBatchResponseDto createJournalEntries(List<JournalDto> journalDtos) {
+        if (journalDtos == null || journalDtos.isEmpty()) {
+            throw new IllegalArgumentException("Journal batch must contain at least one entry.");
+        }
+        if (journalDtos.size() > maxBatchEntries) {
+            throw new IllegalArgumentException("Journal batch cannot contain more than " + maxBatchEntries + " entries.");
+        }
+
+        Set<String> numbers = journalDtos.stream()
+                .filter(dto -> dto != null && dto.getJournalEntryNumber() != null)
+                .map(JournalDto::getJournalEntryNumber)
+                .collect(Collectors.toSet());
+        if (!numbers.isEmpty()) {
+            journalRepository.lockJournalEntryNumbers(numbers);
+        }
+        Set<String> existingNumbers = findExistingJournalEntryNumbers(journalDtos);
+        Set<String> batchNumbers = new HashSet<>();
+        JournalBatchResultDto[] results = new JournalBatchResultDto[journalDtos.size()];
+        Map<Integer, Journal> accepted = new LinkedHashMap<>();
+
+        for (int i = 0; i < journalDtos.size(); i++) {
+            JournalDto journalDto = journalDtos.get(i);
+            String number = journalDto != null ? journalDto.getJournalEntryNumber() : null;
+            try {
+                if (journalDto == null) {
+                    throw new IllegalArgumentException("Journal entry cannot be null.");
+                }
+                validateJournalEntry(journalDto);
+                rejectReversedStatus(journalDto);
+                if (existingNumbers.contains(number) || !batchNumbers.add(number)) {
+                    results[i] = new JournalBatchResultDto(i, number, JournalBatchResultDto.Status.DUPLICATE, null,
+                            "Journal entry number already exists: " + number);
+                    continue;
+                }
+                Journal journal = convertToEntity(journalDto);
+                journal.setId(null);
+                accepted.put(i, journal);
+            } catch (IllegalArgumentException e) {
+                results[i] = new JournalBatchResultDto(i, number, JournalBatchResultDto.Status.REJECTED, null, e.getMessage());
+            }
+        }
+
+        // Entries dated in a closed period are rejected; the others hold their periods open
+        Set<YearMonth> closedPeriods = accountingPeriodBl.lockPeriods(
+                accepted.values().stream().map(Journal::getTransactionDate).collect(Collectors.toList()));
+        accepted.entrySet().removeIf(entry -> {
+            YearMonth period = YearMonth.from(entry.getValue().getTransactionDate());
+            if (!closedPeriods.contains(period)) {
+                return false;
+            }
+            results[entry.getKey()] = new JournalBatchResultDto(entry.getKey(), entry.getValue().getJournalEntryNumber(),
+                    JournalBatchResultDto.Status.REJECTED, null, "Period " + period + " is closed.");
+            return true;
+        });
+
+        // Persist in chunks: ids come from the pooled sequence, inserts go out as JDBC batches
+        int pending = 0;
+        for (Map.Entry<Integer, Journal> entry : accepted.entrySet()) {
+            entityManager.persist(entry.getValue());
+            if (++pending % jdbcBatchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        accountBalanceBl.post(accepted.values());
+
+        for (Map.Entry<Integer, Journal> entry : accepted.entrySet()) {
+            Journal journal = entry.getValue();
+            results[entry.getKey()] = new JournalBatchResultDto(entry.getKey(), journal.getJournalEntryNumber(),
+                    JournalBatchResultDto.Status.CREATED, journal.getId(), null);
+        }
+        return new JournalBatchResponseDto(List.of(results));
+    }
+
+    private Set<String> findExistingJournalEntryNumbers(List<JournalDto> journalDtos) {
+        List<String> numbers = journalDtos.stream()
+                .filter(dto -> dto != null && dto.getJournalEntryNumber() != null)
+                .map(JournalDto::getJournalEntryNumber)
+                .distinct()
+                .collect(Collectors.toList());
+        Set<String> existing = new HashSet<>();
+        for (int from = 0; from < numbers.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<String> chunk = numbers.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, numbers.size()));
+            existing.addAll(journalRepository.findExistingJournalEntryNumbers(chunk));
+        }
+        return existing;
+    }
+
+    @Transactional
     public JournalDto updateJournalEntry(JournalDto journalDto) {
-        if (journalDto.getId() != null && journalRepository.existsById(journalDto.getId())) {
+        Optional<Journal> existing = journalDto.getId() != null ? journalRepository.findById(journalDto.getId()) : Optional.empty();
+        if (existing.isPresent()) {
+            Journal current = existing.get();
+            // A status left out keeps the current one
+            if (journalDto.getStatus() == null) {
+                journalDto.setStatus(current.getStatus().name());
+            }
+            if (current.isBooked()) {
+                return updateBookedJournalEntry(current, journalDto);
+            }
             // Validate accounting rules before updating
             validateJournalEntry(journalDto);
-            
+            rejectReversedStatus(journalDto);
+
+            // The entry may neither leave nor enter a closed period
+            accountingPeriodBl.requireOpen(List.of(current.getTransactionDate(), journalDto.getTransactionDate()));
+            if (!current.getJournalEntryNumber().equals(journalDto.getJournalEntryNumber())) {
+                journalRepository.lockJournalEntryNumbers(List.of(journalDto.getJournalEntryNumber()));
+            }
+
+            // The managed entity is overwritten by save, keep what the balances were built from
+            Journal before = balanceSnapshot(existing.get());
             Journal journal = convertToEntity(journalDto);
             Journal savedJournal = journalRepository.save(journal);
+            accountBalanceBl.replace(before, savedJournal);
             return convertToDto(savedJournal);
         }
         return null;
     }
 
+    /**
+     * Posted and reversed entries are booked: their number, status, amounts, account and date
+     * are final and only corrected by reversal (the number also links a reversal to its
+     * original). The other fields are changed in place.
+     * @throws IllegalStateException if a final field changes or the period is closed
+     */
+    private JournalDto updateBookedJournalEntry(Journal current, JournalDto journalDto) {
+        validateJournalEntry(journalDto);
+        if (!current.getJournalEntryNumber().equals(journalDto.getJournalEntryNumber())
+                || !current.getStatus().name().equals(journalDto.getStatus())
+                || amount(current.getDebitAmount()).compareTo(amount(journalDto.getDebitAmount())) != 0
+                || amount(current.getCreditAmount()).compareTo(amount(journalDto.getCreditAmount())) != 0
+                || !current.getAccountCode().equals(journalDto.getAccountCode())
+                || !current.getTransactionDate().equals(journalDto.getTransactionDate())) {
+            throw new IllegalStateException("The number, status, amounts, account and date of a " + current.getStatus()
+                    + " journal entry cannot be changed; reverse it instead.");
+        }
+        accountingPeriodBl.requireOpen(List.of(current.getTransactionDate()));
+        current.setPostingDate(journalDto.getPostingDate());
+        current.setAccountName(journalDto.getAccountName());
+        current.setDescription(journalDto.getDescription());
+        current.setCreatedBy(journalDto.getCreatedBy());
+        return convertToDto(current);
+    }
+
+    /**
+     * Deletes a draft journal entry; posted entries are corrected by reversal instead
+     * @throws IllegalStateException if the entry is not a draft or its period is closed
+     */
+    @Transactional
     public boolean deleteJournalEntry(Integer id) {
-        if (journalRepository.existsById(id)) {
-            journalRepository.deleteById(id);
+        Optional<Journal> journal = journalRepository.findById(id);
+        if (journal.isPresent()) {
+            if (journal.get().getStatus() != Journal.Status.draft) {
+                throw new IllegalStateException("Only draft journal entries can be deleted; reverse posted entries instead.");
+            }
+            accountingPeriodBl.requireOpen(List.of(journal.get().getTransactionDate()));
+            // Drafts are not booked, the balances do not change
+            journalRepository.delete(journal.get());
             return true;
         }
         return false;
     }
 
+    /**
+     * Reverses a posted journal entry: creates an offsetting entry (debit and credit swapped)
+     * dated reversalDate and marks the original reversed, linked to it through
+     * reversedByEntry. Both are flushed together at commit, in one transaction. The original
+     * stays booked, so totals of its (possibly closed) period do not change; the reversal
+     * is booked in its own period, which must be open.
+     * Reversing an entry again returns its existing reversal, so callers can retry safely.
+     * @param id The entry to reverse
+     * @param reversalDate Transaction date of the reversal, today if null
+     * @param reversedBy Who reverses it, the creator of the original if null
+     * @return The reversal entry, or null if the entry does not exist
+     * @throws IllegalArgumentException if reversalDate is before the original's date
+     * @throws IllegalStateException if the entry is a draft or the reversal's period is closed
+     */
+    @Transactional
+    public JournalDto reverseJournalEntry(Integer id, LocalDate reversalDate, String reversedBy) {
+        Optional<Journal> found = journalRepository.lockById(id);
+        if (found.isEmpty()) {
+            return null;
+        }
+        Journal original = found.get();
+        if (original.isReversed() && original.getReversedByEntry() != null) {
+            Optional<Journal> reversal = journalRepository.findByJournalEntryNumber(original.getReversedByEntry());
+            if (reversal.isPresent()) {
+                return convertToDto(reversal.get());
+            }
+        }
+        if (!original.isPosted()) {
+            throw new IllegalStateException("Only posted journal entries can be reversed; delete drafts instead.");
+        }
+        LocalDate date = reversalDate != null ? reversalDate : LocalDate.now();
+        if (date.isBefore(original.getTransactionDate())) {
+            throw new IllegalArgumentException("Reversal date cannot be before the transaction date of the entry.");
+        }
+        accountingPeriodBl.requireOpen(List.of(date));
+
+        Journal reversal = createReversal(original, date,
+                reversedBy != null && !reversedBy.isBlank() ? reversedBy : original.getCreatedBy());
+        entityManager.persist(reversal);
+        original.reverse(reversal.getJournalEntryNumber());
+        accountBalanceBl.post(List.of(reversal));
+        return convertToDto(reversal);
+    }
+
+    // Offsetting entry of a posted one: same account and dimensions, debit and credit swapped
+    private Journal createReversal(Journal original, LocalDate date, String createdBy) {
+        // Ids are unique, so the number is too (and fits the 20 characters)
+        Journal reversal = new Journal(REVERSAL_NUMBER_PREFIX + original.getId(), date, original.getAccountCode(),
+                original.getAccountName(), "Reversal of " + original.getJournalEntryNumber() + ": " + original.getDescription(),
+                createdBy);
+        reversal.setReferenceNumber(original.getJournalEntryNumber());
+        reversal.setDebitAmount(original.getCreditAmount());
+        reversal.setCreditAmount(original.getDebitAmount());
+        if (original.getBalanceType() != null) {
+            reversal.setBalanceType(original.getBalanceType() == Journal.BalanceType.D ? Journal.BalanceType.C : Journal.BalanceType.D);
+        }
+        reversal.setDepartment(original.getDepartment());
+        reversal.setCostCenter(original.getCostCenter());
+        reversal.setProjectCode(original.getProjectCode());
+        reversal.setCurrencyCode(original.getCurrencyCode());
+        reversal.setExchangeRate(original.getExchangeRate());
+        reversal.setSourceDocument(original.getSourceDocument());
+        reversal.setStatus(Journal.Status.posted);
+        return reversal;
+    }
+
+    // Detached copy of the fields that make up an entry's contribution to the balances
+    private Journal balanceSnapshot(Journal journal) {
+        Journal snapshot = new Journal();
+        snapshot.setAccountCode(journal.getAccountCode());
+        snapshot.setAccountName(journal.getAccountName());
+        snapshot.setDebitAmount(journal.getDebitAmount());
+        snapshot.setCreditAmount(journal.getCreditAmount());
+        snapshot.setStatus(journal.getStatus());
+        return snapshot;
+    }
+
     /**
      * Validates journal entry according to accounting principles
      */
     private void validateJournalEntry(JournalDto journalDto) {
+        // Rule 0: Required fields must be present
+        requireField(journalDto.getJournalEntryNumber(), "journalEntryNumber");
+        requireField(journalDto.getTransactionDate(), "transactionDate");
+        requireField(journalDto.getAccountCode(), "accountCode");
+        requireField(journalDto.getAccountName(), "accountName");
+        requireField(journalDto.getDescription(), "description");
+        requireField(journalDto.getCreatedBy(), "createdBy");
+
         BigDecimal debitAmount = journalDto.getDebitAmount() != null ? journalDto.getDebitAmount() : BigDecimal.ZERO;
         BigDecimal creditAmount = journalDto.getCreditAmount() != null ? journalDto.getCreditAmount() : BigDecimal.ZERO;
 
@@ -83,6 +366,23 @@ public class JournalBl {
         }
     }
 
+    // Entries only become reversed through a reversal, which books the offsetting entry
+    private void rejectReversedStatus(JournalDto journalDto) {
+        if (Journal.Status.reversed.name().equals(journalDto.getStatus())) {
+            throw new IllegalArgumentException("Journal entries are reversed through the reversal endpoint.");
+        }
+    }
+
+    private static BigDecimal amount(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    private void requireField(Object value, String fieldName) {
+        if (value == null || (value instanceof String && ((String) value).isBlank())) {
+            throw new IllegalArgumentException("Journal entry field '" + fieldName + "' is required.");
+        }
+    }
+
     private JournalDto convertToDto(Journal journal) {
         JournalDto dto = new JournalDto();
         dto.setId(journal.getId());
@@ -0,0 +1,268 @@
+package com.market.accounting.bl;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.market.accounting.repository.JournalExportRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+
+/**
+ * Streams journal entries as CSV or NDJSON straight from a database cursor to the client.
+ * Each row is written as it is fetched and the output is flushed every FLUSH_ROWS rows,
+ * so heap use does not depend on the size of the export. A running export holds a
+ * database connection for its whole duration; at most maxConcurrent run at once and later
+ * ones wait for a slot.
+ */
+@Service
+public class JournalExportBl {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalExportBl.class);
+
+    private static final int FLUSH_ROWS = 1000;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Field names as in the JSON of the journal API (journal_entry_number -> journalEntryNumber)
+    private static final List<String> FIELDS = JournalExportRepository.COLUMNS.stream()
+            .map(JournalExportBl::camelCase)
+            .collect(Collectors.toList());
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() { return contentType; }
+
+        public String getExtension() { return extension; }
+
+        /**
+         * @throws IllegalArgumentException if the format is neither csv nor ndjson
+         */
+        public static Format parse(String format) {
+            try {
+                return valueOf(format.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Export format must be csv or ndjson");
+            }
+        }
+    }
+
+    @Autowired
+    private JournalExportRepository journalExportRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${accounting.export.max-concurrent:2}")
+    private int maxConcurrent;
+
+    private Semaphore slots;
+
+    @PostConstruct
+    void init() {
+        slots = new Semaphore(maxConcurrent, true);
+    }
+
+    /**
+     * @throws IllegalArgumentException if a bound is missing or from is after to
+     */
+    public void validateRange(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Both from and to dates are required");
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("From date must not be after to date");
+        }
+    }
+
+    /**
+     * Writes the journal entries dated from..to (inclusive), ordered by date and id, to out
+     * Blocks while maxConcurrent exports are running; does not close out
+     * @return The number of entries written
+     * @throws IOException if writing fails, e.g. because the client went away
+     */
+    public long export(LocalDate from, LocalDate to, Format format, OutputStream out) throws IOException {
+        validateRange(from, to);
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for an export slot");
+        }
+        long start = System.nanoTime();
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            RowWriter rowWriter = format == Format.CSV ? new CsvRowWriter(writer) : new NdjsonRowWriter(writer);
+            long[] rows = new long[1];
+
+            TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+            transaction.setReadOnly(true);
+            transaction.executeWithoutResult(status ->
+                    journalExportRepository.streamByTransactionDate(from, to, rs -> {
+                        try {
+                            rowWriter.write(rs);
+                            if (++rows[0] % FLUSH_ROWS == 0) {
+                                writer.flush();
+                            }
+                        } catch (IOException e) {
+                            // Rolls the read back and closes the cursor
+                            throw new UncheckedIOException(e);
+                        }
+                    }));
+            rowWriter.finish();
+            writer.flush();
+            log.info("Exported {} journal entries dated {} to {} as {} in {} ms", rows[0], from, to, format,
+                    (System.nanoTime() - start) / 1_000_000);
+            return rows[0];
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            slots.release();
+        }
+    }
+
+    private static String camelCase(String column) {
+        StringBuilder field = new StringBuilder();
+        boolean upper = false;
+        for (char c : column.toCharArray()) {
+            if (c == '_') {
+                upper = true;
+            } else {
+                field.append(upper ? Character.toUpperCase(c) : c);
+                upper = false;
+            }
+        }
+        return field.toString();
+    }
+
+    // Values as exported: ISO dates and timestamps, plain decimals
+    private static Object value(ResultSet rs, int column) throws SQLException {
+        Object value = rs.getObject(column);
+        if (value instanceof Date date) {
+            return date.toLocalDate().toString();
+        }
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime().toString();
+        }
+        return value;
+    }
+
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+
+        void finish() throws IOException;
+    }
+
+    // RFC 4180: a header line, then one line per entry; fields with commas, quotes or line
+    // breaks are quoted
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+
+        CsvRowWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            writer.write(String.join(",", FIELDS));
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            for (int i = 1; i <= FIELDS.size(); i++) {
+                if (i > 1) {
+                    writer.write(',');
+                }
+                Object value = value(rs, i);
+                if (value != null) {
+                    writer.write(escape(value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString()));
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void finish() {
+        }
+
+        private static String escape(String field) {
+            if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+                return field;
+            }
+            return '"' + field.replace("\"", "\"\"") + '"';
+        }
+    }
+
+    // One JSON object per line; amounts and ids are JSON numbers
+    private final class NdjsonRowWriter implements RowWriter {
+        private final Writer writer;
+        private final JsonGenerator generator;
+
+        NdjsonRowWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            // flush() only moves the generator's buffer to the writer, which flushes on its own schedule
+            this.generator = objectMapper.getFactory().createGenerator(writer)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            for (int i = 1; i <= FIELDS.size(); i++) {
+                Object value = value(rs, i);
+                generator.writeFieldName(FIELDS.get(i - 1));
+                if (value == null) {
+                    generator.writeNull();
+                } else if (value instanceof BigDecimal decimal) {
+                    generator.writeNumber(decimal);
+                } else if (value instanceof Integer number) {
+                    generator.writeNumber(number);
+                } else {
+                    generator.writeString(value.toString());
+                }
+            }
+            generator.writeEndObject();
+            // Hand the object to the writer before the line break
+            generator.flush();
+            writer.write('\n');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.close();
+        }
+    }
+}
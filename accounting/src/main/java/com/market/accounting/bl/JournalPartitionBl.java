@@ -0,0 +1,78 @@
+package com.market.accounting.bl;
+
+import com.market.accounting.repository.JournalPartitionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Creates the monthly partitions of the journal ahead of time. Queries bounded by
+ * transaction_date only read the partitions of their months; entries dated past the last
+ * partition land in journal_default, which is scanned by every query, so partitions are
+ * kept monthsAhead months in advance, at startup and every night.
+ */
+@Service
+public class JournalPartitionBl {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalPartitionBl.class);
+
+    @Autowired
+    private JournalPartitionRepository journalPartitionRepository;
+
+    @Value("${accounting.journal.partitions.months-ahead:3}")
+    private int monthsAhead;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        createFuturePartitions();
+    }
+
+    /**
+     * Makes sure the partitions of the current month and the next monthsAhead months exist
+     * Creating a partition briefly locks the journal against writes
+     */
+    @Scheduled(cron = "${accounting.journal.partitions.cron:0 0 2 * * *}")
+    public void createFuturePartitions() {
+        if (!journalPartitionRepository.isJournalPartitioned()) {
+            log.warn("The journal is not partitioned; run accounting/db/journal-partitioning.sql");
+            return;
+        }
+        YearMonth current = YearMonth.now();
+        createPartitions(current, current.plusMonths(monthsAhead));
+    }
+
+    /**
+     * Creates the missing partitions of the months from..to
+     * A month whose entries already landed in journal_default is skipped and logged
+     * @return The months whose partition was created
+     */
+    public List<YearMonth> createPartitions(YearMonth from, YearMonth to) {
+        Set<String> existing = journalPartitionRepository.findPartitionNames();
+        List<YearMonth> created = new ArrayList<>();
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            if (existing.contains(JournalPartitionRepository.partitionName(month))) {
+                continue;
+            }
+            try {
+                journalPartitionRepository.createMonthlyPartition(month);
+                created.add(month);
+                log.info("Journal partition {} created", JournalPartitionRepository.partitionName(month));
+            } catch (DataAccessException e) {
+                log.error("Journal partition {} could not be created: {}",
+                        JournalPartitionRepository.partitionName(month), e.getMostSpecificCause().getMessage());
+            }
+        }
+        return created;
+    }
+}
@@ -0,0 +1,147 @@
+package com.market.accounting.bl;
+
+import com.market.accounting.dto.TrialBalanceDto;
+import com.market.accounting.dto.TrialBalanceLineDto;
+import com.market.accounting.repository.AccountingPeriodRepository;
+import com.market.accounting.repository.JournalRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Financial reports over the posted journal entries
+ * A trial balance is split into calendar-month chunks. Months that are closed are read
+ * from the totals frozen at close (cached in memory for good, since closed periods no
+ * longer change); the other chunks are aggregated by the database with one GROUP BY each,
+ * in parallel, and the partial results are merged per account.
+ */
+@Service
+public class ReportBl {
+
+    @Autowired
+    private JournalRepository journalRepository;
+
+    @Autowired
+    private AccountingPeriodRepository accountingPeriodRepository;
+
+    @Value("${accounting.reports.max-months:120}")
+    private int maxMonths;
+
+    // Chunks aggregated at the same time, each on its own database connection
+    @Value("${accounting.reports.parallelism:4}")
+    private int parallelism;
+
+    private final Map<LocalDate, List<TrialBalanceLineDto>> closedPeriodTotals = new ConcurrentHashMap<>();
+
+    private ExecutorService chunkExecutor;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threads = new AtomicInteger();
+        chunkExecutor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "trial-balance-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        chunkExecutor.shutdownNow();
+    }
+
+    /**
+     * Totals per account of the posted entries with a transaction date in [from, to]
+     * Open months may still change while the report runs; each chunk is consistent on its own
+     * @throws IllegalArgumentException if the range is invalid or longer than max-months
+     */
+    public TrialBalanceDto getTrialBalance(LocalDate from, LocalDate to) {
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new IllegalArgumentException("A period with from <= to is required.");
+        }
+        YearMonth firstMonth = YearMonth.from(from);
+        YearMonth lastMonth = YearMonth.from(to);
+        if (ChronoUnit.MONTHS.between(firstMonth, lastMonth) >= maxMonths) {
+            throw new IllegalArgumentException("A trial balance can cover at most " + maxMonths + " months.");
+        }
+        Set<LocalDate> closedPeriods = new HashSet<>(
+                accountingPeriodRepository.findClosedPeriodStarts(firstMonth.atDay(1), lastMonth.atDay(1)));
+
+        List<CompletableFuture<List<TrialBalanceLineDto>>> chunks = new ArrayList<>();
+        int closedMonths = 0;
+        for (YearMonth month = firstMonth; !month.isAfter(lastMonth); month = month.plusMonths(1)) {
+            LocalDate monthStart = month.atDay(1);
+            LocalDate chunkStart = from.isAfter(monthStart) ? from : monthStart;
+            LocalDate chunkEnd = to.isBefore(month.atEndOfMonth()) ? to : month.atEndOfMonth();
+            if (chunkStart.equals(monthStart) && chunkEnd.equals(month.atEndOfMonth()) && closedPeriods.contains(monthStart)) {
+                closedMonths++;
+                chunks.add(CompletableFuture.supplyAsync(() -> getClosedPeriodTotals(monthStart), chunkExecutor));
+            } else {
+                chunks.add(CompletableFuture.supplyAsync(
+                        () -> toLines(journalRepository.sumPostedByAccount(chunkStart, chunkEnd)), chunkExecutor));
+            }
+        }
+
+        // Merge step: add up the chunk totals per account, in account code order
+        Map<String, TrialBalanceLineDto> merged = new TreeMap<>();
+        try {
+            for (CompletableFuture<List<TrialBalanceLineDto>> chunk : chunks) {
+                for (TrialBalanceLineDto line : chunk.join()) {
+                    merged.merge(line.getAccountCode(), line, ReportBl::add);
+                }
+            }
+        } catch (CompletionException e) {
+            chunks.forEach(chunk -> chunk.cancel(true));
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        return new TrialBalanceDto(from, to, new ArrayList<>(merged.values()), closedMonths);
+    }
+
+    private List<TrialBalanceLineDto> getClosedPeriodTotals(LocalDate periodStart) {
+        List<TrialBalanceLineDto> totals = closedPeriodTotals.get(periodStart);
+        if (totals == null) {
+            totals = List.copyOf(toLines(accountingPeriodRepository.findPeriodTotals(periodStart)));
+            closedPeriodTotals.put(periodStart, totals);
+        }
+        return totals;
+    }
+
+    // Rows of account code, name, debit, credit, posted entries
+    private static List<TrialBalanceLineDto> toLines(List<Object[]> rows) {
+        List<TrialBalanceLineDto> lines = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            lines.add(new TrialBalanceLineDto((String) row[0], (String) row[1], decimal(row[2]), decimal(row[3]),
+                    ((Number) row[4]).longValue()));
+        }
+        return lines;
+    }
+
+    // New line, so cached closed period lines are never modified
+    private static TrialBalanceLineDto add(TrialBalanceLineDto a, TrialBalanceLineDto b) {
+        return new TrialBalanceLineDto(a.getAccountCode(), b.getAccountName(), a.getDebitTotal().add(b.getDebitTotal()),
+                a.getCreditTotal().add(b.getCreditTotal()), a.getPostedEntries() + b.getPostedEntries());
+    }
+
+    private static BigDecimal decimal(Object value) {
+        return value != null ? new BigDecimal(value.toString()) : BigDecimal.ZERO;
+    }
+}
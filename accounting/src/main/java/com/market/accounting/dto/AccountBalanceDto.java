@@ -0,0 +1,44 @@
+package com.market.accounting.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Totals of the posted journal entries of one account
+ * balance is debitTotal - creditTotal (positive for a debit balance)
+ */
+public class AccountBalanceDto {
+
+    private String accountCode;
+    private String accountName;
+    private BigDecimal debitTotal;
+    private BigDecimal creditTotal;
+    private BigDecimal balance;
+    private Long postedEntries;
+    private LocalDateTime updatedAt;
+
+    // Default constructor
+    public AccountBalanceDto() {}
+
+    // Getters and Setters
+    public String getAccountCode() { return accountCode; }
+    public void setAccountCode(String accountCode) { this.accountCode = accountCode; }
+
+    public String getAccountName() { return accountName; }
+    public void setAccountName(String accountName) { this.accountName = accountName; }
+
+    public BigDecimal getDebitTotal() { return debitTotal; }
+    public void setDebitTotal(BigDecimal debitTotal) { this.debitTotal = debitTotal; }
+
+    public BigDecimal getCreditTotal() { return creditTotal; }
+    public void setCreditTotal(BigDecimal creditTotal) { this.creditTotal = creditTotal; }
+
+    public BigDecimal getBalance() { return balance; }
+    public void setBalance(BigDecimal balance) { this.balance = balance; }
+
+    public Long getPostedEntries() { return postedEntries; }
+    public void setPostedEntries(Long postedEntries) { this.postedEntries = postedEntries; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -0,0 +1,37 @@
+package com.market.accounting.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * A calendar month of the ledger, e.g. period "2024-01"
+ */
+public class AccountingPeriodDto {
+
+    private String period;
+    private String status;
+    private LocalDateTime closedAt;
+    private String closedBy;
+
+    // Default constructor
+    public AccountingPeriodDto() {}
+
+    public AccountingPeriodDto(String period, String status, LocalDateTime closedAt, String closedBy) {
+        this.period = period;
+        this.status = status;
+        this.closedAt = closedAt;
+        this.closedBy = closedBy;
+    }
+
+    // Getters and Setters
+    public String getPeriod() { return period; }
+    public void setPeriod(String period) { this.period = period; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public LocalDateTime getClosedAt() { return closedAt; }
+    public void setClosedAt(LocalDateTime closedAt) { this.closedAt = closedAt; }
+
+    public String getClosedBy() { return closedBy; }
+    public void setClosedBy(String closedBy) { this.closedBy = closedBy; }
+}
@@ -0,0 +1,54 @@
+package com.market.accounting.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * An account whose stored balance differs from the totals recomputed from the journal
+ */
+public class BalanceMismatchDto {
+
+    private String accountCode;
+    private BigDecimal storedDebitTotal;
+    private BigDecimal storedCreditTotal;
+    private Long storedPostedEntries;
+    private BigDecimal journalDebitTotal;
+    private BigDecimal journalCreditTotal;
+    private Long journalPostedEntries;
+
+    // Default constructor
+    public BalanceMismatchDto() {}
+
+    public BalanceMismatchDto(String accountCode, BigDecimal storedDebitTotal, BigDecimal storedCreditTotal,
+                              Long storedPostedEntries, BigDecimal journalDebitTotal, BigDecimal journalCreditTotal,
+                              Long journalPostedEntries) {
+        this.accountCode = accountCode;
+        this.storedDebitTotal = storedDebitTotal;
+        this.storedCreditTotal = storedCreditTotal;
+        this.storedPostedEntries = storedPostedEntries;
+        this.journalDebitTotal = journalDebitTotal;
+        this.journalCreditTotal = journalCreditTotal;
+        this.journalPostedEntries = journalPostedEntries;
+    }
+
+    // Getters and Setters
+    public String getAccountCode() { return accountCode; }
+    public void setAccountCode(String accountCode) { this.accountCode = accountCode; }
+
+    public BigDecimal getStoredDebitTotal() { return storedDebitTotal; }
+    public void setStoredDebitTotal(BigDecimal storedDebitTotal) { this.storedDebitTotal = storedDebitTotal; }
+
+    public BigDecimal getStoredCreditTotal() { return storedCreditTotal; }
+    public void setStoredCreditTotal(BigDecimal storedCreditTotal) { this.storedCreditTotal = storedCreditTotal; }
+
+    public Long getStoredPostedEntries() { return storedPostedEntries; }
+    public void setStoredPostedEntries(Long storedPostedEntries) { this.storedPostedEntries = storedPostedEntries; }
+
+    public BigDecimal getJournalDebitTotal() { return journalDebitTotal; }
+    public void setJournalDebitTotal(BigDecimal journalDebitTotal) { this.journalDebitTotal = journalDebitTotal; }
+
+    public BigDecimal getJournalCreditTotal() { return journalCreditTotal; }
+    public void setJournalCreditTotal(BigDecimal journalCreditTotal) { this.journalCreditTotal = journalCreditTotal; }
+
+    public Long getJournalPostedEntries() { return journalPostedEntries; }
+    public void setJournalPostedEntries(Long journalPostedEntries) { this.journalPostedEntries = journalPostedEntries; }
+}
@@ -0,0 +1,33 @@
+package com.market.accounting.dto;
+
+import java.util.List;
+
+/**
+ * Response of POST /api/accounting/balances/verify
+ * mismatches lists the accounts that differed before any rebuild
+ */
+public class BalanceVerificationDto {
+
+    private int accountsChecked;
+    private List<BalanceMismatchDto> mismatches;
+    private boolean rebuilt;
+
+    // Default constructor
+    public BalanceVerificationDto() {}
+
+    public BalanceVerificationDto(int accountsChecked, List<BalanceMismatchDto> mismatches, boolean rebuilt) {
+        this.accountsChecked = accountsChecked;
+        this.mismatches = mismatches;
+        this.rebuilt = rebuilt;
+    }
+
+    // Getters and Setters
+    public int getAccountsChecked() { return accountsChecked; }
+    public void setAccountsChecked(int accountsChecked) { this.accountsChecked = accountsChecked; }
+
+    public List<BalanceMismatchDto> getMismatches() { return mismatches; }
+    public void setMismatches(List<BalanceMismatchDto> mismatches) { this.mismatches = mismatches; }
+
+    public boolean isRebuilt() { return rebuilt; }
+    public void setRebuilt(boolean rebuilt) { this.rebuilt = rebuilt; }
+}
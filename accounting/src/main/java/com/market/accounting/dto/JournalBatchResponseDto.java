@@ -0,0 +1,42 @@
+package com.market.accounting.dto;
+
+import java.util.List;
+
+/**
+ * Response of POST /api/accounting/journals/batch
+ * Results are listed in request order
+ */
+public class JournalBatchResponseDto {
+
+    private int created;
+    private int duplicates;
+    private int rejected;
+    private List<JournalBatchResultDto> results;
+
+    // Default constructor
+    public JournalBatchResponseDto() {}
+
+    public JournalBatchResponseDto(List<JournalBatchResultDto> results) {
+        this.results = results;
+        for (JournalBatchResultDto result : results) {
+            switch (result.getStatus()) {
+                case CREATED -> created++;
+                case DUPLICATE -> duplicates++;
+                case REJECTED -> rejected++;
+            }
+        }
+    }
+
+    // Getters and Setters
+    public int getCreated() { return created; }
+    public void setCreated(int created) { this.created = created; }
+
+    public int getDuplicates() { return duplicates; }
+    public void setDuplicates(int duplicates) { this.duplicates = duplicates; }
+
+    public int getRejected() { return rejected; }
+    public void setRejected(int rejected) { this.rejected = rejected; }
+
+    public List<JournalBatchResultDto> getResults() { return results; }
+    public void setResults(List<JournalBatchResultDto> results) { this.results = results; }
+}
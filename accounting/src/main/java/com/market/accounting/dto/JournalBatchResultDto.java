@@ -0,0 +1,45 @@
+package com.market.accounting.dto;
+
+/**
+ * Outcome of a single entry of a journal batch
+ * Callers retry only the entries that were not CREATED
+ */
+public class JournalBatchResultDto {
+
+    public enum Status {
+        CREATED, DUPLICATE, REJECTED
+    }
+
+    private int index;
+    private String journalEntryNumber;
+    private Status status;
+    private Integer id;
+    private String error;
+
+    // Default constructor
+    public JournalBatchResultDto() {}
+
+    public JournalBatchResultDto(int index, String journalEntryNumber, Status status, Integer id, String error) {
+        this.index = index;
+        this.journalEntryNumber = journalEntryNumber;
+        this.status = status;
+        this.id = id;
+        this.error = error;
+    }
+
+    // Getters and Setters
+    public int getIndex() { return index; }
+    public void setIndex(int index) { this.index = index; }
+
+    public String getJournalEntryNumber() { return journalEntryNumber; }
+    public void setJournalEntryNumber(String journalEntryNumber) { this.journalEntryNumber = journalEntryNumber; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public Integer getId() { return id; }
+    public void setId(Integer id) { this.id = id; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+}
@@ -0,0 +1,61 @@
+package com.market.accounting.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Response of GET /api/accounting/reports/trial-balance
+ * One line per account with posted entries in the period, in account code order
+ */
+public class TrialBalanceDto {
+
+    private LocalDate from;
+    private LocalDate to;
+    private List<TrialBalanceLineDto> lines;
+    private BigDecimal totalDebit;
+    private BigDecimal totalCredit;
+    private boolean balanced;
+
+    // Months of the period served from the totals frozen when they were closed
+    private int closedMonths;
+
+    // Default constructor
+    public TrialBalanceDto() {}
+
+    public TrialBalanceDto(LocalDate from, LocalDate to, List<TrialBalanceLineDto> lines, int closedMonths) {
+        this.from = from;
+        this.to = to;
+        this.lines = lines;
+        this.closedMonths = closedMonths;
+        this.totalDebit = BigDecimal.ZERO;
+        this.totalCredit = BigDecimal.ZERO;
+        for (TrialBalanceLineDto line : lines) {
+            totalDebit = totalDebit.add(line.getDebitTotal());
+            totalCredit = totalCredit.add(line.getCreditTotal());
+        }
+        this.balanced = totalDebit.compareTo(totalCredit) == 0;
+    }
+
+    // Getters and Setters
+    public LocalDate getFrom() { return from; }
+    public void setFrom(LocalDate from) { this.from = from; }
+
+    public LocalDate getTo() { return to; }
+    public void setTo(LocalDate to) { this.to = to; }
+
+    public List<TrialBalanceLineDto> getLines() { return lines; }
+    public void setLines(List<TrialBalanceLineDto> lines) { this.lines = lines; }
+
+    public BigDecimal getTotalDebit() { return totalDebit; }
+    public void setTotalDebit(BigDecimal totalDebit) { this.totalDebit = totalDebit; }
+
+    public BigDecimal getTotalCredit() { return totalCredit; }
+    public void setTotalCredit(BigDecimal totalCredit) { this.totalCredit = totalCredit; }
+
+    public boolean isBalanced() { return balanced; }
+    public void setBalanced(boolean balanced) { this.balanced = balanced; }
+
+    public int getClosedMonths() { return closedMonths; }
+    public void setClosedMonths(int closedMonths) { this.closedMonths = closedMonths; }
+}
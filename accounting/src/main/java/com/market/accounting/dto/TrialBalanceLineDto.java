@@ -0,0 +1,49 @@
+package com.market.accounting.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Totals of the posted entries of one account within a trial balance period
+ * balance is debitTotal - creditTotal (positive for a debit balance)
+ */
+public class TrialBalanceLineDto {
+
+    private String accountCode;
+    private String accountName;
+    private BigDecimal debitTotal;
+    private BigDecimal creditTotal;
+    private BigDecimal balance;
+    private long postedEntries;
+
+    // Default constructor
+    public TrialBalanceLineDto() {}
+
+    public TrialBalanceLineDto(String accountCode, String accountName, BigDecimal debitTotal, BigDecimal creditTotal,
+                               long postedEntries) {
+        this.accountCode = accountCode;
+        this.accountName = accountName;
+        this.debitTotal = debitTotal;
+        this.creditTotal = creditTotal;
+        this.balance = debitTotal.subtract(creditTotal);
+        this.postedEntries = postedEntries;
+    }
+
+    // Getters and Setters
+    public String getAccountCode() { return accountCode; }
+    public void setAccountCode(String accountCode) { this.accountCode = accountCode; }
+
+    public String getAccountName() { return accountName; }
+    public void setAccountName(String accountName) { this.accountName = accountName; }
+
+    public BigDecimal getDebitTotal() { return debitTotal; }
+    public void setDebitTotal(BigDecimal debitTotal) { this.debitTotal = debitTotal; }
+
+    public BigDecimal getCreditTotal() { return creditTotal; }
+    public void setCreditTotal(BigDecimal creditTotal) { this.creditTotal = creditTotal; }
+
+    public BigDecimal getBalance() { return balance; }
+    public void setBalance(BigDecimal balance) { this.balance = balance; }
+
+    public long getPostedEntries() { return postedEntries; }
+    public void setPostedEntries(long postedEntries) { this.postedEntries = postedEntries; }
+}
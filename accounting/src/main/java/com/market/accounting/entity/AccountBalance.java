@@ -0,0 +1,83 @@
+package com.market.accounting.entity;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Running totals of the posted journal entries of one account, maintained in the same
+// transaction as every journal write (see AccountBalanceBl)
+@Entity
+@Table(name = "account_balance")
+public class AccountBalance {
+
+    @Id
+    @Column(name = "account_code", length = 20)
+    private String accountCode;
+
+    @Column(name = "account_name", nullable = false, length = 255)
+    private String accountName;
+
+    @Column(name = "debit_total", nullable = false, precision = 19, scale = 2)
+    private BigDecimal debitTotal = BigDecimal.ZERO;
+
+    @Column(name = "credit_total", nullable = false, precision = 19, scale = 2)
+    private BigDecimal creditTotal = BigDecimal.ZERO;
+
+    @Column(name = "posted_entries", nullable = false)
+    private Long postedEntries = 0L;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public AccountBalance() {}
+
+    // Getters and Setters
+    public String getAccountCode() {
+        return accountCode;
+    }
+
+    public void setAccountCode(String accountCode) {
+        this.accountCode = accountCode;
+    }
+
+    public String getAccountName() {
+        return accountName;
+    }
+
+    public void setAccountName(String accountName) {
+        this.accountName = accountName;
+    }
+
+    public BigDecimal getDebitTotal() {
+        return debitTotal;
+    }
+
+    public void setDebitTotal(BigDecimal debitTotal) {
+        this.debitTotal = debitTotal;
+    }
+
+    public BigDecimal getCreditTotal() {
+        return creditTotal;
+    }
+
+    public void setCreditTotal(BigDecimal creditTotal) {
+        this.creditTotal = creditTotal;
+    }
+
+    public Long getPostedEntries() {
+        return postedEntries;
+    }
+
+    public void setPostedEntries(Long postedEntries) {
+        this.postedEntries = postedEntries;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,72 @@
+package com.market.accounting.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// One calendar month of the ledger. Journal writes hold a shared lock on the periods they
+// touch and are rejected once a period is CLOSED; closing stores the period's totals per
+// account in period_account_total, which trial balances then read instead of the journal
+@Entity
+@Table(name = "accounting_period")
+public class AccountingPeriod {
+
+    @Id
+    @Column(name = "period_start")
+    private LocalDate periodStart;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 10)
+    private Status status = Status.OPEN;
+
+    @Column(name = "closed_at")
+    private LocalDateTime closedAt;
+
+    @Column(name = "closed_by", length = 100)
+    private String closedBy;
+
+    public enum Status {
+        OPEN, CLOSED
+    }
+
+    // Constructors
+    public AccountingPeriod() {}
+
+    // Getters and Setters
+    public LocalDate getPeriodStart() {
+        return periodStart;
+    }
+
+    public void setPeriodStart(LocalDate periodStart) {
+        this.periodStart = periodStart;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getClosedAt() {
+        return closedAt;
+    }
+
+    public void setClosedAt(LocalDateTime closedAt) {
+        this.closedAt = closedAt;
+    }
+
+    public String getClosedBy() {
+        return closedBy;
+    }
+
+    public void setClosedBy(String closedBy) {
+        this.closedBy = closedBy;
+    }
+
+    // Business methods
+    public boolean isClosed() {
+        return status == Status.CLOSED;
+    }
+}
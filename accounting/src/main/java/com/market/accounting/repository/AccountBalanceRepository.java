@@ -0,0 +1,59 @@
+package com.market.accounting.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.market.accounting.entity.AccountBalance;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface AccountBalanceRepository extends JpaRepository<AccountBalance, String> {
+
+    List<AccountBalance> findAllByOrderByAccountCodeAsc();
+
+    // Adds signed deltas to the totals of one account, creating its row on the first posting
+    @Modifying
+    @Query(value = "INSERT INTO account_balance (account_code, account_name, debit_total, credit_total, posted_entries, updated_at) " +
+            "VALUES (:accountCode, :accountName, :debit, :credit, :entries, CURRENT_TIMESTAMP) " +
+            "ON CONFLICT (account_code) DO UPDATE SET " +
+            "account_name = EXCLUDED.account_name, " +
+            "debit_total = account_balance.debit_total + EXCLUDED.debit_total, " +
+            "credit_total = account_balance.credit_total + EXCLUDED.credit_total, " +
+            "posted_entries = account_balance.posted_entries + EXCLUDED.posted_entries, " +
+            "updated_at = CURRENT_TIMESTAMP", nativeQuery = true)
+    int addToBalance(@Param("accountCode") String accountCode, @Param("accountName") String accountName,
+                     @Param("debit") BigDecimal debit, @Param("credit") BigDecimal credit, @Param("entries") long entries);
+
+    // Blocks journal writes (their balance upserts) until the rebuilding transaction ends;
+    // readers of the balances are not blocked
+    @Modifying
+    @Query(value = "LOCK TABLE account_balance IN EXCLUSIVE MODE", nativeQuery = true)
+    void lockForRebuild();
+
+    @Modifying
+    @Query(value = "DELETE FROM account_balance", nativeQuery = true)
+    int deleteAllBalances();
+
+    @Modifying
+    @Query(value = "INSERT INTO account_balance (account_code, account_name, debit_total, credit_total, posted_entries, updated_at) " +
+            "SELECT account_code, MAX(account_name), COALESCE(SUM(debit_amount), 0), COALESCE(SUM(credit_amount), 0), COUNT(*), CURRENT_TIMESTAMP " +
+            "FROM journal WHERE status IN ('posted', 'reversed') GROUP BY account_code", nativeQuery = true)
+    int insertBalancesFromJournal();
+
+    // Stored totals next to the totals recomputed from the journal, per account found on
+    // either side: account code, stored debit, credit and entries, then journal debit,
+    // credit and entries (nulls where a side has no row). One statement, so both sides
+    // come from the same snapshot.
+    @Query(value = "SELECT COALESCE(b.account_code, j.account_code), b.debit_total, b.credit_total, b.posted_entries, " +
+            "j.debit_total, j.credit_total, j.posted_entries " +
+            "FROM account_balance b FULL OUTER JOIN (" +
+            "SELECT account_code, COALESCE(SUM(debit_amount), 0) AS debit_total, COALESCE(SUM(credit_amount), 0) AS credit_total, " +
+            "COUNT(*) AS posted_entries FROM journal WHERE status IN ('posted', 'reversed') GROUP BY account_code" +
+            ") j ON j.account_code = b.account_code ORDER BY 1", nativeQuery = true)
+    List<Object[]> compareWithJournal();
+}
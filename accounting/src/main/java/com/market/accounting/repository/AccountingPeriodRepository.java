@@ -0,0 +1,54 @@
+package com.market.accounting.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.market.accounting.entity.AccountingPeriod;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AccountingPeriodRepository extends JpaRepository<AccountingPeriod, LocalDate> {
+
+    List<AccountingPeriod> findAllByOrderByPeriodStartAsc();
+
+    // Creates the period row if it does not exist yet, without locking an existing one
+    @Modifying
+    @Query(value = "INSERT INTO accounting_period (period_start, status) VALUES (:periodStart, 'OPEN') " +
+            "ON CONFLICT (period_start) DO NOTHING", nativeQuery = true)
+    int insertIfMissing(@Param("periodStart") LocalDate periodStart);
+
+    // Shared locks (FOR SHARE) on the periods a journal write touches: concurrent writes do
+    // not block each other, a period close waits for them and they wait for it
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT p FROM AccountingPeriod p WHERE p.periodStart IN :periodStarts ORDER BY p.periodStart")
+    List<AccountingPeriod> lockPeriods(@Param("periodStarts") Collection<LocalDate> periodStarts);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM AccountingPeriod p WHERE p.periodStart = :periodStart")
+    Optional<AccountingPeriod> lockByPeriodStart(@Param("periodStart") LocalDate periodStart);
+
+    @Query("SELECT p.periodStart FROM AccountingPeriod p WHERE p.status = 'CLOSED' AND p.periodStart BETWEEN :from AND :to")
+    List<LocalDate> findClosedPeriodStarts(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    // Freezes the totals per account of the posted entries of a period being closed
+    @Modifying
+    @Query(value = "INSERT INTO period_account_total (period_start, account_code, account_name, debit_total, credit_total, posted_entries) " +
+            "SELECT :periodStart, account_code, MAX(account_name), COALESCE(SUM(debit_amount), 0), COALESCE(SUM(credit_amount), 0), COUNT(*) " +
+            "FROM journal WHERE status IN ('posted', 'reversed') AND transaction_date BETWEEN :periodStart AND :periodEnd " +
+            "GROUP BY account_code", nativeQuery = true)
+    int insertPeriodTotals(@Param("periodStart") LocalDate periodStart, @Param("periodEnd") LocalDate periodEnd);
+
+    // Totals of a closed period: account code, name, debit, credit, posted entries
+    @Query(value = "SELECT account_code, account_name, debit_total, credit_total, posted_entries " +
+            "FROM period_account_total WHERE period_start = :periodStart", nativeQuery = true)
+    List<Object[]> findPeriodTotals(@Param("periodStart") LocalDate periodStart);
+}
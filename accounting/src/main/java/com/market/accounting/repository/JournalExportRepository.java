@@ -0,0 +1,44 @@
+package com.market.accounting.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+// Reads journal entries for exports from a server-side cursor. PostgreSQL only fetches
+// FETCH_SIZE rows at a time when the query has a fetch size and runs in a transaction
+// (autocommit off); otherwise the driver buffers the whole result.
+@Repository
+public class JournalExportRepository {
+
+    public static final List<String> COLUMNS = List.of(
+            "id", "journal_entry_number", "transaction_date", "posting_date", "account_code", "account_name",
+            "description", "reference_number", "debit_amount", "credit_amount", "balance_type", "department",
+            "cost_center", "project_code", "currency_code", "exchange_rate", "source_document", "created_by",
+            "approved_by", "approval_date", "status", "reversed_by_entry", "notes", "created_at", "updated_at");
+
+    private static final int FETCH_SIZE = 1000;
+
+    // Only reads the partitions of the range; rows come in date order per partition, so
+    // ordering by id within a day needs no sort of the whole range
+    private static final String SELECT_BY_TRANSACTION_DATE =
+            "SELECT " + String.join(", ", COLUMNS) + " FROM journal " +
+            "WHERE transaction_date BETWEEN ? AND ? ORDER BY transaction_date, id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JournalExportRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+    }
+
+    // Passes the entries dated from..to (inclusive) to the handler one row at a time, in
+    // COLUMNS order. Must run in a transaction.
+    public void streamByTransactionDate(LocalDate from, LocalDate to, RowCallbackHandler handler) {
+        jdbcTemplate.query(SELECT_BY_TRANSACTION_DATE, handler, from, to);
+    }
+}
@@ -0,0 +1,49 @@
+package com.market.accounting.repository;
+
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+// Monthly partitions of the journal, which is range partitioned by transaction_date
+// (accounting/db/journal-partitioning.sql). A month's partition is journal_pYYYY_MM and
+// holds the dates from its first day up to the first day of the next month.
+@Repository
+public class JournalPartitionRepository {
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JournalPartitionRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    public static String partitionName(YearMonth month) {
+        return "journal_p" + month.format(PARTITION_SUFFIX);
+    }
+
+    // False until the migration script has run
+    public boolean isJournalPartitioned() {
+        Boolean partitioned = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_partitioned_table WHERE partrelid = to_regclass('journal'))", Boolean.class);
+        return Boolean.TRUE.equals(partitioned);
+    }
+
+    public Set<String> findPartitionNames() {
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT inhrelid::regclass::text FROM pg_inherits WHERE inhparent = to_regclass('journal')", String.class));
+    }
+
+    // The partition gets the indexes, constraints and triggers defined on journal. Fails
+    // when journal_default already holds rows of that month.
+    public void createMonthlyPartition(YearMonth month) {
+        jdbcTemplate.execute(String.format("CREATE TABLE IF NOT EXISTS %s PARTITION OF journal FOR VALUES FROM ('%s') TO ('%s')",
+                partitionName(month), month.atDay(1), month.plusMonths(1).atDay(1)));
+    }
+}
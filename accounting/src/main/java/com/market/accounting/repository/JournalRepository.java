@@ -1,14 +1,17 @@
 package com.market.accounting.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.market.accounting.entity.Journal;
 import com.market.accounting.entity.Journal.Status;
+import jakarta.persistence.LockModeType;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +20,21 @@ public interface JournalRepository extends JpaRepository<Journal, Integer> {
     
     Optional<Journal> findByJournalEntryNumber(String journalEntryNumber);
     
+    // Serializes reversals of the same entry
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT j FROM Journal j WHERE j.id = :id")
+    Optional<Journal> lockById(@Param("id") Integer id);
+    
+    // Transaction-scoped advisory lock per entry number: writers of the same number wait for
+    // each other's commit, so a duplicate check after the lock cannot race an insert. Keys
+    // are taken in one order so concurrent writers cannot deadlock
+    @Query(value = "SELECT COUNT(pg_advisory_xact_lock(k)) FROM (SELECT DISTINCT hashtextextended(n, 0) AS k " +
+            "FROM unnest(ARRAY[:numbers]) AS n ORDER BY k) AS keys", nativeQuery = true)
+    long lockJournalEntryNumbers(@Param("numbers") Collection<String> numbers);
+    
+    @Query("SELECT j.journalEntryNumber FROM Journal j WHERE j.journalEntryNumber IN :numbers")
+    List<String> findExistingJournalEntryNumbers(@Param("numbers") Collection<String> numbers);
+    
     List<Journal> findByTransactionDateBetween(LocalDate startDate, LocalDate endDate);
     
     List<Journal> findByAccountCode(String accountCode);
@@ -32,10 +50,11 @@ public interface JournalRepository extends JpaRepository<Journal, Integer> {
     List<Journal> findByAccountCodeAndDateRange(@Param("accountCode") String accountCode, 
                                                @Param("startDate") LocalDate startDate, 
                                                @Param("endDate") LocalDate endDate);
-    
-    @Query("SELECT SUM(j.debitAmount) FROM Journal j WHERE j.accountCode = :accountCode AND j.status = 'POSTED'")
-    java.math.BigDecimal getTotalDebitsForAccount(@Param("accountCode") String accountCode);
-    
-    @Query("SELECT SUM(j.creditAmount) FROM Journal j WHERE j.accountCode = :accountCode AND j.status = 'POSTED'")
-    java.math.BigDecimal getTotalCreditsForAccount(@Param("accountCode") String accountCode);
+
+    // Totals per account of the posted entries in a date range: account code, name, debit,
+    // credit, posted entries. One chunk of a trial balance.
+    @Query(value = "SELECT account_code, MAX(account_name), COALESCE(SUM(debit_amount), 0), COALESCE(SUM(credit_amount), 0), COUNT(*) " +
+            "FROM journal WHERE status IN ('posted', 'reversed') AND transaction_date BETWEEN :startDate AND :endDate " +
+            "GROUP BY account_code", nativeQuery = true)
+    List<Object[]> sumPostedByAccount(@Param("startDate") LocalDate startDate, @Param("endDate") LocalDate endDate);
 }
@@ -0,0 +1,146 @@
+package com.market.accounting.bl;
+
+import com.market.accounting.dto.AccountBalanceDto;
+import com.market.accounting.dto.BalanceVerificationDto;
+import com.market.accounting.dto.JournalDto;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Loads ACCOUNTING_BENCHMARK_ROWS (default 10,000,000) posted journal rows spread over a few
+ * benchmark accounts, then compares reading an account balance by summing the journal with
+ * reading it from account_balance, and times the rebuild and verify jobs. Needs an
+ * accounting database, so it only runs when ACCOUNTING_BENCHMARK_DB_URL is set, e.g.
+ * jdbc:postgresql://localhost:15432/accounting. The benchmark rows are deleted afterwards.
+ */
+@SpringBootTest(properties = {"eureka.client.enabled=false", "spring.jpa.show-sql=false"})
+@EnabledIfEnvironmentVariable(named = "ACCOUNTING_BENCHMARK_DB_URL", matches = ".+")
+class AccountBalanceBenchmarkTest {
+
+    private static final int ACCOUNTS = 8;
+    private static final int SUM_ITERATIONS = 5;
+    private static final int BALANCE_ITERATIONS = 1000;
+    private static final int POSTED_ENTRIES = 1000;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("ACCOUNTING_BENCHMARK_DB_URL"));
+        registry.add("spring.datasource.username", () -> envOrDefault("ACCOUNTING_BENCHMARK_DB_USERNAME", "postgres"));
+        registry.add("spring.datasource.password", () -> envOrDefault("ACCOUNTING_BENCHMARK_DB_PASSWORD", "123456"));
+    }
+
+    @Autowired
+    private AccountBalanceBl accountBalanceBl;
+
+    @Autowired
+    private JournalBl journalBl;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void balanceTableReadIsIndependentOfJournalSize() {
+        long rows = Long.parseLong(envOrDefault("ACCOUNTING_BENCHMARK_ROWS", "10000000"));
+        String prefix = "BN" + Long.toString(System.nanoTime() % 1_000_000_000L, 36).toUpperCase();
+        String account = prefix + "-0";
+        try {
+            long loadStart = System.nanoTime();
+            jdbcTemplate.update("INSERT INTO journal (journal_entry_number, transaction_date, posting_date, account_code, " +
+                    "account_name, description, debit_amount, credit_amount, balance_type, created_by, status, created_at, updated_at) " +
+                    "SELECT ? || g, DATE '2024-01-01' + (g % 365)::int, DATE '2024-01-01' + (g % 365)::int, ? || (g % ?), " +
+                    "'Benchmark account', 'Benchmark entry', " +
+                    "CASE WHEN g % 2 = 0 THEN 10.00 ELSE 0 END, CASE WHEN g % 2 = 1 THEN 10.00 ELSE 0 END, " +
+                    "CASE WHEN g % 2 = 0 THEN 'D' ELSE 'C' END, 'benchmark', 'posted', now(), now() " +
+                    "FROM generate_series(1, ?) g", prefix + "-", prefix + "-", ACCOUNTS, rows);
+            jdbcTemplate.execute("ANALYZE journal");
+            long loadMillis = (System.nanoTime() - loadStart) / 1_000_000;
+
+            long rebuildStart = System.nanoTime();
+            accountBalanceBl.rebuild();
+            long rebuildMillis = (System.nanoTime() - rebuildStart) / 1_000_000;
+
+            long[] sums = new long[SUM_ITERATIONS];
+            for (int i = 0; i < SUM_ITERATIONS; i++) {
+                long start = System.nanoTime();
+                jdbcTemplate.queryForList("SELECT SUM(debit_amount), SUM(credit_amount) FROM journal " +
+                        "WHERE account_code = ? AND status = 'posted'", account);
+                sums[i] = System.nanoTime() - start;
+            }
+            long[] reads = new long[BALANCE_ITERATIONS];
+            for (int i = 0; i < BALANCE_ITERATIONS; i++) {
+                long start = System.nanoTime();
+                accountBalanceBl.getBalance(account);
+                reads[i] = System.nanoTime() - start;
+            }
+
+            // Postings through the journal service keep the table current
+            AccountBalanceDto before = accountBalanceBl.getBalance(account);
+            List<JournalDto> entries = new ArrayList<>();
+            for (int i = 0; i < POSTED_ENTRIES; i++) {
+                entries.add(entry(prefix + "-P" + i, account));
+            }
+            long postStart = System.nanoTime();
+            journalBl.createJournalEntries(entries);
+            long postMillis = (System.nanoTime() - postStart) / 1_000_000;
+            AccountBalanceDto after = accountBalanceBl.getBalance(account);
+
+            long verifyStart = System.nanoTime();
+            BalanceVerificationDto verification = accountBalanceBl.verify(false);
+            long verifyMillis = (System.nanoTime() - verifyStart) / 1_000_000;
+
+            System.out.printf("Account balances over %,d journal rows (%d accounts), loaded in %,d ms%n", rows, ACCOUNTS, loadMillis);
+            System.out.printf("  SUM over the journal:     median %,d us%n", median(sums) / 1_000);
+            System.out.printf("  account_balance read:     median %,d us%n", median(reads) / 1_000);
+            System.out.printf("  %d posted entries (batch): %,d ms%n", POSTED_ENTRIES, postMillis);
+            System.out.printf("  rebuild: %,d ms, verify: %,d ms%n", rebuildMillis, verifyMillis);
+
+            assertEquals(before.getPostedEntries() + POSTED_ENTRIES, after.getPostedEntries());
+            assertEquals(0, before.getDebitTotal().add(BigDecimal.valueOf(POSTED_ENTRIES)).compareTo(after.getDebitTotal()));
+            assertTrue(verification.getMismatches().stream().noneMatch(m -> m.getAccountCode().startsWith(prefix)),
+                    "Benchmark accounts differ from the journal");
+            assertTrue(median(reads) < median(sums), "Expected the balance table read to be faster than summing the journal");
+        } finally {
+            jdbcTemplate.update("DELETE FROM journal WHERE account_code LIKE ?", prefix + "-%");
+            jdbcTemplate.update("DELETE FROM account_balance WHERE account_code LIKE ?", prefix + "-%");
+        }
+    }
+
+    private static JournalDto entry(String number, String account) {
+        JournalDto dto = new JournalDto();
+        dto.setJournalEntryNumber(number);
+        dto.setTransactionDate(LocalDate.now());
+        dto.setAccountCode(account);
+        dto.setAccountName("Benchmark account");
+        dto.setDebitAmount(BigDecimal.ONE);
+        dto.setCreditAmount(BigDecimal.ZERO);
+        dto.setDescription("Benchmark posting");
+        dto.setStatus("posted");
+        dto.setCreatedBy("benchmark");
+        return dto;
+    }
+
+    private static long median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static String envOrDefault(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+}
@@ -0,0 +1,160 @@
+package com.market.accounting.repository;
+
+import com.market.accounting.bl.JournalPartitionBl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks with EXPLAIN that the date-bounded journal queries (the SQL Hibernate generates
+ * for findByTransactionDateBetween, findByAccountCodeAndDateRange and
+ * findByTransactionDateAndStatus) only read the partitions of their months, both when
+ * planned with the parameter values and as generic prepared plans. Needs an accounting
+ * database with a partitioned journal, so it only runs when ACCOUNTING_BENCHMARK_DB_URL is
+ * set, e.g. jdbc:postgresql://localhost:15432/accounting.
+ */
+@SpringBootTest(properties = {"eureka.client.enabled=false", "spring.jpa.show-sql=false"})
+@EnabledIfEnvironmentVariable(named = "ACCOUNTING_BENCHMARK_DB_URL", matches = ".+")
+class JournalPartitionPruningTest {
+
+    private static final String BY_DATE_RANGE =
+            "SELECT * FROM journal j WHERE j.transaction_date BETWEEN ? AND ?";
+    private static final String BY_ACCOUNT_AND_DATE_RANGE =
+            "SELECT * FROM journal j WHERE j.account_code = ? AND j.transaction_date BETWEEN ? AND ?";
+    private static final String BY_DATE_AND_STATUS =
+            "SELECT * FROM journal j WHERE j.transaction_date = ? AND j.status = ?";
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("ACCOUNTING_BENCHMARK_DB_URL"));
+        registry.add("spring.datasource.username", () -> envOrDefault("ACCOUNTING_BENCHMARK_DB_USERNAME", "postgres"));
+        registry.add("spring.datasource.password", () -> envOrDefault("ACCOUNTING_BENCHMARK_DB_PASSWORD", "123456"));
+    }
+
+    @Autowired
+    private JournalPartitionRepository journalPartitionRepository;
+
+    @Autowired
+    private JournalPartitionBl journalPartitionBl;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void createPartitions() {
+        assumeTrue(journalPartitionRepository.isJournalPartitioned(), "journal is not partitioned");
+        journalPartitionBl.createPartitions(YearMonth.of(2024, 1), YearMonth.of(2024, 3));
+    }
+
+    @Test
+    void dateRangeReadsOnlyItsMonths() {
+        String plan = explain(BY_DATE_RANGE, date(2024, 2, 1), date(2024, 2, 29));
+        assertScans(plan, "journal_p2024_02");
+        assertSkips(plan, "journal_p2024_01", "journal_p2024_03", "journal_default");
+
+        plan = explain(BY_DATE_RANGE, date(2024, 1, 20), date(2024, 2, 10));
+        assertScans(plan, "journal_p2024_01", "journal_p2024_02");
+        assertSkips(plan, "journal_p2024_03", "journal_default");
+    }
+
+    @Test
+    void accountAndDateRangeReadsOnlyItsMonths() {
+        String plan = explain(BY_ACCOUNT_AND_DATE_RANGE, "1000", date(2024, 3, 1), date(2024, 3, 31));
+        assertScans(plan, "journal_p2024_03");
+        assertSkips(plan, "journal_p2024_01", "journal_p2024_02", "journal_default");
+    }
+
+    @Test
+    void dateAndStatusReadsOnlyItsMonth() {
+        String plan = explain(BY_DATE_AND_STATUS, date(2024, 1, 15), "posted");
+        assertScans(plan, "journal_p2024_01");
+        assertSkips(plan, "journal_p2024_02", "journal_p2024_03", "journal_default");
+    }
+
+    @Test
+    void genericPlansPruneAtExecution() {
+        // A generic plan cannot prune while planning; the executor removes the other partitions
+        String plan = explainGeneric(BY_DATE_RANGE, "2024-02-01", "2024-02-29");
+        assertTrue(plan.contains("Subplans Removed"), plan);
+
+        plan = explainGeneric(BY_DATE_AND_STATUS, "2024-01-15", "posted");
+        assertTrue(plan.contains("Subplans Removed"), plan);
+    }
+
+    // EXPLAIN of a parameterized statement, planned with its parameter values
+    private String explain(String sql, Object... params) {
+        String plan = String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, params));
+        System.out.println(sql + "\n" + plan);
+        return plan;
+    }
+
+    // EXPLAIN of the statement prepared once and executed with a generic plan, the way
+    // a cached prepared statement runs
+    private String explainGeneric(String sql, String... values) {
+        StringBuilder parameterized = new StringBuilder();
+        int param = 0;
+        for (char c : sql.toCharArray()) {
+            parameterized.append(c == '?' ? "$" + ++param : String.valueOf(c));
+        }
+        String arguments = Arrays.stream(values).map(value -> "'" + value + "'").collect(Collectors.joining(", "));
+        String plan = jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PREPARE journal_query AS " + parameterized);
+                try {
+                    statement.execute("SET plan_cache_mode = force_generic_plan");
+                    StringBuilder lines = new StringBuilder();
+                    try (ResultSet rs = statement.executeQuery("EXPLAIN EXECUTE journal_query(" + arguments + ")")) {
+                        while (rs.next()) {
+                            lines.append(rs.getString(1)).append('\n');
+                        }
+                    }
+                    return lines.toString();
+                } finally {
+                    statement.execute("RESET plan_cache_mode");
+                    statement.execute("DEALLOCATE journal_query");
+                }
+            }
+        });
+        System.out.println(sql + " (generic plan)\n" + plan);
+        return plan;
+    }
+
+    private static void assertScans(String plan, String... partitions) {
+        for (String partition : partitions) {
+            assertTrue(plan.contains(" on " + partition), partition + " not scanned:\n" + plan);
+        }
+    }
+
+    private static void assertSkips(String plan, String... partitions) {
+        for (String partition : partitions) {
+            assertFalse(plan.contains(" on " + partition), partition + " scanned:\n" + plan);
+        }
+    }
+
+    private static Date date(int year, int month, int day) {
+        return Date.valueOf(LocalDate.of(year, month, day));
+    }
+
+    private static String envOrDefault(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+}
@@ -8,13 +8,18 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 import jakarta.validation.Valid;
 
 import com.market.sales.bl.CompleSaleBl;
+import com.market.sales.bl.IdempotencyBl;
+import com.market.sales.bl.RequestInProgressException;
+import com.market.sales.dto.OrderDto;
 import com.market.sales.dto.SaleDto;
 import com.market.sales.entity.Sale;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -23,17 +28,23 @@ import java.util.stream.Collectors;
 public class SaleApi {
 
     private CompleSaleBl compleSaleBl;
+    private IdempotencyBl idempotencyBl;
 
     @Autowired
-    public SaleApi(CompleSaleBl compleSaleBl) {
+    public SaleApi(CompleSaleBl compleSaleBl, IdempotencyBl idempotencyBl) {
         this.compleSaleBl = compleSaleBl;
+        this.idempotencyBl = idempotencyBl;
     }
 
     @PostMapping
-    public ResponseEntity<?> createSale(@Valid @RequestBody SaleDto saleDto) {
+    public ResponseEntity<?> createSale(@RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                        @Valid @RequestBody SaleDto saleDto) {
         try {
-            // Create and save the sale using the business logic
-            Sale savedSale = compleSaleBl.createAndSaveSale(saleDto);
+            // Create and save the sale using the business logic; a repeated Idempotency-Key
+            // returns the sale created by the first request instead of running a new saga
+            Sale savedSale = idempotencyKey != null
+                    ? idempotencyBl.createSaleOnce(idempotencyKey, saleDto)
+                    : compleSaleBl.createAndSaveSale(saleDto);
 
             // Convert Sale entity to SaleDto
             SaleDto resultDto = convertToDto(savedSale);
@@ -44,6 +55,10 @@ public class SaleApi {
             // Handle business logic validation errors
             ErrorResponse error = new ErrorResponse("VALIDATION_ERROR", e.getMessage());
             return ResponseEntity.badRequest().body(error);
+        } catch (RequestInProgressException e) {
+            // Same Idempotency-Key still being processed by another request
+            ErrorResponse error = new ErrorResponse("REQUEST_IN_PROGRESS", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
         } catch (RuntimeException e) {
             // Handle transaction failures with compensation
             ErrorResponse error = new ErrorResponse("TRANSACTION_FAILED", e.getMessage());
@@ -55,6 +70,38 @@ public class SaleApi {
         }
     }
 
+    @PostMapping("/orders")
+    public ResponseEntity<?> createOrder(@Valid @RequestBody OrderDto orderDto) {
+        try {
+            // Create and save all order lines as a single saga
+            List<Sale> savedLines = compleSaleBl.createAndSaveOrder(orderDto);
+
+            return ResponseEntity.status(HttpStatus.CREATED).body(convertToOrderDto(savedLines));
+
+        } catch (IllegalArgumentException e) {
+            // Handle business logic validation errors
+            ErrorResponse error = new ErrorResponse("VALIDATION_ERROR", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        } catch (RuntimeException e) {
+            // Handle transaction failures with compensation
+            ErrorResponse error = new ErrorResponse("TRANSACTION_FAILED", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        } catch (Exception e) {
+            // Handle unexpected errors
+            ErrorResponse error = new ErrorResponse("INTERNAL_ERROR", "An unexpected error occurred: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
+    @GetMapping("/orders/{orderNumber}")
+    public ResponseEntity<OrderDto> getOrder(@PathVariable String orderNumber) {
+        List<Sale> lines = compleSaleBl.getOrderLines(orderNumber);
+        if (lines.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(convertToOrderDto(lines));
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<SaleDto> getSaleById(@PathVariable Long id) {
         Sale sale = compleSaleBl.getSaleById(id);
@@ -93,6 +140,35 @@ public class SaleApi {
         return ResponseEntity.ok(saleDtos);
     }
 
+    /**
+     * Converts the sale lines of an order to OrderDto
+     * @param lines The sale lines, all sharing the same order number
+     * @return OrderDto with the lines and order totals
+     */
+    private OrderDto convertToOrderDto(List<Sale> lines) {
+        Sale first = lines.get(0);
+        OrderDto dto = new OrderDto();
+        dto.setOrderNumber(first.getOrderNumber());
+        dto.setLines(lines.stream().map(this::convertToDto).collect(Collectors.toList()));
+        dto.setSaleDate(first.getSaleDate());
+        dto.setCustomerId(first.getCustomerId());
+        dto.setCustomerName(first.getCustomerName());
+        dto.setSalesperson(first.getSalesperson());
+        dto.setPaymentMethod(first.getPaymentMethod());
+        dto.setPaymentStatus(first.getPaymentStatus());
+
+        BigDecimal totalAmount = BigDecimal.ZERO;
+        BigDecimal discountAmount = BigDecimal.ZERO;
+        for (Sale line : lines) {
+            totalAmount = totalAmount.add(line.getTotalAmount() != null ? line.getTotalAmount() : BigDecimal.ZERO);
+            discountAmount = discountAmount.add(line.getDiscountAmount() != null ? line.getDiscountAmount() : BigDecimal.ZERO);
+        }
+        dto.setTotalAmount(totalAmount);
+        dto.setDiscountAmount(discountAmount);
+        dto.setFinalAmount(totalAmount.subtract(discountAmount));
+        return dto;
+    }
+
     /**
      * Converts a Sale entity to SaleDto
      * @param sale The Sale entity to convert
@@ -102,6 +178,7 @@ public class SaleApi {
         SaleDto dto = new SaleDto();
         dto.setId(sale.getId());
         dto.setSaleNumber(sale.getSaleNumber());
+        dto.setOrderNumber(sale.getOrderNumber());
         dto.setProductId(sale.getProductId());
         dto.setQuantity(sale.getQuantity());
         dto.setUnitPrice(sale.getUnitPrice());
@@ -1,28 +1,85 @@
 package com.market.sales.bl;
 
+import com.market.sales.dto.OrderDto;
 import com.market.sales.dto.SaleDto;
 import com.market.sales.entity.Sale;
+import com.market.sales.entity.SaleSaga.SagaType;
 import com.market.sales.repository.SaleRepository;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.client.RestClientException;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 
 @Service
 public class CompleSaleBl {
 
+    private static final Logger log = LoggerFactory.getLogger(CompleSaleBl.class);
+    
+    private static final String RESERVATIONS_URL = "http://warehouse/api/products/reservations";
+    
+    /**
+     * Journal step of a sale saga (sales.saga.journal-mode)
+     * OUTBOX queues the entry with the sale and a background relay posts it, SEQUENTIAL posts it
+     * after the stock reservation, PARALLEL posts it concurrently with the stock reservation
+     * (orders always run their steps sequentially)
+     */
+    public enum JournalMode {
+        OUTBOX, SEQUENTIAL, PARALLEL
+    }
+    
+    // Saga tags of the sales.saga metrics
+    private static final String SALE_SAGA = "sale";
+    private static final String ORDER_SAGA = "order";
+
     @Autowired
     private SaleRepository saleRepository;
     
     @Autowired
     private RestTemplate restTemplate;
+    
+    @Autowired
+    @Qualifier("sagaExecutor")
+    private Executor sagaExecutor;
+    
+    @Autowired
+    private JournalOutboxBl journalOutboxBl;
+    
+    @Autowired
+    private ProductCacheBl productCacheBl;
+    
+    @Autowired
+    private SaleSagaBl saleSagaBl;
+    
+    @Autowired
+    private SagaStepTimer sagaStepTimer;
+    
+    // How the journal step runs, see JournalMode
+    @Value("${sales.saga.journal-mode:OUTBOX}")
+    private JournalMode journalMode = JournalMode.OUTBOX;
+    
+    // How long warehouse holds reserved stock before giving it back if the saga never commits
+    @Value("${sales.saga.reservation.ttl-seconds:300}")
+    private int reservationTtlSeconds = 300;
 
     /**
      * Creates and persists a new Sale with full integration to warehouse and accounting services
@@ -44,14 +101,13 @@ public class CompleSaleBl {
             throw new IllegalArgumentException("Product ID cannot be null");
         }
         
-        // 🎯 Track compensation data for rollback
-        CompensationData compensationData = new CompensationData();
+        // 🎯 Durable saga log entry, created before the first remote side effect
+        Long sagaId = null;
+        Timer.Sample sagaTimer = sagaStepTimer.startSaga();
         
         try {
-            // 🔍 STEP 1: Validate product exists and has sufficient stock
-            ProductDto product = validateProductAndStock(saleDto.getProductId(), saleDto.getQuantity());
-            compensationData.setProductValidated(true);
-            compensationData.setOriginalStockQuantity(product.getStockQuantity());
+            // 🔍 STEP 1: Validate product exists (cached metadata, stock is checked by the warehouse reservation in step 5)
+            ProductDto product = sagaStepTimer.step(SALE_SAGA, "validate", () -> validateProduct(saleDto.getProductId()));
             
             // 🔢 STEP 2: Generate a unique sale number if not provided
             String saleNumber = saleDto.getSaleNumber();
@@ -62,121 +118,219 @@ public class CompleSaleBl {
             // 🛍️ STEP 3: Create the sale entity
             Sale sale = createSaleEntity(saleDto, saleNumber, product);
             
+            // 📝 Start the saga log (own transaction, survives a crash of this instance)
+            sagaId = sagaStepTimer.step(SALE_SAGA, "saga_log", () -> saleSagaBl.start(SagaType.SALE, sale.getSaleNumber()));
+            Long saleSagaId = sagaId;
+            
             // 💾 STEP 4: Persist the sale first (to get ID for references)
-            Sale savedSale = saleRepository.save(sale);
-            compensationData.setSaleCreated(true);
-            compensationData.setSaleId(savedSale.getId());
-            compensationData.setSaleNumber(savedSale.getSaleNumber());
+            Sale savedSale = sagaStepTimer.step(SALE_SAGA, "persist", () -> saleRepository.save(sale));
+            
+            log.debug("Step 4: sale {} created with ID {}", savedSale.getSaleNumber(), savedSale.getId());
             
-            System.out.println("✅ Step 4: Sale created with ID: " + savedSale.getId());
+            // The sale number doubles as the warehouse reservation key
+            List<StockChangeDto> stockChanges = List.of(new StockChangeDto(saleDto.getProductId(), saleDto.getQuantity()));
+            String reference = "sale " + savedSale.getSaleNumber();
             
-            // 📦 STEP 5: Update stock in warehouse service
-            updateProductStockWithCompensation(saleDto.getProductId(), saleDto.getQuantity(), compensationData);
+            if (journalMode == JournalMode.OUTBOX) {
+                // 📦 STEP 5: Reserve stock in warehouse service
+                sagaStepTimer.step(SALE_SAGA, "stock", () ->
+                        reserveStockWithCompensation(savedSale.getSaleNumber(), stockChanges, reference, saleSagaId));
+                
+                // 📨 STEP 6: Queue journal entry in the outbox, committed together with the sale
+                sagaStepTimer.step(SALE_SAGA, "journal_outbox", () ->
+                        journalOutboxBl.enqueue(createJournalEntryFromSale(savedSale), savedSale.getSaleNumber()));
+                
+                log.debug("Step 6: journal entry for sale {} queued for accounting", savedSale.getSaleNumber());
+            } else if (journalMode == JournalMode.PARALLEL) {
+                // 📦💰 STEPS 5 & 6: Reserve stock and register journal entry concurrently
+                reserveStockAndRegisterJournalInParallel(stockChanges, savedSale, sagaId);
+            } else {
+                // 📦 STEP 5: Reserve stock in warehouse service
+                sagaStepTimer.step(SALE_SAGA, "stock", () ->
+                        reserveStockWithCompensation(savedSale.getSaleNumber(), stockChanges, reference, saleSagaId));
+                
+                // 💰 STEP 6: Register sale in accounting journal
+                sagaStepTimer.step(SALE_SAGA, "journal", () -> registerSaleInJournalWithCompensation(savedSale, saleSagaId));
+            }
             
-            System.out.println("✅ Step 5: Stock updated successfully");
+            // 📦 STEP 7: Every other step succeeded, turn the reservation into a stock decrease
+            sagaStepTimer.step(SALE_SAGA, "stock_commit", () -> commitStockReservation(savedSale.getSaleNumber(), reference));
             
-            // 💰 STEP 6: Register sale in accounting journal
-            registerSaleInJournalWithCompensation(savedSale, compensationData);
+            // ✅ Mark the saga completed, committed together with the sale
+            saleSagaBl.complete(sagaId);
             
-            System.out.println("✅ Step 6: Journal entry created successfully");
-            System.out.println("🎉 Sale transaction completed successfully: " + savedSale.getSaleNumber());
+            sagaStepTimer.stopSaga(sagaTimer, SALE_SAGA, SagaStepTimer.SUCCESS);
+            log.info("Sale transaction completed successfully: {}", savedSale.getSaleNumber());
             
             return savedSale;
             
         } catch (Exception e) {
-            System.err.println("❌ Error during sale process: " + e.getMessage());
-            System.err.println("🔄 Starting compensation/rollback process...");
+            sagaStepTimer.stopSaga(sagaTimer, SALE_SAGA, SagaStepTimer.FAILURE);
+            log.warn("Error during sale process: {}", e.getMessage());
             
-            // Execute compensation/rollback
-            executeCompensation(compensationData);
+            // Hand remote compensations to the saga worker; the sale row rolls back with this transaction
+            scheduleCompensation(sagaId, e);
             
-            // Re-throw the exception after compensation
+            // Re-throw the exception without waiting for compensation
             throw new RuntimeException("Sale transaction failed and was rolled back: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Validates product exists and has sufficient stock via Warehouse service
-     * @param productId The product ID to validate
-     * @param quantity The quantity needed
-     * @return ProductDto with product information
-     * @throws IllegalArgumentException if product doesn't exist or insufficient stock
+     * Creates and persists a multi-line order as a single saga
+     * Stock for every line is reserved with one all-or-nothing warehouse call, one aggregated
+     * journal entry is registered, and compensation treats the whole order as one unit
+     * @param orderDto The order and its lines
+     * @return The persisted sale lines of the order
      */
-    private ProductDto validateProductAndStock(Integer productId, Integer quantity) {
+    @Transactional
+    public List<Sale> createAndSaveOrder(OrderDto orderDto) {
+        validateOrder(orderDto);
+        
+        // 🎯 Durable saga log entry, created before the first remote side effect
+        Long sagaId = null;
+        Timer.Sample sagaTimer = sagaStepTimer.startSaga();
+        
         try {
-            // � Call warehouse service to get product info using service name
-            String productUrl = "http://warehouse/api/products/" + productId;
-            ProductDto product = restTemplate.getForObject(productUrl, ProductDto.class);
+            // 🔍 STEP 1: Validate every product of the order (cached metadata, stock is checked by the reservation in step 2)
+            Map<Integer, ProductDto> products = sagaStepTimer.step(ORDER_SAGA, "validate", () -> {
+                Map<Integer, ProductDto> validated = new HashMap<>();
+                for (SaleDto line : orderDto.getLines()) {
+                    validated.computeIfAbsent(line.getProductId(), this::validateProduct);
+                }
+                return validated;
+            });
             
-            if (product == null) {
-                throw new IllegalArgumentException("Product with ID " + productId + " not found");
+            // 🔢 Generate the order number shared by all lines
+            String orderNumber = generateOrderNumber();
+            sagaId = sagaStepTimer.step(ORDER_SAGA, "saga_log", () -> saleSagaBl.start(SagaType.ORDER, orderNumber));
+            Long orderSagaId = sagaId;
+            
+            // 📦 STEP 2: Reserve stock for every line with one warehouse call (all-or-nothing)
+            List<StockChangeDto> stockChanges = orderDto.getLines().stream()
+                    .map(line -> new StockChangeDto(line.getProductId(), line.getQuantity()))
+                    .collect(Collectors.toList());
+            String reference = "order " + orderNumber;
+            sagaStepTimer.step(ORDER_SAGA, "stock", () ->
+                    reserveStockWithCompensation(orderNumber, stockChanges, reference, orderSagaId));
+            
+            log.debug("Step 2: stock reserved for {} lines of order {}", stockChanges.size(), orderNumber);
+            
+            // 💾 STEP 3: Persist one sale per order line
+            List<Sale> lines = new ArrayList<>();
+            for (SaleDto lineDto : orderDto.getLines()) {
+                Sale sale = createSaleEntity(toOrderLine(orderDto, lineDto), generateSaleNumber(),
+                                             products.get(lineDto.getProductId()));
+                sale.setOrderNumber(orderNumber);
+                lines.add(sale);
             }
+            List<Sale> savedLines = sagaStepTimer.step(ORDER_SAGA, "persist", () -> saleRepository.saveAll(lines));
             
-            // ✅ Check stock availability
-            if (product.getStockQuantity() < quantity) {
-                throw new IllegalArgumentException(
-                    String.format("Insufficient stock. Available: %d, Requested: %d", 
-                                product.getStockQuantity(), quantity)
-                );
+            log.debug("Step 3: {} sale lines created for order {}", savedLines.size(), orderNumber);
+            
+            // 💰 STEP 4: Register a single aggregated journal entry for the order
+            JournalEntryDto journalEntry = createJournalEntryFromOrder(orderNumber, savedLines);
+            if (journalMode == JournalMode.OUTBOX) {
+                sagaStepTimer.step(ORDER_SAGA, "journal_outbox", () -> journalOutboxBl.enqueue(journalEntry, orderNumber));
+            } else {
+                sagaStepTimer.step(ORDER_SAGA, "journal", () ->
+                        registerJournalEntryWithCompensation(journalEntry, reference, orderSagaId));
             }
             
-            return product;
+            // 📦 STEP 5: Turn the reservation into a stock decrease
+            sagaStepTimer.step(ORDER_SAGA, "stock_commit", () -> commitStockReservation(orderNumber, reference));
+            
+            // ✅ Mark the saga completed, committed together with the order lines
+            saleSagaBl.complete(sagaId);
+            
+            sagaStepTimer.stopSaga(sagaTimer, ORDER_SAGA, SagaStepTimer.SUCCESS);
+            log.info("Order transaction completed successfully: {}", orderNumber);
+            
+            return savedLines;
             
-        } catch (RestClientException e) {
-            throw new RuntimeException("Error communicating with warehouse service: " + e.getMessage());
         } catch (Exception e) {
-            throw new IllegalArgumentException("Error validating product stock: " + e.getMessage());
+            sagaStepTimer.stopSaga(sagaTimer, ORDER_SAGA, SagaStepTimer.FAILURE);
+            log.warn("Error during order process: {}", e.getMessage());
+            
+            // Hand remote compensations for the whole order to the saga worker
+            scheduleCompensation(sagaId, e);
+            
+            // Re-throw the exception without waiting for compensation
+            throw new RuntimeException("Order transaction failed and was rolled back: " + e.getMessage(), e);
         }
     }
     
     /**
-     * Updates product stock after successful sale via Warehouse service
-     * @param productId The product ID
-     * @param quantitySold The quantity sold (reduces stock)
+     * Validates an order before any remote call is made
+     * @param orderDto The order to validate
+     * @throws IllegalArgumentException if the order or one of its lines is invalid
      */
-    private void updateProductStock(Integer productId, Integer quantitySold) {
-        try {
-            // � Get current product to calculate new stock using service name
-            String getProductUrl = "http://warehouse/api/products/" + productId;
-            ProductDto currentProduct = restTemplate.getForObject(getProductUrl, ProductDto.class);
-            
-            if (currentProduct != null) {
-                // Calculate new stock quantity
-                Integer newStockQuantity = currentProduct.getStockQuantity() - quantitySold;
-                
-                // 📦 Update stock via warehouse service using service name
-                String updateStockUrl = "http://warehouse/api/products/" + productId + "/stock?newStock=" + newStockQuantity;
-                restTemplate.put(updateStockUrl, null);
-                
-                System.out.println("Successfully updated stock for product " + productId + 
-                                 ". New stock: " + newStockQuantity);
+    private void validateOrder(OrderDto orderDto) {
+        if (orderDto == null) {
+            throw new IllegalArgumentException("OrderDto cannot be null");
+        }
+        
+        if (orderDto.getLines() == null || orderDto.getLines().isEmpty()) {
+            throw new IllegalArgumentException("An order must contain at least one line");
+        }
+        
+        for (SaleDto line : orderDto.getLines()) {
+            if (line == null || line.getProductId() == null) {
+                throw new IllegalArgumentException("Product ID cannot be null");
+            }
+            if (line.getQuantity() == null || line.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Quantity must be greater than 0");
             }
-            
-        } catch (Exception e) {
-            // Log error but don't fail the sale - stock update can be retried
-            System.err.println("Warning: Failed to update product stock for product " + productId + 
-                             ": " + e.getMessage());
         }
     }
     
     /**
-     * Registers sale in accounting journal via Accounting service
-     * @param sale The completed sale
+     * Builds the SaleDto of one order line, taking customer and payment data from the order
+     */
+    private SaleDto toOrderLine(OrderDto orderDto, SaleDto lineDto) {
+        SaleDto line = new SaleDto();
+        line.setProductId(lineDto.getProductId());
+        line.setQuantity(lineDto.getQuantity());
+        line.setUnitPrice(lineDto.getUnitPrice());
+        line.setDiscountPercentage(lineDto.getDiscountPercentage());
+        line.setSaleDate(orderDto.getSaleDate());
+        line.setCustomerId(orderDto.getCustomerId());
+        line.setCustomerName(orderDto.getCustomerName());
+        line.setSalesperson(orderDto.getSalesperson());
+        line.setPaymentMethod(orderDto.getPaymentMethod());
+        line.setPaymentStatus(orderDto.getPaymentStatus());
+        line.setNotes(lineDto.getNotes() != null ? lineDto.getNotes() : orderDto.getNotes());
+        return line;
+    }
+    
+    /**
+     * Validates product exists and can be sold, using the local product cache
+     * Stock is not checked here: cached stock levels may be stale, and the warehouse
+     * reservation in step 5 is the authoritative stock check
+     * @param productId The product ID to validate
+     * @return ProductDto with product information
+     * @throws IllegalArgumentException if product doesn't exist or is discontinued
      */
-    private void registerSaleInJournal(Sale sale) {
+    private ProductDto validateProduct(Integer productId) {
         try {
-            // � Create journal entry for the sale using service name
-            JournalEntryDto journalEntry = createJournalEntryFromSale(sale);
-            String journalUrl = "http://accounting/api/accounting/journals";
+            // 🗂️ Product metadata comes from the cache, warehouse is only called on a miss
+            ProductDto product = productCacheBl.getProduct(productId);
+            
+            if (product == null) {
+                throw new IllegalArgumentException("Product with ID " + productId + " not found");
+            }
             
-            restTemplate.postForObject(journalUrl, journalEntry, JournalEntryDto.class);
+            // Warehouse sends the status in upper case (DISCONTINUED)
+            if ("discontinued".equalsIgnoreCase(product.getStatus())) {
+                throw new IllegalArgumentException("Product with ID " + productId + " is discontinued");
+            }
             
-            System.out.println("Successfully registered journal entry for sale " + sale.getSaleNumber());
+            return product;
             
+        } catch (RestClientException e) {
+            throw new RuntimeException("Error communicating with warehouse service: " + e.getMessage());
         } catch (Exception e) {
-            // Log error but don't fail the sale - journal entry can be retried
-            System.err.println("Warning: Failed to register sale in journal for sale " + 
-                             sale.getSaleNumber() + ": " + e.getMessage());
+            throw new IllegalArgumentException("Error validating product: " + e.getMessage());
         }
     }
     
@@ -203,142 +357,172 @@ public class CompleSaleBl {
         journal.setDebitAmount(BigDecimal.ZERO);
         journal.setCreditAmount(sale.getFinalAmount() != null ? sale.getFinalAmount() : sale.getTotalAmount());
         
-        journal.setStatus("draft");
+        // Posted: the entry counts toward balances at once, a failed saga reverses it
+        journal.setStatus("posted");
         journal.setCreatedBy("sales-service");
         return journal;
     }
     
     /**
-     * Updates product stock after successful sale via Warehouse service with compensation tracking
-     * @param productId The product ID
-     * @param quantitySold The quantity sold (reduces stock)
-     * @param compensationData Compensation data for rollback
+     * Creates one aggregated journal entry for all lines of an order
+     * @param orderNumber The order number
+     * @param lines The persisted order lines
+     * @return JournalEntryDto for accounting service
+     */
+    private JournalEntryDto createJournalEntryFromOrder(String orderNumber, List<Sale> lines) {
+        JournalEntryDto journal = new JournalEntryDto();
+        // Order number format: "ORD-20250903-B30BAD" -> "JE20250903B30BAD"
+        String datePart = orderNumber.substring(4, 12);
+        String randomPart = orderNumber.substring(13);
+        journal.setJournalEntryNumber("JE" + datePart + randomPart);
+        
+        BigDecimal orderAmount = BigDecimal.ZERO;
+        for (Sale line : lines) {
+            BigDecimal discount = line.getDiscountAmount() != null ? line.getDiscountAmount() : BigDecimal.ZERO;
+            orderAmount = orderAmount.add(line.getTotalAmount().subtract(discount));
+        }
+        
+        LocalDate saleDate = lines.get(0).getSaleDate();
+        journal.setTransactionDate(saleDate);
+        journal.setPostingDate(saleDate);
+        journal.setAccountCode("4000"); // Sales Revenue account
+        journal.setAccountName("Sales Revenue");
+        journal.setDescription("Order: " + orderNumber + " - " + lines.size() + " lines");
+        
+        // For sales revenue, we use credit amount (increases revenue)
+        journal.setDebitAmount(BigDecimal.ZERO);
+        journal.setCreditAmount(orderAmount);
+        
+        journal.setStatus("posted");
+        journal.setCreatedBy("sales-service");
+        return journal;
+    }
+    
+    /**
+     * Reserves stock for all lines of a sale or order with a single all-or-nothing warehouse call
+     * The reservation key is logged before the call, so compensation can release the hold even
+     * if this instance dies before the response arrives; a hold never committed also expires
+     * on its own after the reservation TTL
+     * @param reservationKey The sale or order number, used as warehouse reservation key
+     * @param stockChanges One entry per product
+     * @param reference Human readable reference of the source document (for messages)
+     * @param sagaId The saga log entry that records the step for compensation
      */
-    private void updateProductStockWithCompensation(Integer productId, Integer quantitySold, CompensationData compensationData) {
+    private void reserveStockWithCompensation(String reservationKey, List<StockChangeDto> stockChanges,
+                                              String reference, Long sagaId) {
+        // Track for compensation before the remote side effect
+        saleSagaBl.recordStockReservation(sagaId, reservationKey);
+        
         try {
-            // 📦 Get current product to calculate new stock using service name
-            String getProductUrl = "http://warehouse/api/products/" + productId;
-            ProductDto currentProduct = restTemplate.getForObject(getProductUrl, ProductDto.class);
+            StockReservationRequestDto request = new StockReservationRequestDto(reservationKey, reservationTtlSeconds, stockChanges);
+            restTemplate.postForObject(RESERVATIONS_URL, request, StockReservationDto.class);
             
-            if (currentProduct != null) {
-                // Calculate new stock quantity
-                Integer newStockQuantity = currentProduct.getStockQuantity() - quantitySold;
-                
-                // 📦 Update stock via warehouse service using service name
-                String updateStockUrl = "http://warehouse/api/products/" + productId + "/stock?newStock=" + newStockQuantity;
-                restTemplate.put(updateStockUrl, null);
-                
-                // Track for compensation
-                compensationData.setStockUpdated(true);
-                compensationData.setProductId(productId);
-                compensationData.setQuantityReduced(quantitySold);
-                
-                System.out.println("Successfully updated stock for product " + productId + 
-                                 ". New stock: " + newStockQuantity);
-            }
+            log.debug("Successfully reserved stock for {}", reference);
             
+        } catch (HttpClientErrorException.Conflict e) {
+            throw new RuntimeException("Insufficient stock for " + reference, e);
+        } catch (HttpClientErrorException.NotFound e) {
+            throw new RuntimeException(reference + " contains a product that does not exist", e);
         } catch (Exception e) {
-            throw new RuntimeException("Failed to update product stock for product " + productId + ": " + e.getMessage(), e);
+            throw new RuntimeException("Failed to reserve product stock for " + reference + ": " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Commits the stock reservation of a sale or order, decreasing warehouse stock
+     * @param reservationKey The sale or order number
+     * @param reference Human readable reference of the source document (for messages)
+     */
+    private void commitStockReservation(String reservationKey, String reference) {
+        try {
+            restTemplate.postForObject(RESERVATIONS_URL + "/" + reservationKey + "/commit", null, StockReservationDto.class);
+        } catch (HttpClientErrorException.Conflict e) {
+            throw new RuntimeException("Stock reservation for " + reference + " expired before it was committed", e);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to commit stock reservation for " + reference + ": " + e.getMessage(), e);
         }
     }
     
     /**
      * Registers sale in accounting journal via Accounting service with compensation tracking
      * @param sale The completed sale
-     * @param compensationData Compensation data for rollback
+     * @param sagaId The saga log entry that records the step for compensation
+     */
+    private void registerSaleInJournalWithCompensation(Sale sale, Long sagaId) {
+        registerJournalEntryWithCompensation(createJournalEntryFromSale(sale), "sale " + sale.getSaleNumber(), sagaId);
+    }
+    
+    /**
+     * Posts a journal entry via Accounting service with compensation tracking
+     * @param journalEntry The journal entry to post
+     * @param reference Human readable reference of the source document (for messages)
+     * @param sagaId The saga log entry that records the step for compensation
      */
-    private void registerSaleInJournalWithCompensation(Sale sale, CompensationData compensationData) {
+    private void registerJournalEntryWithCompensation(JournalEntryDto journalEntry, String reference, Long sagaId) {
         try {
-            // 💰 Create journal entry for the sale using service name
-            JournalEntryDto journalEntry = createJournalEntryFromSale(sale);
+            // 💰 Post the journal entry using service name
             String journalUrl = "http://accounting/api/accounting/journals";
             
             JournalEntryDto createdEntry = restTemplate.postForObject(journalUrl, journalEntry, JournalEntryDto.class);
             
             if (createdEntry != null) {
                 // Track for compensation
-                compensationData.setJournalEntryCreated(true);
-                compensationData.setJournalEntryId(createdEntry.getId());
-                compensationData.setJournalEntryNumber(createdEntry.getJournalEntryNumber());
+                saleSagaBl.recordJournalEntry(sagaId, createdEntry);
             }
             
-            System.out.println("Successfully registered journal entry for sale " + sale.getSaleNumber());
+            log.debug("Successfully registered journal entry for {}", reference);
             
         } catch (Exception e) {
-            throw new RuntimeException("Failed to register sale in journal for sale " + sale.getSaleNumber() + ": " + e.getMessage(), e);
+            throw new RuntimeException("Failed to register journal entry for " + reference + ": " + e.getMessage(), e);
         }
     }
     
     /**
-     * Executes compensation/rollback operations when transaction fails
-     * @param compensationData Data needed for rollback operations
+     * Runs the warehouse reservation step and the accounting journal step concurrently
+     * Waits for both branches to finish, so compensation always sees every step that succeeded
+     * @param stockChanges The stock to reserve
+     * @param savedSale The persisted sale
+     * @param sagaId The saga log entry that records the step for compensation
      */
-    private void executeCompensation(CompensationData compensationData) {
-        System.out.println("🔄 Executing compensation actions...");
+    private void reserveStockAndRegisterJournalInParallel(List<StockChangeDto> stockChanges, Sale savedSale, Long sagaId) {
+        CompletableFuture<Void> stockStep = CompletableFuture.runAsync(
+                () -> sagaStepTimer.step(SALE_SAGA, "stock", () ->
+                        reserveStockWithCompensation(savedSale.getSaleNumber(), stockChanges,
+                                                     "sale " + savedSale.getSaleNumber(), sagaId)),
+                sagaExecutor);
+        CompletableFuture<Void> journalStep = CompletableFuture.runAsync(
+                () -> sagaStepTimer.step(SALE_SAGA, "journal", () -> registerSaleInJournalWithCompensation(savedSale, sagaId)),
+                sagaExecutor);
         
-        // Rollback in reverse order (LIFO - Last In, First Out)
-        
-        // 💰 STEP 6 ROLLBACK: Delete journal entry if created
-        if (compensationData.isJournalEntryCreated()) {
-            rollbackJournalEntry(compensationData);
-        }
-        
-        // 📦 STEP 5 ROLLBACK: Restore stock if updated
-        if (compensationData.isStockUpdated()) {
-            rollbackStockUpdate(compensationData);
-        }
-        
-        // 💾 STEP 4 ROLLBACK: Delete sale record if created
-        if (compensationData.isSaleCreated()) {
-            rollbackSaleCreation(compensationData);
-        }
-        
-        System.out.println("✅ Compensation completed");
-    }
-    
-    /**
-     * Rollback journal entry creation
-     */
-    private void rollbackJournalEntry(CompensationData compensationData) {
         try {
-            if (compensationData.getJournalEntryId() != null) {
-                String deleteUrl = "http://accounting/api/accounting/journals/" + compensationData.getJournalEntryId();
-                restTemplate.delete(deleteUrl);
-                System.out.println("🔄 Rolled back journal entry: " + compensationData.getJournalEntryNumber());
+            // allOf completes only after both branches are done, even if one of them fails early
+            CompletableFuture.allOf(stockStep, journalStep).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
             }
-        } catch (Exception e) {
-            System.err.println("⚠️ Warning: Failed to rollback journal entry: " + e.getMessage());
+            throw new RuntimeException(cause.getMessage(), cause);
         }
     }
     
     /**
-     * Rollback stock update
+     * Marks the saga as failed so the saga worker compensates its remote steps asynchronously
+     * Local changes (sale rows, outbox entries) roll back with the failed transaction
+     * @param sagaId The saga log entry, null if the saga failed before it was started
+     * @param failure The failure that aborted the saga
      */
-    private void rollbackStockUpdate(CompensationData compensationData) {
-        try {
-            if (compensationData.getProductId() != null && compensationData.getOriginalStockQuantity() != null) {
-                String restoreStockUrl = "http://warehouse/api/products/" + compensationData.getProductId() + 
-                                        "/stock?newStock=" + compensationData.getOriginalStockQuantity();
-                restTemplate.put(restoreStockUrl, null);
-                System.out.println("🔄 Rolled back stock for product " + compensationData.getProductId() + 
-                                 " to original quantity: " + compensationData.getOriginalStockQuantity());
-            }
-        } catch (Exception e) {
-            System.err.println("⚠️ Warning: Failed to rollback stock update: " + e.getMessage());
+    private void scheduleCompensation(Long sagaId, Exception failure) {
+        if (sagaId == null) {
+            // Failed before any remote side effect: nothing to compensate
+            return;
         }
-    }
-    
-    /**
-     * Rollback sale creation
-     */
-    private void rollbackSaleCreation(CompensationData compensationData) {
         try {
-            if (compensationData.getSaleId() != null) {
-                saleRepository.deleteById(compensationData.getSaleId());
-                System.out.println("🔄 Rolled back sale creation: " + compensationData.getSaleNumber());
-            }
+            saleSagaBl.fail(sagaId, failure.getMessage());
+            log.info("Compensation scheduled for saga {}", sagaId);
         } catch (Exception e) {
-            System.err.println("⚠️ Warning: Failed to rollback sale creation: " + e.getMessage());
+            // The saga stays STARTED and is recovered by the worker once it is considered abandoned
+            log.error("Failed to schedule compensation for saga {}: {}", sagaId, e.getMessage());
         }
     }
     
@@ -351,6 +535,15 @@ public class CompleSaleBl {
                UUID.randomUUID().toString().substring(0, 6).toUpperCase();
     }
     
+    /**
+     * Generates a unique order number
+     * @return Generated order number
+     */
+    private String generateOrderNumber() {
+        return "ORD-" + LocalDate.now().toString().replace("-", "") + "-" + 
+               UUID.randomUUID().toString().substring(0, 6).toUpperCase();
+    }
+    
     /**
      * Creates a Sale entity from SaleDto and product information
      * @param saleDto The sale DTO
@@ -413,6 +606,15 @@ public class CompleSaleBl {
         return saleRepository.findBySaleNumber(saleNumber).orElse(null);
     }
 
+    /**
+     * Gets the sale lines of an order
+     * @param orderNumber The order number
+     * @return List of sale lines, empty if the order does not exist
+     */
+    public List<Sale> getOrderLines(String orderNumber) {
+        return saleRepository.findByOrderNumberOrderByIdAsc(orderNumber);
+    }
+
     /**
      * Gets all sales
      * @return List of all sales
@@ -512,6 +714,79 @@ class ProductDto {
     public void setStatus(String status) { this.status = status; }
 }
 
+/**
+ * DTO for one line of a bulk Warehouse stock operation
+ */
+class StockChangeDto {
+    private Integer productId;
+    private Integer quantity;
+    
+    // Default constructor
+    public StockChangeDto() {}
+    
+    public StockChangeDto(Integer productId, Integer quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+    
+    // Getters and setters
+    public Integer getProductId() { return productId; }
+    public void setProductId(Integer productId) { this.productId = productId; }
+    
+    public Integer getQuantity() { return quantity; }
+    public void setQuantity(Integer quantity) { this.quantity = quantity; }
+}
+
+/**
+ * DTO to place a stock reservation in Warehouse service
+ */
+class StockReservationRequestDto {
+    private String reservationKey;
+    private Integer ttlSeconds;
+    private List<StockChangeDto> lines;
+    
+    // Default constructor
+    public StockReservationRequestDto() {}
+    
+    public StockReservationRequestDto(String reservationKey, Integer ttlSeconds, List<StockChangeDto> lines) {
+        this.reservationKey = reservationKey;
+        this.ttlSeconds = ttlSeconds;
+        this.lines = lines;
+    }
+    
+    // Getters and setters
+    public String getReservationKey() { return reservationKey; }
+    public void setReservationKey(String reservationKey) { this.reservationKey = reservationKey; }
+    
+    public Integer getTtlSeconds() { return ttlSeconds; }
+    public void setTtlSeconds(Integer ttlSeconds) { this.ttlSeconds = ttlSeconds; }
+    
+    public List<StockChangeDto> getLines() { return lines; }
+    public void setLines(List<StockChangeDto> lines) { this.lines = lines; }
+}
+
+/**
+ * DTO for a stock reservation returned by Warehouse service
+ */
+class StockReservationDto {
+    private String reservationKey;
+    private String status;
+    private List<StockChangeDto> lines;
+    
+    // Default constructor
+    public StockReservationDto() {}
+    
+    // Getters and setters
+    public String getReservationKey() { return reservationKey; }
+    public void setReservationKey(String reservationKey) { this.reservationKey = reservationKey; }
+    
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    
+    public List<StockChangeDto> getLines() { return lines; }
+    public void setLines(List<StockChangeDto> lines) { this.lines = lines; }
+}
+
 /**
  * DTO for Journal Entry communication with Accounting service
  */
@@ -565,60 +840,3 @@ class JournalEntryDto {
     public String getCreatedBy() { return createdBy; }
     public void setCreatedBy(String createdBy) { this.createdBy = createdBy; }
 }
-
-/**
- * Data class to track compensation/rollback operations
- */
-class CompensationData {
-    // Step tracking
-    private boolean productValidated = false;
-    private boolean saleCreated = false;
-    private boolean stockUpdated = false;
-    private boolean journalEntryCreated = false;
-    
-    // Data for rollback
-    private Integer originalStockQuantity;
-    private Long saleId;
-    private String saleNumber;
-    private Integer productId;
-    private Integer quantityReduced;
-    private Integer journalEntryId;
-    private String journalEntryNumber;
-    
-    // Default constructor
-    public CompensationData() {}
-    
-    // Getters and setters
-    public boolean isProductValidated() { return productValidated; }
-    public void setProductValidated(boolean productValidated) { this.productValidated = productValidated; }
-    
-    public boolean isSaleCreated() { return saleCreated; }
-    public void setSaleCreated(boolean saleCreated) { this.saleCreated = saleCreated; }
-    
-    public boolean isStockUpdated() { return stockUpdated; }
-    public void setStockUpdated(boolean stockUpdated) { this.stockUpdated = stockUpdated; }
-    
-    public boolean isJournalEntryCreated() { return journalEntryCreated; }
-    public void setJournalEntryCreated(boolean journalEntryCreated) { this.journalEntryCreated = journalEntryCreated; }
-    
-    public Integer getOriginalStockQuantity() { return originalStockQuantity; }
-    public void setOriginalStockQuantity(Integer originalStockQuantity) { this.originalStockQuantity = originalStockQuantity; }
-    
-    public Long getSaleId() { return saleId; }
-    public void setSaleId(Long saleId) { this.saleId = saleId; }
-    
-    public String getSaleNumber() { return saleNumber; }
-    public void setSaleNumber(String saleNumber) { this.saleNumber = saleNumber; }
-    
-    public Integer getProductId() { return productId; }
-    public void setProductId(Integer productId) { this.productId = productId; }
-    
-    public Integer getQuantityReduced() { return quantityReduced; }
-    public void setQuantityReduced(Integer quantityReduced) { this.quantityReduced = quantityReduced; }
-    
-    public Integer getJournalEntryId() { return journalEntryId; }
-    public void setJournalEntryId(Integer journalEntryId) { this.journalEntryId = journalEntryId; }
-    
-    public String getJournalEntryNumber() { return journalEntryNumber; }
-    public void setJournalEntryNumber(String journalEntryNumber) { this.journalEntryNumber = journalEntryNumber; }
-}
@@ -0,0 +1,234 @@
+package com.market.sales.bl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.market.sales.dto.SaleDto;
+import com.market.sales.entity.IdempotencyKey;
+import com.market.sales.entity.IdempotencyKey.Status;
+import com.market.sales.entity.Sale;
+import com.market.sales.repository.IdempotencyKeyRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Idempotency store for POST /api/sales
+ * Recent keys live in an in-memory TTL cache holding the in-flight or finished execution,
+ * so concurrent duplicates on this instance wait for the first one instead of starting a
+ * second saga. The idempotency_key table is the durable fallback shared by all instances:
+ * a key is claimed before the saga starts and completed in the same transaction as the sale
+ */
+@Service
+public class IdempotencyBl {
+
+    private static final int MAX_KEY_LENGTH = 100;
+
+    @Autowired
+    private CompleSaleBl compleSaleBl;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${sales.idempotency.cache.max-size:100000}")
+    private long cacheMaxSize;
+
+    @Value("${sales.idempotency.cache.ttl:10m}")
+    private Duration cacheTtl;
+
+    // How long a duplicate waits for the in-flight execution before giving up
+    @Value("${sales.idempotency.wait-timeout:30s}")
+    private Duration waitTimeout;
+
+    // A claim not completed after this long was left behind by a crashed instance
+    @Value("${sales.idempotency.in-progress-timeout:2m}")
+    private Duration inProgressTimeout;
+
+    @Value("${sales.idempotency.retention:24h}")
+    private Duration retention;
+
+    private Cache<String, InFlightRequest> inFlightRequests;
+    private TransactionTemplate transaction;
+    private TransactionTemplate newTransaction;
+
+    @PostConstruct
+    void init() {
+        inFlightRequests = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtl)
+                .build();
+        transaction = new TransactionTemplate(transactionManager);
+        newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Creates a sale at most once per Idempotency-Key
+     * A repeated key returns the sale created by the first request without calling warehouse
+     * or accounting again. A failed request releases its key, so the client can retry it
+     * @param idempotencyKey The client supplied Idempotency-Key header
+     * @param saleDto The sale information
+     * @return The sale created for this key
+     * @throws IllegalArgumentException if the key is invalid or was used with a different request
+     * @throws RequestInProgressException if the same key is still being processed
+     */
+    public Sale createSaleOnce(String idempotencyKey, SaleDto saleDto) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+        String requestHash = hashRequest(saleDto);
+
+        InFlightRequest request = new InFlightRequest(requestHash);
+        InFlightRequest existing = inFlightRequests.asMap().putIfAbsent(idempotencyKey, request);
+        if (existing != null) {
+            return awaitExisting(idempotencyKey, existing, requestHash);
+        }
+
+        try {
+            Sale sale = createOrReplay(idempotencyKey, requestHash, saleDto);
+            request.result.complete(sale);
+            return sale;
+        } catch (RuntimeException e) {
+            // Nothing was committed for this key: let the next retry run the saga again
+            inFlightRequests.asMap().remove(idempotencyKey, request);
+            request.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private Sale awaitExisting(String idempotencyKey, InFlightRequest existing, String requestHash) {
+        if (!existing.requestHash.equals(requestHash)) {
+            throw new IllegalArgumentException("Idempotency-Key " + idempotencyKey + " was already used with a different request");
+        }
+        try {
+            return existing.result.get(waitTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            // Duplicates of a failed request share its outcome
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new RequestInProgressException(idempotencyKey);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for Idempotency-Key " + idempotencyKey);
+        }
+    }
+
+    private Sale createOrReplay(String idempotencyKey, String requestHash, SaleDto saleDto) {
+        IdempotencyKey stored = idempotencyKeyRepository.findById(idempotencyKey).orElse(null);
+        boolean claimed = stored == null && claim(idempotencyKey, requestHash);
+        if (!claimed) {
+            if (stored == null) {
+                // Another instance inserted the key between our lookup and our claim
+                stored = idempotencyKeyRepository.findById(idempotencyKey).orElse(null);
+            }
+            if (stored == null) {
+                throw new RequestInProgressException(idempotencyKey);
+            }
+            if (!stored.getRequestHash().equals(requestHash)) {
+                throw new IllegalArgumentException("Idempotency-Key " + idempotencyKey + " was already used with a different request");
+            }
+            if (stored.getStatus() == Status.COMPLETED) {
+                // Replay: answer with the sale created by the original request
+                Sale sale = compleSaleBl.getSaleById(stored.getSaleId());
+                if (sale == null) {
+                    throw new IllegalStateException("Sale created for Idempotency-Key " + idempotencyKey + " no longer exists");
+                }
+                return sale;
+            }
+            if (!reclaimStale(idempotencyKey)) {
+                // Claimed by another instance that is still running the saga
+                throw new RequestInProgressException(idempotencyKey);
+            }
+        }
+
+        try {
+            // The key is completed in the same local transaction as the sale
+            return transaction.execute(status -> {
+                Sale sale = compleSaleBl.createAndSaveSale(saleDto);
+                idempotencyKeyRepository.markCompleted(idempotencyKey, Status.COMPLETED, sale.getId(), LocalDateTime.now());
+                return sale;
+            });
+        } catch (RuntimeException e) {
+            newTransaction.executeWithoutResult(status -> idempotencyKeyRepository.deleteById(idempotencyKey));
+            throw e;
+        }
+    }
+
+    /**
+     * Inserts the key as IN_PROGRESS in its own transaction, visible to all instances
+     * @return false if another instance claimed the key first
+     */
+    private boolean claim(String idempotencyKey, String requestHash) {
+        try {
+            newTransaction.executeWithoutResult(status ->
+                    idempotencyKeyRepository.saveAndFlush(new IdempotencyKey(idempotencyKey, requestHash)));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            return false;
+        }
+    }
+
+    private boolean reclaimStale(String idempotencyKey) {
+        LocalDateTime now = LocalDateTime.now();
+        Integer reclaimed = newTransaction.execute(status ->
+                idempotencyKeyRepository.reclaimStale(idempotencyKey, Status.IN_PROGRESS, now.minus(inProgressTimeout), now));
+        return reclaimed != null && reclaimed > 0;
+    }
+
+    /**
+     * Removes completed keys older than the retention period
+     */
+    @Scheduled(fixedDelayString = "${sales.idempotency.purge-interval-ms:3600000}")
+    public void purgeExpiredKeys() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(retention);
+        newTransaction.executeWithoutResult(status ->
+                idempotencyKeyRepository.deleteByStatusAndCreatedAtBefore(Status.COMPLETED, cutoff));
+    }
+
+    private String hashRequest(SaleDto saleDto) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(saleDto);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Sale request cannot be hashed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Execution of one Idempotency-Key on this instance, shared with concurrent duplicates
+     */
+    private static class InFlightRequest {
+        private final String requestHash;
+        private final CompletableFuture<Sale> result = new CompletableFuture<>();
+
+        InFlightRequest(String requestHash) {
+            this.requestHash = requestHash;
+        }
+    }
+}
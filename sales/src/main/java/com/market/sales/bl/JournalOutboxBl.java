@@ -0,0 +1,287 @@
+package com.market.sales.bl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.market.sales.entity.JournalOutbox;
+import com.market.sales.repository.JournalOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transactional outbox for sales -> accounting journal posting
+ * Sales write the journal request next to the sale row, and a background relay
+ * drains the outbox in batches through the accounting batch endpoint, with retries
+ * and exponential backoff
+ */
+@Service
+public class JournalOutboxBl {
+
+    private static final Logger log = LoggerFactory.getLogger(JournalOutboxBl.class);
+
+    private static final String JOURNAL_BATCH_URL = "http://accounting/api/accounting/journals/batch";
+
+    @Autowired
+    private JournalOutboxRepository journalOutboxRepository;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${sales.outbox.relay.batch-size:100}")
+    private int batchSize;
+
+    @Value("${sales.outbox.relay.max-batches-per-run:10}")
+    private int maxBatchesPerRun;
+
+    // How long claimed entries are reserved for the relay that claimed them; an instance that
+    // dies mid-delivery leaves them to be claimed again once the lease runs out
+    @Value("${sales.outbox.relay.lease-ms:60000}")
+    private long leaseMs;
+
+    @Value("${sales.outbox.relay.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${sales.outbox.relay.initial-backoff-ms:1000}")
+    private long initialBackoffMs;
+
+    @Value("${sales.outbox.relay.max-backoff-ms:300000}")
+    private long maxBackoffMs;
+
+    private TransactionTemplate transactionTemplate;
+
+    // Metrics
+    private final AtomicLong pendingEntries = new AtomicLong();
+    private final AtomicLong oldestPendingAgeMs = new AtomicLong();
+    private Counter sentCounter;
+    private Counter retriedCounter;
+    private Counter failedCounter;
+    private Timer deliveryLagTimer;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        sentCounter = Counter.builder("sales.outbox.relay.sent")
+                .description("Journal entries delivered to accounting")
+                .register(meterRegistry);
+        retriedCounter = Counter.builder("sales.outbox.relay.retried")
+                .description("Delivery attempts that failed and were rescheduled")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("sales.outbox.relay.failed")
+                .description("Journal entries that exhausted all delivery attempts")
+                .register(meterRegistry);
+        deliveryLagTimer = Timer.builder("sales.outbox.relay.delivery.lag")
+                .description("Time from sale commit to journal delivery")
+                .register(meterRegistry);
+        Gauge.builder("sales.outbox.pending", pendingEntries, AtomicLong::get)
+                .description("Journal entries waiting in the outbox")
+                .register(meterRegistry);
+        Gauge.builder("sales.outbox.lag.seconds", oldestPendingAgeMs, age -> age.get() / 1000.0)
+                .description("Age of the oldest journal entry waiting in the outbox")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues a journal entry for delivery as part of the caller's transaction
+     * @param journalEntry The journal entry to post to accounting
+     * @param reference The source document reference (sale number)
+     * @return The created outbox entry
+     */
+    @Transactional
+    public JournalOutbox enqueue(JournalEntryDto journalEntry, String reference) {
+        try {
+            String payload = objectMapper.writeValueAsString(journalEntry);
+            JournalOutbox entry = new JournalOutbox(reference, journalEntry.getJournalEntryNumber(), payload);
+            return journalOutboxRepository.save(entry);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Journal entry for " + reference + " cannot be serialized: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Drains due outbox entries in batches. Each batch is claimed with a lease in a short
+     * transaction that commits before the accounting call, so no row lock or connection is
+     * held while waiting for accounting; the outcomes are written in a second transaction
+     */
+    @Scheduled(fixedDelayString = "${sales.outbox.relay.interval-ms:500}")
+    public void relayPendingEntries() {
+        int batches = 0;
+        int relayed;
+        do {
+            LocalDateTime leaseUntil = LocalDateTime.now().plus(Duration.ofMillis(leaseMs)).truncatedTo(ChronoUnit.MILLIS);
+            List<JournalOutbox> batch = transactionTemplate.execute(status -> claimBatch(leaseUntil));
+            if (batch == null || batch.isEmpty()) {
+                break;
+            }
+            deliver(batch);
+            transactionTemplate.executeWithoutResult(status -> saveOutcomes(batch, leaseUntil));
+            relayed = batch.size();
+            batches++;
+        } while (relayed == batchSize && batches < maxBatchesPerRun);
+
+        refreshBacklogMetrics();
+    }
+
+    // SKIP LOCKED keeps concurrent relays off each other's rows while claiming; moving
+    // next_attempt_at to the lease end keeps them off the claimed rows after the commit
+    private List<JournalOutbox> claimBatch(LocalDateTime leaseUntil) {
+        List<JournalOutbox> batch = journalOutboxRepository.lockNextBatch(LocalDateTime.now(), batchSize);
+        for (JournalOutbox entry : batch) {
+            entry.setNextAttemptAt(leaseUntil);
+        }
+        return journalOutboxRepository.saveAll(batch);
+    }
+
+    // Only entries still under this relay's lease are written: when the lease ran out during
+    // the call another relay may have claimed them, and its outcome wins
+    private void saveOutcomes(List<JournalOutbox> batch, LocalDateTime leaseUntil) {
+        for (JournalOutbox entry : batch) {
+            int updated = journalOutboxRepository.updateIfLeased(entry.getId(), leaseUntil, entry.getStatus(),
+                    entry.getAttempts(), entry.getNextAttemptAt(), entry.getLastError(), entry.getSentAt());
+            if (updated == 0) {
+                log.warn("Lease on outbox entry {} for {} expired before its delivery outcome was saved",
+                         entry.getId(), entry.getReference());
+            }
+        }
+    }
+
+    private void deliver(List<JournalOutbox> batch) {
+        List<JournalEntryDto> journalEntries = new ArrayList<>(batch.size());
+        try {
+            for (JournalOutbox entry : batch) {
+                journalEntries.add(objectMapper.readValue(entry.getPayload(), JournalEntryDto.class));
+            }
+        } catch (JsonProcessingException e) {
+            batch.forEach(entry -> scheduleRetry(entry, e.getMessage()));
+            return;
+        }
+
+        JournalBatchResponse response;
+        try {
+            response = restTemplate.postForObject(JOURNAL_BATCH_URL, journalEntries, JournalBatchResponse.class);
+        } catch (Exception e) {
+            // Transport failure: nothing is known about the batch, retry every entry
+            batch.forEach(entry -> scheduleRetry(entry, e.getMessage()));
+            return;
+        }
+        if (response == null || response.getResults() == null || response.getResults().size() != batch.size()) {
+            batch.forEach(entry -> scheduleRetry(entry, "Unexpected response from accounting batch endpoint"));
+            return;
+        }
+
+        for (JournalBatchResult result : response.getResults()) {
+            JournalOutbox entry = batch.get(result.getIndex());
+            switch (result.getStatus()) {
+                // A duplicate means an earlier attempt was stored before its response was lost
+                case "CREATED", "DUPLICATE" -> markSent(entry);
+                // Validation failures will not succeed on retry
+                default -> markFailed(entry, result.getError());
+            }
+        }
+    }
+
+    private void markSent(JournalOutbox entry) {
+        LocalDateTime now = LocalDateTime.now();
+        entry.setStatus(JournalOutbox.Status.SENT);
+        entry.setSentAt(now);
+        entry.setLastError(null);
+        sentCounter.increment();
+        deliveryLagTimer.record(Duration.between(entry.getCreatedAt(), now));
+    }
+
+    private void scheduleRetry(JournalOutbox entry, String error) {
+        int attempts = entry.getAttempts() + 1;
+        entry.setAttempts(attempts);
+
+        if (attempts >= maxAttempts) {
+            markFailed(entry, error);
+            return;
+        }
+
+        // Exponential backoff: initial, 2x, 4x, ... capped at the maximum
+        long backoffMs = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempts - 1, 30));
+        entry.setLastError(error);
+        entry.setNextAttemptAt(LocalDateTime.now().plus(Duration.ofMillis(backoffMs)));
+        retriedCounter.increment();
+    }
+
+    private void markFailed(JournalOutbox entry, String error) {
+        entry.setStatus(JournalOutbox.Status.FAILED);
+        entry.setLastError(error);
+        failedCounter.increment();
+        log.error("Journal entry {} for {} could not be delivered after {} attempts: {}",
+                  entry.getJournalEntryNumber(), entry.getReference(), entry.getAttempts(), error);
+    }
+
+    private void refreshBacklogMetrics() {
+        pendingEntries.set(journalOutboxRepository.countByStatus(JournalOutbox.Status.PENDING));
+        LocalDateTime oldest = journalOutboxRepository.findOldestCreatedAtByStatus(JournalOutbox.Status.PENDING);
+        oldestPendingAgeMs.set(oldest != null ? Duration.between(oldest, LocalDateTime.now()).toMillis() : 0);
+    }
+}
+
+// Helper DTOs for the accounting batch endpoint
+
+/**
+ * Response of POST /api/accounting/journals/batch
+ */
+class JournalBatchResponse {
+    private List<JournalBatchResult> results;
+    
+    // Default constructor
+    public JournalBatchResponse() {}
+    
+    // Getters and setters
+    public List<JournalBatchResult> getResults() { return results; }
+    public void setResults(List<JournalBatchResult> results) { this.results = results; }
+}
+
+/**
+ * Outcome of a single journal entry of a batch
+ */
+class JournalBatchResult {
+    private int index;
+    private String status;
+    private String error;
+    
+    // Default constructor
+    public JournalBatchResult() {}
+    
+    // Getters and setters
+    public int getIndex() { return index; }
+    public void setIndex(int index) { this.index = index; }
+    
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+}
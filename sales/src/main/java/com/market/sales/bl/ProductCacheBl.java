@@ -0,0 +1,168 @@
+package com.market.sales.bl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Bounded local cache of warehouse product metadata (price, status, catalog data)
+ * Entries expire after a TTL and are refreshed precisely by following the warehouse
+ * product change log. Stock levels in cached entries are informational only: stock
+ * is always checked by the warehouse conditional decrement
+ */
+@Service
+public class ProductCacheBl {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCacheBl.class);
+
+    private static final String PRODUCT_URL = "http://warehouse/api/products/";
+    private static final String PRODUCT_CHANGES_URL = "http://warehouse/api/products/changes";
+    private static final int CHANGES_BATCH_SIZE = 1000;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    @Value("${sales.product.cache.max-size:10000}")
+    private long maxSize = 10_000;
+
+    @Value("${sales.product.cache.ttl:10m}")
+    private Duration ttl = Duration.ofMinutes(10);
+
+    private Cache<Integer, ProductDto> cache;
+
+    // Position in the warehouse change log; null until the first poll
+    private volatile Long changeCursor;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        if (meterRegistry != null) {
+            // Publishes cache.gets{result=hit|miss}, cache.evictions, cache.size with cache=products
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "products");
+        }
+    }
+
+    /**
+     * Returns product metadata, loading it from the warehouse service on a miss
+     * @param productId The product ID
+     * @return The product, or null if the warehouse does not know it
+     * @throws RestClientException if the warehouse service cannot be reached
+     */
+    public ProductDto getProduct(Integer productId) {
+        // Misses are not cached, so a product created later is found on the next lookup
+        return cache.get(productId, id -> restTemplate.getForObject(PRODUCT_URL + id, ProductDto.class));
+    }
+
+    /**
+     * Drops a single product from the cache
+     * @param productId The product ID
+     */
+    public void invalidate(Integer productId) {
+        cache.invalidate(productId);
+    }
+
+    /**
+     * Polls the warehouse change log and applies the changes to cached products
+     * Products that are not cached are skipped; a reset (cursor compacted away) drops the
+     * whole cache and continues from the current end of the log
+     */
+    @Scheduled(fixedDelayString = "${sales.product.cache.poll-interval-ms:1000}")
+    public void pollProductChanges() {
+        ProductChangesDto changes;
+        try {
+            String url = PRODUCT_CHANGES_URL;
+            if (changeCursor != null) {
+                url += "?since=" + changeCursor + "&limit=" + CHANGES_BATCH_SIZE;
+            }
+            changes = restTemplate.getForObject(url, ProductChangesDto.class);
+        } catch (RestClientException e) {
+            // Entries still expire through the TTL while the feed is unreachable
+            log.warn("Product change feed unavailable: {}", e.getMessage());
+            return;
+        }
+        if (changes == null) {
+            return;
+        }
+
+        if (changes.isReset()) {
+            cache.invalidateAll();
+            // Only the current end of the log is needed, not a replay of the whole catalog
+            changeCursor = changeCursor == null ? changes.getCursor() : null;
+            return;
+        }
+        if (changes.getChanges() != null) {
+            for (ProductChangeDto change : changes.getChanges()) {
+                if (change.getProduct() == null) {
+                    cache.invalidate(change.getProductId());
+                } else {
+                    cache.asMap().computeIfPresent(change.getProductId(), (id, cached) -> change.getProduct());
+                }
+            }
+        }
+        changeCursor = changes.getCursor();
+    }
+}
+
+/**
+ * DTO for a batch of the warehouse product change log
+ */
+class ProductChangesDto {
+    private Long cursor;
+    private boolean reset;
+    private List<ProductChangeDto> changes;
+
+    // Default constructor
+    public ProductChangesDto() {}
+
+    // Getters and setters
+    public Long getCursor() { return cursor; }
+    public void setCursor(Long cursor) { this.cursor = cursor; }
+
+    public boolean isReset() { return reset; }
+    public void setReset(boolean reset) { this.reset = reset; }
+
+    public List<ProductChangeDto> getChanges() { return changes; }
+    public void setChanges(List<ProductChangeDto> changes) { this.changes = changes; }
+}
+
+/**
+ * DTO for one warehouse product change, with the product as it is now (null once deleted)
+ */
+class ProductChangeDto {
+    private Integer productId;
+    private String changeType;
+    private ProductDto product;
+
+    // Default constructor
+    public ProductChangeDto() {}
+
+    // Getters and setters
+    public Integer getProductId() { return productId; }
+    public void setProductId(Integer productId) { this.productId = productId; }
+
+    public String getChangeType() { return changeType; }
+    public void setChangeType(String changeType) { this.changeType = changeType; }
+
+    public ProductDto getProduct() { return product; }
+    public void setProduct(ProductDto product) { this.product = product; }
+}
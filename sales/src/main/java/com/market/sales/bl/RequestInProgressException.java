@@ -0,0 +1,12 @@
+package com.market.sales.bl;
+
+/**
+ * Thrown when a request with the same Idempotency-Key is still being processed, by this
+ * instance or another one; the client should retry the request later
+ */
+public class RequestInProgressException extends RuntimeException {
+
+    public RequestInProgressException(String idempotencyKey) {
+        super("A request with Idempotency-Key " + idempotencyKey + " is still in progress");
+    }
+}
@@ -0,0 +1,87 @@
+package com.market.sales.bl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Micrometer timers for the sale and order sagas
+ * Each saga step and each compensation is timed and tagged with its outcome, so
+ * /actuator/prometheus shows where sale latency goes and which steps fail
+ */
+@Component
+public class SagaStepTimer {
+
+    static final String SUCCESS = "success";
+    static final String FAILURE = "failure";
+
+    private final MeterRegistry meterRegistry;
+
+    public SagaStepTimer(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Times one forward step of a saga
+     * @param saga Saga type tag (sale, order)
+     * @param step Step tag (validate, persist, stock, journal, ...)
+     * @param action The step to run
+     * @return The step result
+     */
+    public <T> T step(String saga, String step, Supplier<T> action) {
+        return record("sales.saga.step", saga, step, action);
+    }
+
+    public void step(String saga, String step, Runnable action) {
+        record("sales.saga.step", saga, step, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Times one compensation of a failed saga
+     * @param saga Saga type tag (sale, order)
+     * @param step Compensation tag (journal_reverse, stock_release)
+     * @param action The compensation to run
+     */
+    public void compensation(String saga, String step, Runnable action) {
+        record("sales.saga.compensation.step", saga, step, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Starts timing a whole saga, to be stopped with {@link #stopSaga}
+     */
+    public Timer.Sample startSaga() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void stopSaga(Timer.Sample sample, String saga, String outcome) {
+        sample.stop(Timer.builder("sales.saga")
+                .description("End-to-end latency of a sale or order saga")
+                .tag("saga", saga)
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+    }
+
+    private <T> T record(String name, String saga, String step, Supplier<T> action) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = FAILURE;
+        try {
+            T result = action.get();
+            outcome = SUCCESS;
+            return result;
+        } finally {
+            sample.stop(Timer.builder(name)
+                    .tag("saga", saga)
+                    .tag("step", step)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.market.sales.bl;
+
+import com.market.sales.entity.SaleSaga;
+import com.market.sales.entity.SaleSaga.SagaType;
+import com.market.sales.entity.SaleSaga.Status;
+import com.market.sales.repository.SaleSagaRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Durable saga log and asynchronous compensation worker for sales and orders
+ * Every remote step of a saga is recorded in the sale_saga table in its own transaction,
+ * while completion is committed with the sale itself. A failed saga is handed to a worker
+ * pool that undoes its remote steps with exponential backoff, and sagas abandoned by a
+ * crashed instance are picked up by the same worker once they go stale
+ */
+@Service
+public class SaleSagaBl {
+
+    private static final Logger log = LoggerFactory.getLogger(SaleSagaBl.class);
+
+    private static final String RESERVATIONS_URL = "http://warehouse/api/products/reservations/";
+    private static final String JOURNAL_URL = "http://accounting/api/accounting/journals/";
+
+    @Autowired
+    private SaleSagaRepository saleSagaRepository;
+
+    @Autowired
+    private RestTemplate restTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("compensationExecutor")
+    private Executor compensationExecutor;
+
+    @Autowired
+    private SagaStepTimer sagaStepTimer;
+
+    @Value("${sales.saga.compensation.batch-size:50}")
+    private int batchSize;
+
+    @Value("${sales.saga.compensation.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${sales.saga.compensation.initial-backoff-ms:1000}")
+    private long initialBackoffMs;
+
+    @Value("${sales.saga.compensation.max-backoff-ms:300000}")
+    private long maxBackoffMs;
+
+    // How long a claimed compensation is reserved for the worker that claimed it
+    @Value("${sales.saga.compensation.lease-ms:60000}")
+    private long leaseMs;
+
+    // A saga still STARTED after this long was abandoned by a crashed instance
+    @Value("${sales.saga.abandoned-after-ms:120000}")
+    private long abandonedAfterMs;
+
+    private TransactionTemplate newTransaction;
+
+    // Metrics
+    private final AtomicLong compensatingSagas = new AtomicLong();
+    private Counter compensatedCounter;
+    private Counter retriedCounter;
+    private Counter failedCounter;
+    private Counter recoveredCounter;
+
+    @PostConstruct
+    void init() {
+        newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        compensatedCounter = Counter.builder("sales.saga.compensation.completed")
+                .description("Sagas fully compensated")
+                .register(meterRegistry);
+        retriedCounter = Counter.builder("sales.saga.compensation.retried")
+                .description("Compensation attempts that failed and were rescheduled")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("sales.saga.compensation.failed")
+                .description("Sagas that exhausted all compensation attempts")
+                .register(meterRegistry);
+        recoveredCounter = Counter.builder("sales.saga.recovered")
+                .description("Sagas abandoned mid-flight and recovered by the compensation worker")
+                .register(meterRegistry);
+        Gauge.builder("sales.saga.compensating", compensatingSagas, AtomicLong::get)
+                .description("Sagas waiting for compensation")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records the start of a saga, committed immediately so it survives a crash
+     * @param sagaType Sale or order
+     * @param reference The sale number or order number
+     * @return The saga ID to pass to the other log methods
+     */
+    public Long start(SagaType sagaType, String reference) {
+        return newTransaction.execute(status -> saleSagaRepository.save(new SaleSaga(sagaType, reference)).getId());
+    }
+
+    /**
+     * Records the key of the warehouse stock reservation, before the reservation call is made
+     * Compensation releases by key, so a reservation whose response was lost is released too
+     * @param sagaId The saga ID
+     * @param reservationKey The reservation key sent to warehouse
+     */
+    public void recordStockReservation(Long sagaId, String reservationKey) {
+        newTransaction.executeWithoutResult(status ->
+                saleSagaRepository.recordStockReservation(sagaId, reservationKey, LocalDateTime.now()));
+    }
+
+    /**
+     * Records that a journal entry was posted to accounting
+     * @param sagaId The saga ID
+     * @param journalEntry The journal entry returned by accounting
+     */
+    public void recordJournalEntry(Long sagaId, JournalEntryDto journalEntry) {
+        newTransaction.executeWithoutResult(status ->
+                saleSagaRepository.recordJournalEntry(sagaId, journalEntry.getId(), journalEntry.getJournalEntryNumber(),
+                                                      LocalDateTime.now()));
+    }
+
+    /**
+     * Marks the saga completed as part of the caller's transaction, so completion commits
+     * atomically with the sale. Fails if the worker already treated the saga as abandoned
+     * @param sagaId The saga ID
+     * @throws IllegalStateException if the saga is no longer running
+     */
+    @Transactional
+    public void complete(Long sagaId) {
+        if (saleSagaRepository.updateStatusIf(sagaId, Status.STARTED, Status.COMPLETED, LocalDateTime.now()) == 0) {
+            throw new IllegalStateException("Saga " + sagaId + " is already being compensated");
+        }
+    }
+
+    /**
+     * Marks the saga as failed and schedules its compensation on the worker pool
+     * Returns immediately: the caller does not wait for the remote rollback calls
+     * @param sagaId The saga ID
+     * @param error The failure that aborted the saga
+     */
+    public void fail(Long sagaId, String error) {
+        LocalDateTime now = LocalDateTime.now();
+        Integer claimed = newTransaction.execute(status ->
+                saleSagaRepository.startCompensationIf(sagaId, Status.STARTED, Status.COMPENSATING, error,
+                                                       now.plus(Duration.ofMillis(leaseMs)), now));
+        if (claimed != null && claimed > 0) {
+            compensationExecutor.execute(() -> compensate(sagaId));
+        }
+    }
+
+    /**
+     * Claims due compensations and abandoned sagas and runs them on the worker pool
+     */
+    @Scheduled(fixedDelayString = "${sales.saga.compensation.interval-ms:1000}")
+    public void resumeCompensations() {
+        List<Long> claimed = newTransaction.execute(status -> claimDueCompensations());
+        if (claimed != null) {
+            claimed.forEach(sagaId -> compensationExecutor.execute(() -> compensate(sagaId)));
+        }
+        compensatingSagas.set(saleSagaRepository.countByStatus(Status.COMPENSATING));
+    }
+
+    private List<Long> claimDueCompensations() {
+        LocalDateTime now = LocalDateTime.now();
+        List<SaleSaga> due = saleSagaRepository.lockDueCompensations(
+                now, now.minus(Duration.ofMillis(abandonedAfterMs)), batchSize);
+        List<Long> claimed = new ArrayList<>(due.size());
+        for (SaleSaga saga : due) {
+            if (saga.getStatus() == Status.STARTED) {
+                // The instance running this saga died before completing or failing it
+                saga.setStatus(Status.COMPENSATING);
+                saga.setLastError("Saga abandoned before completion");
+                recoveredCounter.increment();
+            }
+            saga.setNextAttemptAt(now.plus(Duration.ofMillis(leaseMs)));
+            claimed.add(saga.getId());
+        }
+        saleSagaRepository.saveAll(due);
+        return claimed;
+    }
+
+    /**
+     * Undoes the remote steps of a saga in reverse order. Each compensation is recorded as
+     * soon as it succeeds, so a retry only repeats the ones that did not
+     */
+    void compensate(Long sagaId) {
+        SaleSaga saga = saleSagaRepository.findById(sagaId).orElse(null);
+        if (saga == null || saga.getStatus() != Status.COMPENSATING) {
+            return;
+        }
+
+        String sagaTag = saga.getSagaType().name().toLowerCase();
+        try {
+            // 💰 Reverse the journal entry if it was posted synchronously
+            if (saga.getJournalEntryId() != null && !saga.getJournalEntryReversed()) {
+                SaleSaga journalSaga = saga;
+                sagaStepTimer.compensation(sagaTag, "journal_reverse", () -> reverseJournalEntry(journalSaga));
+                saga.setJournalEntryReversed(true);
+                saga = saleSagaRepository.save(saga);
+            }
+
+            // 📦 Release the stock reservation: drops an active hold, gives back committed stock
+            if (saga.getStockReservationKey() != null && !saga.getStockReleased()) {
+                SaleSaga reservationSaga = saga;
+                sagaStepTimer.compensation(sagaTag, "stock_release", () -> releaseStockReservation(reservationSaga));
+                saga.setStockReleased(true);
+                saga = saleSagaRepository.save(saga);
+            }
+
+            // 💾 The sale rows were never committed: they roll back with the failed local transaction
+            saga.setStatus(Status.COMPENSATED);
+            saga.setNextAttemptAt(null);
+            saleSagaRepository.save(saga);
+            compensatedCounter.increment();
+            log.info("Compensated saga for {}", saga.getReference());
+
+        } catch (Exception e) {
+            scheduleRetry(saga, e.getMessage());
+        }
+    }
+
+    // Accounting books an offsetting entry; a repeated call returns the same reversal
+    private void reverseJournalEntry(SaleSaga saga) {
+        restTemplate.postForObject(JOURNAL_URL + saga.getJournalEntryId() + "/reverse?reversedBy=sales-service",
+                                   null, JournalEntryDto.class);
+    }
+
+    private void releaseStockReservation(SaleSaga saga) {
+        try {
+            restTemplate.postForObject(RESERVATIONS_URL + saga.getStockReservationKey() + "/release", null, Void.class);
+        } catch (HttpClientErrorException.NotFound e) {
+            // The reservation call failed before warehouse stored anything
+        }
+    }
+
+    private void scheduleRetry(SaleSaga saga, String error) {
+        int attempts = saga.getAttempts() + 1;
+        saga.setAttempts(attempts);
+        saga.setLastError(error);
+
+        if (attempts >= maxAttempts) {
+            saga.setStatus(Status.FAILED);
+            saga.setNextAttemptAt(null);
+            failedCounter.increment();
+            log.error("Saga for {} could not be compensated after {} attempts: {}", saga.getReference(), attempts, error);
+        } else {
+            // Exponential backoff: initial, 2x, 4x, ... capped at the maximum
+            long backoffMs = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempts - 1, 30));
+            saga.setNextAttemptAt(LocalDateTime.now().plus(Duration.ofMillis(backoffMs)));
+            retriedCounter.increment();
+            log.warn("Compensation of saga for {} failed, retrying in {} ms: {}", saga.getReference(), backoffMs, error);
+        }
+        saleSagaRepository.save(saga);
+    }
+}
@@ -0,0 +1,100 @@
+package com.market.sales.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+/**
+ * Pooled keep-alive HTTP client used by the load-balanced RestTemplate
+ * The load balancer resolves service names to instances before the request reaches the pool,
+ * so pooling and per-route limits apply to the resolved instance host:port
+ */
+@Configuration
+@EnableConfigurationProperties(HttpClientProperties.class)
+public class HttpClientConfig {
+
+    @Bean
+    public PoolingHttpClientConnectionManager httpClientConnectionManager(HttpClientProperties properties) {
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.of(properties.getConnectTimeout()))
+                .setSocketTimeout(Timeout.of(properties.getReadTimeout()))
+                .setTimeToLive(TimeValue.of(properties.getTimeToLive()))
+                .build();
+
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(properties.getMaxTotal())
+                .setMaxConnPerRoute(properties.getDefaultMaxPerRoute())
+                .setDefaultConnectionConfig(connectionConfig)
+                .build();
+
+        properties.getMaxPerRoute().forEach((hostAndPort, max) ->
+                connectionManager.setMaxPerRoute(new HttpRoute(toHttpHost(hostAndPort)), max));
+
+        return connectionManager;
+    }
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient httpClient(PoolingHttpClientConnectionManager connectionManager,
+                                          HttpClientProperties properties) {
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.of(properties.getConnectionRequestTimeout()))
+                .setResponseTimeout(Timeout.of(properties.getReadTimeout()))
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.of(properties.getIdleTimeout()))
+                .build();
+    }
+
+    @Bean
+    public ClientHttpRequestFactory clientHttpRequestFactory(CloseableHttpClient httpClient) {
+        return new HttpComponentsClientHttpRequestFactory(httpClient);
+    }
+
+    /**
+     * Exposes pool usage as sales.http.client.pool.* gauges
+     */
+    @Bean
+    public MeterBinder httpClientPoolMetrics(PoolingHttpClientConnectionManager connectionManager) {
+        return registry -> {
+            Gauge.builder("sales.http.client.pool.leased", connectionManager, cm -> cm.getTotalStats().getLeased())
+                    .description("Connections currently leased to requests")
+                    .register(registry);
+            Gauge.builder("sales.http.client.pool.pending", connectionManager, cm -> cm.getTotalStats().getPending())
+                    .description("Requests waiting for a free connection")
+                    .register(registry);
+            Gauge.builder("sales.http.client.pool.available", connectionManager, cm -> cm.getTotalStats().getAvailable())
+                    .description("Idle keep-alive connections ready for reuse")
+                    .register(registry);
+            Gauge.builder("sales.http.client.pool.max", connectionManager, cm -> cm.getTotalStats().getMax())
+                    .description("Maximum number of pooled connections")
+                    .register(registry);
+        };
+    }
+
+    private static HttpHost toHttpHost(String hostAndPort) {
+        int separator = hostAndPort.lastIndexOf(':');
+        if (separator < 0) {
+            return new HttpHost("http", hostAndPort, 80);
+        }
+        return new HttpHost("http", hostAndPort.substring(0, separator),
+                Integer.parseInt(hostAndPort.substring(separator + 1)));
+    }
+}
@@ -0,0 +1,64 @@
+package com.market.sales.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Settings for the pooled HTTP client used to call warehouse and accounting
+ * Bound from the sales.http.client.* properties
+ */
+@ConfigurationProperties(prefix = "sales.http.client")
+public class HttpClientProperties {
+
+    // Maximum number of open connections across all routes
+    private int maxTotal = 200;
+
+    // Maximum number of open connections to a single service instance
+    private int defaultMaxPerRoute = 50;
+
+    // Per-route overrides keyed by resolved instance "host:port"
+    private Map<String, Integer> maxPerRoute = new HashMap<>();
+
+    // Time allowed to establish a TCP connection
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    // Time allowed to wait for response data
+    private Duration readTimeout = Duration.ofSeconds(5);
+
+    // Time allowed to wait for a free connection from the pool
+    private Duration connectionRequestTimeout = Duration.ofSeconds(1);
+
+    // Keep-alive connections idle for longer than this are closed
+    private Duration idleTimeout = Duration.ofSeconds(30);
+
+    // Connections are never reused after this age
+    private Duration timeToLive = Duration.ofMinutes(5);
+
+    // Getters and Setters
+    public int getMaxTotal() { return maxTotal; }
+    public void setMaxTotal(int maxTotal) { this.maxTotal = maxTotal; }
+
+    public int getDefaultMaxPerRoute() { return defaultMaxPerRoute; }
+    public void setDefaultMaxPerRoute(int defaultMaxPerRoute) { this.defaultMaxPerRoute = defaultMaxPerRoute; }
+
+    public Map<String, Integer> getMaxPerRoute() { return maxPerRoute; }
+    public void setMaxPerRoute(Map<String, Integer> maxPerRoute) { this.maxPerRoute = maxPerRoute; }
+
+    public Duration getConnectTimeout() { return connectTimeout; }
+    public void setConnectTimeout(Duration connectTimeout) { this.connectTimeout = connectTimeout; }
+
+    public Duration getReadTimeout() { return readTimeout; }
+    public void setReadTimeout(Duration readTimeout) { this.readTimeout = readTimeout; }
+
+    public Duration getConnectionRequestTimeout() { return connectionRequestTimeout; }
+    public void setConnectionRequestTimeout(Duration connectionRequestTimeout) { this.connectionRequestTimeout = connectionRequestTimeout; }
+
+    public Duration getIdleTimeout() { return idleTimeout; }
+    public void setIdleTimeout(Duration idleTimeout) { this.idleTimeout = idleTimeout; }
+
+    public Duration getTimeToLive() { return timeToLive; }
+    public void setTimeToLive(Duration timeToLive) { this.timeToLive = timeToLive; }
+}
@@ -1,16 +1,50 @@
 package com.market.sales.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.client.RestTemplate;
 
+import java.util.concurrent.ThreadPoolExecutor;
+
 @Configuration
 public class SalesConfig {
     
     @Bean
     @LoadBalanced  // Enable service discovery load balancing
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate restTemplate(ClientHttpRequestFactory clientHttpRequestFactory) {
+        // Backed by the pooled keep-alive client from HttpClientConfig
+        return new RestTemplate(clientHttpRequestFactory);
+    }
+    
+    @Bean(name = "sagaExecutor")
+    public ThreadPoolTaskExecutor sagaExecutor(@Value("${sales.saga.executor.core-size:16}") int coreSize,
+                                               @Value("${sales.saga.executor.max-size:64}") int maxSize,
+                                               @Value("${sales.saga.executor.queue-capacity:256}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("saga-");
+        // Run on the request thread instead of rejecting, so a saga branch is never silently dropped
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+    
+    @Bean(name = "compensationExecutor")
+    public ThreadPoolTaskExecutor compensationExecutor(@Value("${sales.saga.compensation.pool-size:4}") int poolSize,
+                                                       @Value("${sales.saga.compensation.queue-capacity:1000}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("saga-compensation-");
+        // Drop instead of blocking the failing request: a rejected saga keeps its lease and is
+        // picked up again by the scheduled worker once the lease expires
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
+        return executor;
     }
 }
@@ -0,0 +1,153 @@
+package com.market.sales.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * DTO class for a multi-line order
+ * Each line becomes a Sale sharing the same order number
+ */
+public class OrderDto {
+
+    // Auto-generated when the order is created
+    private String orderNumber;
+
+    @NotEmpty(message = "An order must contain at least one line")
+    @Size(max = 200, message = "An order cannot contain more than 200 lines")
+    @Valid
+    private List<SaleDto> lines;
+
+    private BigDecimal totalAmount;
+
+    private BigDecimal discountAmount;
+
+    private BigDecimal finalAmount;
+
+    private LocalDate saleDate;
+
+    private Integer customerId;
+
+    private String customerName;
+
+    private String salesperson;
+
+    private String paymentMethod;
+
+    @Pattern(regexp = "pending|paid|partial|cancelled", message = "Payment status must be one of: pending, paid, partial, cancelled")
+    private String paymentStatus;
+
+    private String notes;
+
+    // Default constructor
+    public OrderDto() {}
+
+    // Getters and Setters
+    public String getOrderNumber() {
+        return orderNumber;
+    }
+
+    public void setOrderNumber(String orderNumber) {
+        this.orderNumber = orderNumber;
+    }
+
+    public List<SaleDto> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<SaleDto> lines) {
+        this.lines = lines;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+
+    public void setTotalAmount(BigDecimal totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+
+    public BigDecimal getDiscountAmount() {
+        return discountAmount;
+    }
+
+    public void setDiscountAmount(BigDecimal discountAmount) {
+        this.discountAmount = discountAmount;
+    }
+
+    public BigDecimal getFinalAmount() {
+        return finalAmount;
+    }
+
+    public void setFinalAmount(BigDecimal finalAmount) {
+        this.finalAmount = finalAmount;
+    }
+
+    public LocalDate getSaleDate() {
+        return saleDate;
+    }
+
+    public void setSaleDate(LocalDate saleDate) {
+        this.saleDate = saleDate;
+    }
+
+    public Integer getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(Integer customerId) {
+        this.customerId = customerId;
+    }
+
+    public String getCustomerName() {
+        return customerName;
+    }
+
+    public void setCustomerName(String customerName) {
+        this.customerName = customerName;
+    }
+
+    public String getSalesperson() {
+        return salesperson;
+    }
+
+    public void setSalesperson(String salesperson) {
+        this.salesperson = salesperson;
+    }
+
+    public String getPaymentMethod() {
+        return paymentMethod;
+    }
+
+    public void setPaymentMethod(String paymentMethod) {
+        this.paymentMethod = paymentMethod;
+    }
+
+    public String getPaymentStatus() {
+        return paymentStatus;
+    }
+
+    public void setPaymentStatus(String paymentStatus) {
+        this.paymentStatus = paymentStatus;
+    }
+
+    public String getNotes() {
+        return notes;
+    }
+
+    public void setNotes(String notes) {
+        this.notes = notes;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderDto{" +
+                "orderNumber='" + orderNumber + '\'' +
+                ", lines=" + (lines != null ? lines.size() : 0) +
+                ", finalAmount=" + finalAmount +
+                ", customerId=" + customerId +
+                '}';
+    }
+}
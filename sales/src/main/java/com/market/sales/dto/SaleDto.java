@@ -16,6 +16,9 @@ public class SaleDto {
     // Remove @NotBlank validation - sale number will be auto-generated
     private String saleNumber;
 
+    // Set when the sale is one line of a multi-line order
+    private String orderNumber;
+
     @NotNull(message = "Product ID is required")
     private Integer productId;
 
@@ -85,6 +88,14 @@ public class SaleDto {
         this.saleNumber = saleNumber;
     }
 
+    public String getOrderNumber() {
+        return orderNumber;
+    }
+
+    public void setOrderNumber(String orderNumber) {
+        this.orderNumber = orderNumber;
+    }
+
     public Integer getProductId() {
         return productId;
     }
@@ -17,6 +17,10 @@ public class Sale {
     @Column(name = "sale_number", length = 20, unique = true, nullable = false)
     private String saleNumber;
     
+    // Set when the sale is one line of a multi-line order
+    @Column(name = "order_number", length = 20)
+    private String orderNumber;
+    
     @Column(name = "product_id", nullable = false)
     private Integer productId;
     
@@ -129,6 +133,9 @@ public class Sale {
     public String getSaleNumber() { return saleNumber; }
     public void setSaleNumber(String saleNumber) { this.saleNumber = saleNumber; }
 
+    public String getOrderNumber() { return orderNumber; }
+    public void setOrderNumber(String orderNumber) { this.orderNumber = orderNumber; }
+
     public Integer getProductId() { return productId; }
     public void setProductId(Integer productId) { this.productId = productId; }
 
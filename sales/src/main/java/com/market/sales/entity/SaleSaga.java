@@ -0,0 +1,134 @@
+package com.market.sales.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Durable log of one sale or order saga
+ * Written in its own transaction before any remote side effect, so the remote steps that
+ * succeeded are known even if the sales instance dies mid-saga. Completion is committed
+ * together with the sale; failed and abandoned sagas are compensated by SaleSagaBl
+ */
+@Entity
+@Table(name = "sale_saga")
+public class SaleSaga {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "saga_type", length = 10, nullable = false)
+    private SagaType sagaType;
+    
+    // Business reference of the saga (sale number or order number)
+    @Column(name = "reference", length = 50, nullable = false)
+    private String reference;
+    
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", length = 20, nullable = false)
+    private Status status = Status.STARTED;
+    
+    // Step: stock reserved in warehouse under this key, recorded before the reservation call
+    @Column(name = "stock_reservation_key", length = 64)
+    private String stockReservationKey;
+    
+    // Step: journal entry posted synchronously to accounting, null until done
+    @Column(name = "journal_entry_id")
+    private Integer journalEntryId;
+    
+    @Column(name = "journal_entry_number", length = 20)
+    private String journalEntryNumber;
+    
+    // Compensations already applied, so a retried compensation never repeats them
+    @Column(name = "stock_released", nullable = false)
+    private Boolean stockReleased = false;
+    
+    @Column(name = "journal_entry_reversed", nullable = false)
+    private Boolean journalEntryReversed = false;
+    
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0;
+    
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+    
+    @Column(name = "last_error", columnDefinition = "TEXT")
+    private String lastError;
+    
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+    
+    public enum SagaType {
+        SALE, ORDER
+    }
+    
+    public enum Status {
+        STARTED, COMPLETED, COMPENSATING, COMPENSATED, FAILED
+    }
+    
+    // Default constructor
+    public SaleSaga() {}
+    
+    public SaleSaga(SagaType sagaType, String reference) {
+        this.sagaType = sagaType;
+        this.reference = reference;
+    }
+    
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = LocalDateTime.now();
+        this.updatedAt = this.createdAt;
+    }
+    
+    @PreUpdate
+    protected void onUpdate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+    
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    
+    public SagaType getSagaType() { return sagaType; }
+    public void setSagaType(SagaType sagaType) { this.sagaType = sagaType; }
+    
+    public String getReference() { return reference; }
+    public void setReference(String reference) { this.reference = reference; }
+    
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+    
+    public String getStockReservationKey() { return stockReservationKey; }
+    public void setStockReservationKey(String stockReservationKey) { this.stockReservationKey = stockReservationKey; }
+    
+    public Integer getJournalEntryId() { return journalEntryId; }
+    public void setJournalEntryId(Integer journalEntryId) { this.journalEntryId = journalEntryId; }
+    
+    public String getJournalEntryNumber() { return journalEntryNumber; }
+    public void setJournalEntryNumber(String journalEntryNumber) { this.journalEntryNumber = journalEntryNumber; }
+    
+    public Boolean getStockReleased() { return stockReleased; }
+    public void setStockReleased(Boolean stockReleased) { this.stockReleased = stockReleased; }
+    
+    public Boolean getJournalEntryReversed() { return journalEntryReversed; }
+    public void setJournalEntryReversed(Boolean journalEntryReversed) { this.journalEntryReversed = journalEntryReversed; }
+    
+    public Integer getAttempts() { return attempts; }
+    public void setAttempts(Integer attempts) { this.attempts = attempts; }
+    
+    public LocalDateTime getNextAttemptAt() { return nextAttemptAt; }
+    public void setNextAttemptAt(LocalDateTime nextAttemptAt) { this.nextAttemptAt = nextAttemptAt; }
+    
+    public String getLastError() { return lastError; }
+    public void setLastError(String lastError) { this.lastError = lastError; }
+    
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -0,0 +1,32 @@
+package com.market.sales.repository;
+
+import com.market.sales.entity.IdempotencyKey;
+import com.market.sales.entity.IdempotencyKey.Status;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+    
+    @Modifying
+    @Query("UPDATE IdempotencyKey k SET k.status = :status, k.saleId = :saleId, k.updatedAt = :now WHERE k.idempotencyKey = :key")
+    int markCompleted(@Param("key") String key, @Param("status") Status status, @Param("saleId") Long saleId,
+                      @Param("now") LocalDateTime now);
+    
+    // Take over a claim left behind by a crashed instance; returns 0 if someone else got it first
+    @Modifying
+    @Query("UPDATE IdempotencyKey k SET k.updatedAt = :now WHERE k.idempotencyKey = :key AND k.status = :status " +
+           "AND k.updatedAt < :staleBefore")
+    int reclaimStale(@Param("key") String key, @Param("status") Status status,
+                     @Param("staleBefore") LocalDateTime staleBefore, @Param("now") LocalDateTime now);
+    
+    // Drop keys older than the retention period
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.status = :status AND k.createdAt < :cutoff")
+    int deleteByStatusAndCreatedAtBefore(@Param("status") Status status, @Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,38 @@
+package com.market.sales.repository;
+
+import com.market.sales.entity.JournalOutbox;
+import com.market.sales.entity.JournalOutbox.Status;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface JournalOutboxRepository extends JpaRepository<JournalOutbox, Long> {
+    
+    // Lock the next batch of due entries for claiming; SKIP LOCKED lets several sales instances relay concurrently
+    @Query(value = "SELECT * FROM journal_outbox WHERE status = 'PENDING' AND next_attempt_at <= :now " +
+                   "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<JournalOutbox> lockNextBatch(@Param("now") LocalDateTime now, @Param("limit") int limit);
+    
+    // Write the delivery outcome, unless the claim expired and the entry was claimed again
+    @Modifying
+    @Query("UPDATE JournalOutbox o SET o.status = :status, o.attempts = :attempts, o.nextAttemptAt = :nextAttemptAt, " +
+           "o.lastError = :lastError, o.sentAt = :sentAt " +
+           "WHERE o.id = :id AND o.status = com.market.sales.entity.JournalOutbox.Status.PENDING " +
+           "AND o.nextAttemptAt = :leaseUntil")
+    int updateIfLeased(@Param("id") Long id, @Param("leaseUntil") LocalDateTime leaseUntil, @Param("status") Status status,
+                       @Param("attempts") Integer attempts, @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                       @Param("lastError") String lastError, @Param("sentAt") LocalDateTime sentAt);
+    
+    // Count entries by status
+    long countByStatus(Status status);
+    
+    // Creation time of the oldest entry still waiting for delivery
+    @Query("SELECT MIN(o.createdAt) FROM JournalOutbox o WHERE o.status = :status")
+    LocalDateTime findOldestCreatedAtByStatus(@Param("status") Status status);
+}
@@ -17,6 +17,9 @@ public interface SaleRepository extends JpaRepository<Sale, Long> {
     // Find sale by sale number (unique identifier)
     Optional<Sale> findBySaleNumber(String saleNumber);
     
+    // Find the sale lines of a multi-line order
+    List<Sale> findByOrderNumberOrderByIdAsc(String orderNumber);
+    
     // Find sales by customer ID
     List<Sale> findByCustomerId(Integer customerId);
     
@@ -0,0 +1,52 @@
+package com.market.sales.repository;
+
+import com.market.sales.entity.SaleSaga;
+import com.market.sales.entity.SaleSaga.Status;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SaleSagaRepository extends JpaRepository<SaleSaga, Long> {
+    
+    // Step updates touch only their own columns, so parallel saga branches never overwrite each other
+    @Modifying
+    @Query("UPDATE SaleSaga s SET s.stockReservationKey = :reservationKey, s.updatedAt = :now WHERE s.id = :id")
+    int recordStockReservation(@Param("id") Long id, @Param("reservationKey") String reservationKey, @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Query("UPDATE SaleSaga s SET s.journalEntryId = :journalEntryId, s.journalEntryNumber = :journalEntryNumber, " +
+           "s.updatedAt = :now WHERE s.id = :id")
+    int recordJournalEntry(@Param("id") Long id, @Param("journalEntryId") Integer journalEntryId,
+                           @Param("journalEntryNumber") String journalEntryNumber, @Param("now") LocalDateTime now);
+    
+    // Conditional status change, returns 0 when another transition happened first
+    @Modifying
+    @Query("UPDATE SaleSaga s SET s.status = :status, s.updatedAt = :now WHERE s.id = :id AND s.status = :expected")
+    int updateStatusIf(@Param("id") Long id, @Param("expected") Status expected, @Param("status") Status status,
+                       @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Query("UPDATE SaleSaga s SET s.status = :status, s.lastError = :error, s.nextAttemptAt = :leaseUntil, " +
+           "s.updatedAt = :now WHERE s.id = :id AND s.status = :expected")
+    int startCompensationIf(@Param("id") Long id, @Param("expected") Status expected, @Param("status") Status status,
+                            @Param("error") String error, @Param("leaseUntil") LocalDateTime leaseUntil,
+                            @Param("now") LocalDateTime now);
+    
+    // Claim due compensations plus sagas abandoned mid-flight (instance crash); SKIP LOCKED lets
+    // several sales instances run the worker concurrently
+    @Query(value = "SELECT * FROM sale_saga WHERE (status = 'COMPENSATING' AND next_attempt_at <= :now) " +
+                   "OR (status = 'STARTED' AND updated_at < :abandonedBefore) " +
+                   "ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<SaleSaga> lockDueCompensations(@Param("now") LocalDateTime now,
+                                        @Param("abandonedBefore") LocalDateTime abandonedBefore,
+                                        @Param("limit") int limit);
+    
+    // Count sagas by status
+    long countByStatus(Status status);
+}
@@ -0,0 +1,157 @@
+package com.market.sales.bl;
+
+import com.market.sales.dto.SaleDto;
+import com.market.sales.entity.Sale;
+import com.market.sales.repository.SaleRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compares sale latency of the sequential saga against the parallel fan-out mode,
+ * using stubbed warehouse and accounting services with a fixed latency per call.
+ * Timing based, so it only runs when SALES_BENCHMARK is set
+ */
+@EnabledIfEnvironmentVariable(named = "SALES_BENCHMARK", matches = ".+")
+class SagaFanOutBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(SagaFanOutBenchmarkTest.class);
+
+    private static final long REMOTE_LATENCY_MS = 20;
+    private static final int WARMUP = 5;
+    private static final int ITERATIONS = 40;
+
+    private CompleSaleBl compleSaleBl;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        SaleRepository saleRepository = mock(SaleRepository.class);
+        when(saleRepository.save(any(Sale.class))).thenAnswer(invocation -> {
+            Sale sale = invocation.getArgument(0);
+            sale.setId(1L);
+            return sale;
+        });
+
+        executor = Executors.newFixedThreadPool(4);
+        RestTemplate services = new StubbedServices();
+        ProductCacheBl productCacheBl = new ProductCacheBl();
+        ReflectionTestUtils.setField(productCacheBl, "restTemplate", services);
+        productCacheBl.init();
+
+        compleSaleBl = new CompleSaleBl();
+        ReflectionTestUtils.setField(compleSaleBl, "saleRepository", saleRepository);
+        ReflectionTestUtils.setField(compleSaleBl, "restTemplate", services);
+        ReflectionTestUtils.setField(compleSaleBl, "sagaExecutor", executor);
+        ReflectionTestUtils.setField(compleSaleBl, "productCacheBl", productCacheBl);
+        ReflectionTestUtils.setField(compleSaleBl, "saleSagaBl", mock(SaleSagaBl.class));
+        ReflectionTestUtils.setField(compleSaleBl, "sagaStepTimer", new SagaStepTimer(new SimpleMeterRegistry()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void parallelStepsLowerSaleLatency() {
+        List<Long> sequential = measure(CompleSaleBl.JournalMode.SEQUENTIAL);
+        List<Long> parallel = measure(CompleSaleBl.JournalMode.PARALLEL);
+
+        long sequentialP50 = percentile(sequential, 50);
+        long sequentialP99 = percentile(sequential, 99);
+        long parallelP50 = percentile(parallel, 50);
+        long parallelP99 = percentile(parallel, 99);
+
+        log.info("Sale saga latency (stubbed remote calls of {} ms): sequential p50={} ms, p99={} ms; parallel p50={} ms, p99={} ms",
+                REMOTE_LATENCY_MS, sequentialP50, sequentialP99, parallelP50, parallelP99);
+
+        // Product lookups hit the cache after warmup; sequential runs the reservation and journal calls back to back, parallel overlaps them
+        assertTrue(parallelP50 < sequentialP50,
+                "Expected parallel p50 (" + parallelP50 + " ms) to be lower than sequential p50 (" + sequentialP50 + " ms)");
+    }
+
+    private List<Long> measure(CompleSaleBl.JournalMode journalMode) {
+        ReflectionTestUtils.setField(compleSaleBl, "journalMode", journalMode);
+        for (int i = 0; i < WARMUP; i++) {
+            compleSaleBl.createAndSaveSale(newSale());
+        }
+        List<Long> latencies = new ArrayList<>();
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            compleSaleBl.createAndSaveSale(newSale());
+            latencies.add((System.nanoTime() - start) / 1_000_000);
+        }
+        return latencies;
+    }
+
+    private static long percentile(List<Long> values, int percentile) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0));
+    }
+
+    private static SaleDto newSale() {
+        SaleDto saleDto = new SaleDto();
+        saleDto.setProductId(1);
+        saleDto.setQuantity(1);
+        saleDto.setUnitPrice(new BigDecimal("10.00"));
+        return saleDto;
+    }
+
+    /**
+     * RestTemplate stub answering warehouse and accounting calls after a fixed delay
+     */
+    private static class StubbedServices extends RestTemplate {
+
+        @Override
+        public <T> T getForObject(String url, Class<T> responseType, Object... uriVariables) {
+            sleep();
+            ProductDto product = new ProductDto();
+            product.setId(1);
+            product.setPrice(new BigDecimal("10.00"));
+            product.setStockQuantity(1_000_000);
+            return responseType.cast(product);
+        }
+
+        @Override
+        public <T> T postForObject(String url, Object request, Class<T> responseType, Object... uriVariables) {
+            sleep();
+            if (responseType == StockReservationDto.class) {
+                StockReservationDto reservation = new StockReservationDto();
+                reservation.setStatus(request != null ? "ACTIVE" : "COMMITTED");
+                return responseType.cast(reservation);
+            }
+            JournalEntryDto journalEntry = (JournalEntryDto) request;
+            journalEntry.setId(1);
+            return responseType.cast(journalEntry);
+        }
+
+        private void sleep() {
+            try {
+                Thread.sleep(REMOTE_LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -1,27 +1,60 @@
 package com.market.warehouse.api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.market.warehouse.bl.LowStockWatchBl;
+import com.market.warehouse.bl.ProductChangeFeedBl;
+import com.market.warehouse.bl.ProductSearchBl;
 import com.market.warehouse.bl.ProductStockBl;
+import com.market.warehouse.dto.LowStockEventDto;
+import com.market.warehouse.dto.ProductChangesDto;
 import com.market.warehouse.dto.ProductDto;
+import com.market.warehouse.dto.ProductSearchHitDto;
+import com.market.warehouse.dto.StockAdjustmentDto;
+import com.market.warehouse.dto.StockAdjustmentResultDto;
+import com.market.warehouse.dto.StockAvailabilityDto;
+import com.market.warehouse.dto.StockChangeDto;
+import com.market.warehouse.dto.StockLevelDto;
 import com.market.warehouse.entity.Product;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import jakarta.validation.Valid;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 @RestController
 @RequestMapping("/api/products")
 public class ProductApi {
 
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final ProductStockBl productStockBl;
+    private final ProductChangeFeedBl productChangeFeedBl;
+    private final LowStockWatchBl lowStockWatchBl;
+    private final ProductSearchBl productSearchBl;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public ProductApi(ProductStockBl productStockBl) {
+    public ProductApi(ProductStockBl productStockBl, ProductChangeFeedBl productChangeFeedBl,
+                      LowStockWatchBl lowStockWatchBl, ProductSearchBl productSearchBl, ObjectMapper objectMapper) {
         this.productStockBl = productStockBl;
+        this.productChangeFeedBl = productChangeFeedBl;
+        this.lowStockWatchBl = lowStockWatchBl;
+        this.productSearchBl = productSearchBl;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
@@ -37,38 +70,102 @@ public class ProductApi {
         }
     }
 
+    // Change log batches after a cursor; with wait > 0 the request is held (long poll)
+    // until a change arrives or wait seconds have passed
+    @GetMapping("/changes")
+    public CompletableFuture<ResponseEntity<ProductChangesDto>> getProductChanges(@RequestParam(required = false) Long since,
+                                                                                  @RequestParam(defaultValue = "500") int limit,
+                                                                                  @RequestParam(defaultValue = "0") int wait) {
+        try {
+            return productChangeFeedBl.awaitChangesSince(since, limit, wait).thenApply(ResponseEntity::ok);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(ResponseEntity.badRequest().build());
+        }
+    }
+
+    // Ranked typeahead search over name, SKU, brand, category and supplier
+    @GetMapping("/search")
+    public ResponseEntity<List<ProductSearchHitDto>> searchProducts(@RequestParam String q,
+                                                                    @RequestParam(defaultValue = "0") int offset,
+                                                                    @RequestParam(defaultValue = "10") int limit) {
+        try {
+            return ResponseEntity.ok(productSearchBl.search(q, offset, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     @GetMapping("/{id}")
-    public ResponseEntity<ProductDto> getProductById(@PathVariable Integer id) {
+    public ResponseEntity<ProductDto> getProductById(@PathVariable Integer id,
+                                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // Revalidation only reads the version column; the product is loaded when it changed
+        if (ifNoneMatch != null) {
+            Long version = productStockBl.getProductVersion(id);
+            if (version == null) {
+                return ResponseEntity.notFound().build();
+            }
+            String etag = productEtag(version);
+            if (matchesEtag(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+        }
         Optional<Product> product = productStockBl.getProductById(id);
         if (product.isPresent()) {
             ProductDto productDto = convertToDto(product.get());
-            return ResponseEntity.ok(productDto);
+            return ResponseEntity.ok().eTag(productEtag(product.get().getVersion())).body(productDto);
         } else {
             return ResponseEntity.notFound().build();
         }
     }
 
     @GetMapping
-    public ResponseEntity<List<ProductDto>> getAllProducts() {
-        List<Product> products = productStockBl.getAllProducts();
-        List<ProductDto> productDtos = products.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(productDtos);
+    public ResponseEntity<List<ProductDto>> getAllProducts(@RequestParam(required = false) Integer after,
+                                                           @RequestParam(defaultValue = "100") int limit) {
+        try {
+            List<ProductDto> productDtos = productStockBl.getProductsPage(after, limit);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (productDtos.size() == limit) {
+                // A full page: there may be more, continue with ?after=<cursor>
+                response.header(NEXT_CURSOR_HEADER, String.valueOf(productDtos.get(productDtos.size() - 1).getId()));
+            }
+            return response.body(productDtos);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // Whole catalog as newline-delimited JSON, written while the rows are read
+    @GetMapping(produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamProducts(@RequestParam(required = false) Integer after) {
+        StreamingResponseBody body = out -> productStockBl.streamProducts(after, productDto -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(productDto));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<ProductDto> updateProduct(@PathVariable Integer id, @Valid @RequestBody ProductDto productDto) {
+    public ResponseEntity<ProductDto> updateProduct(@PathVariable Integer id, @Valid @RequestBody ProductDto productDto,
+                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Product updatedProduct = productStockBl.updateProduct(id, productDto);
+            Product updatedProduct = productStockBl.updateProduct(id, productDto, parseIfMatch(ifMatch));
             if (updatedProduct != null) {
                 ProductDto resultDto = convertToDto(updatedProduct);
-                return ResponseEntity.ok(resultDto);
+                return ResponseEntity.ok().eTag(productEtag(updatedProduct.getVersion())).body(resultDto);
             } else {
                 return ResponseEntity.notFound().build();
             }
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
+        } catch (OptimisticLockingFailureException e) {
+            return versionConflict(ifMatch);
+        } catch (IllegalStateException e) {
+            // The new stock would not cover the reserved units
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -85,17 +182,114 @@ public class ProductApi {
     }
 
     @PutMapping("/{id}/stock")
-    public ResponseEntity<ProductDto> updateStock(@PathVariable Integer id, @RequestParam Integer newStock) {
+    public ResponseEntity<ProductDto> updateStock(@PathVariable Integer id, @RequestParam Integer newStock,
+                                                  @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Product updatedProduct = productStockBl.updateStock(id, newStock);
+            Product updatedProduct = productStockBl.updateStock(id, newStock, parseIfMatch(ifMatch));
             if (updatedProduct != null) {
                 ProductDto resultDto = convertToDto(updatedProduct);
-                return ResponseEntity.ok(resultDto);
+                return ResponseEntity.ok().eTag(productEtag(updatedProduct.getVersion())).body(resultDto);
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (OptimisticLockingFailureException e) {
+            return versionConflict(ifMatch);
+        } catch (IllegalStateException e) {
+            // Hot products only accept relative stock changes, and stock cannot drop below the reserved units
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/{id}/stock/available")
+    public ResponseEntity<StockAvailabilityDto> getStockAvailability(@PathVariable Integer id) {
+        StockAvailabilityDto availability = productStockBl.getStockAvailability(id);
+        if (availability != null) {
+            return ResponseEntity.ok(availability);
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PostMapping("/{id}/stock/decrease")
+    public ResponseEntity<StockLevelDto> decreaseStock(@PathVariable Integer id, @RequestParam Integer quantity) {
+        try {
+            Integer newStock = productStockBl.decreaseStock(id, quantity);
+            if (newStock != null) {
+                return ResponseEntity.ok(new StockLevelDto(id, newStock));
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            // Not enough stock to cover the requested quantity, or the product is hot on another instance
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping("/{id}/stock/increase")
+    public ResponseEntity<StockLevelDto> increaseStock(@PathVariable Integer id, @RequestParam Integer quantity) {
+        try {
+            Integer newStock = productStockBl.increaseStock(id, quantity);
+            if (newStock != null) {
+                return ResponseEntity.ok(new StockLevelDto(id, newStock));
             } else {
                 return ResponseEntity.notFound().build();
             }
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            // The product is hot on another warehouse instance
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping("/stock/decrease")
+    public ResponseEntity<List<StockLevelDto>> decreaseStock(@Valid @RequestBody List<StockChangeDto> changes) {
+        try {
+            return ResponseEntity.ok(productStockBl.decreaseStock(changes));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            // At least one line does not have enough stock, nothing was decreased
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping("/stock/increase")
+    public ResponseEntity<List<StockLevelDto>> increaseStock(@Valid @RequestBody List<StockChangeDto> changes) {
+        try {
+            return ResponseEntity.ok(productStockBl.increaseStock(changes));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            // A product is hot on another warehouse instance, nothing was increased
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PatchMapping("/stock")
+    public ResponseEntity<List<StockAdjustmentResultDto>> adjustStock(@Valid @RequestBody List<StockAdjustmentDto> adjustments) {
+        try {
+            return ResponseEntity.ok(productStockBl.adjustStock(adjustments));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
@@ -103,20 +297,89 @@ public class ProductApi {
 
     @GetMapping("/low-stock")
     public ResponseEntity<List<ProductDto>> getLowStockProducts() {
-        List<Product> products = productStockBl.getLowStockProducts();
-        List<ProductDto> productDtos = products.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(productDtos);
+        return ResponseEntity.ok(productStockBl.getLowStockProducts());
+    }
+
+    // Server-sent events for products crossing their minimum stock level: "low-stock" when
+    // stock drops to or below it, "restocked" when it rises above it again
+    @GetMapping(value = "/low-stock/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamLowStockEvents() {
+        SseEmitter emitter = new SseEmitter(0L);
+        Consumer<LowStockEventDto> subscriber = new Consumer<>() {
+            @Override
+            public void accept(LowStockEventDto event) {
+                try {
+                    emitter.send(SseEmitter.event()
+                            .name(event.isLowStock() ? "low-stock" : "restocked")
+                            .data(event, MediaType.APPLICATION_JSON));
+                } catch (IOException | IllegalStateException e) {
+                    lowStockWatchBl.unsubscribe(this);
+                    emitter.completeWithError(e);
+                }
+            }
+        };
+        lowStockWatchBl.subscribe(subscriber);
+        emitter.onCompletion(() -> lowStockWatchBl.unsubscribe(subscriber));
+        emitter.onTimeout(() -> lowStockWatchBl.unsubscribe(subscriber));
+        emitter.onError(e -> lowStockWatchBl.unsubscribe(subscriber));
+        return emitter;
     }
 
     @GetMapping("/category/{category}")
-    public ResponseEntity<List<ProductDto>> getProductsByCategory(@PathVariable String category) {
-        List<Product> products = productStockBl.getProductsByCategory(category);
-        List<ProductDto> productDtos = products.stream()
-                .map(this::convertToDto)
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(productDtos);
+    public ResponseEntity<List<ProductDto>> getProductsByCategory(@PathVariable String category,
+                                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // Read before the listing, so a change made in between only makes the tag stale
+        // (the next request gets a 200) and never pairs an old listing with a newer tag
+        String etag = "\"c" + productStockBl.getCategoryVersion(category) + "\"";
+        if (matchesEtag(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(productStockBl.getProductsByCategory(category));
+    }
+
+    private String productEtag(Long version) {
+        return "\"v" + version + "\"";
+    }
+
+    // Version named by an If-Match header: null when absent or *, -1 when it is not a
+    // product ETag (weak tags never match for If-Match), so the write fails with 412
+    private Long parseIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() > 3 && tag.startsWith("\"v") && tag.endsWith("\"")) {
+            try {
+                return Long.parseLong(tag.substring(2, tag.length() - 1));
+            } catch (NumberFormatException e) {
+                return -1L;
+            }
+        }
+        return -1L;
+    }
+
+    // 412 when the client's If-Match version is stale, 409 when a concurrent write won
+    // the race for an unconditional one (after any configured retries)
+    private <T> ResponseEntity<T> versionConflict(String ifMatch) {
+        HttpStatus status = parseIfMatch(ifMatch) != null ? HttpStatus.PRECONDITION_FAILED : HttpStatus.CONFLICT;
+        return ResponseEntity.status(status).build();
+    }
+
+    // If-None-Match uses the weak comparison: W/ prefixes are ignored, * matches anything
+    private boolean matchesEtag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
     }
 
 
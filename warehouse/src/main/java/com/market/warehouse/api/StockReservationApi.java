@@ -0,0 +1,81 @@
+package com.market.warehouse.api;
+
+import com.market.warehouse.bl.StockReservationBl;
+import com.market.warehouse.dto.ReservationDto;
+import com.market.warehouse.dto.ReservationRequestDto;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import jakarta.validation.Valid;
+
+import java.util.NoSuchElementException;
+
+@RestController
+@RequestMapping("/api/products/reservations")
+public class StockReservationApi {
+
+    private final StockReservationBl stockReservationBl;
+
+    @Autowired
+    public StockReservationApi(StockReservationBl stockReservationBl) {
+        this.stockReservationBl = stockReservationBl;
+    }
+
+    @PostMapping
+    public ResponseEntity<ReservationDto> reserve(@Valid @RequestBody ReservationRequestDto request) {
+        try {
+            ReservationDto reservation = stockReservationBl.reserve(
+                    request.getReservationKey(), request.getLines(), request.getTtlSeconds());
+            return ResponseEntity.status(HttpStatus.CREATED).body(reservation);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException | DataIntegrityViolationException e) {
+            // Not enough available stock, or the same key is being reserved concurrently
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @GetMapping("/{reservationKey}")
+    public ResponseEntity<ReservationDto> getReservation(@PathVariable String reservationKey) {
+        ReservationDto reservation = stockReservationBl.getReservation(reservationKey);
+        if (reservation != null) {
+            return ResponseEntity.ok(reservation);
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PostMapping("/{reservationKey}/commit")
+    public ResponseEntity<ReservationDto> commit(@PathVariable String reservationKey) {
+        try {
+            return ResponseEntity.ok(stockReservationBl.commit(reservationKey));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            // Released or expired before it could be committed
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PostMapping("/{reservationKey}/release")
+    public ResponseEntity<ReservationDto> release(@PathVariable String reservationKey) {
+        try {
+            return ResponseEntity.ok(stockReservationBl.release(reservationKey));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            // A product is hot on another warehouse instance
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+}
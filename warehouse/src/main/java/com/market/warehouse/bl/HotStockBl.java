@@ -0,0 +1,389 @@
+package com.market.warehouse.bl;
+
+import com.market.warehouse.dto.StockAvailabilityDto;
+import com.market.warehouse.repository.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Flash-sale mode for products listed in warehouse.stock.hot.product-ids. The stock of a
+// hot product lives in memory: available units in a striped HotStockCounter that never
+// goes negative, on-hand and reserved units in LongAdders. Each change is written to the
+// HotStockJournal and forced to disk right before the surrounding transaction commits, and
+// a write-behind flush applies the net change per product to MySQL every flush interval,
+// so a promotion no longer serializes every sale on one product row lock.
+//
+// The in-memory counters are authoritative, so a hot product is owned by one warehouse
+// instance: on startup the instance claims it in product.hot_stock_owner, and the database
+// stock updates of every instance skip owned products, so other instances answer 409
+// instead of changing stock behind the counters. After a crash, the journal segments not
+// yet flushed are replayed on startup; product.stock_journal_seq records the last applied
+// sequence so a segment is never applied twice.
+@Service
+public class HotStockBl {
+
+    private static final Logger log = LoggerFactory.getLogger(HotStockBl.class);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${warehouse.stock.hot.product-ids:}")
+    private List<Integer> hotProductIds = List.of();
+
+    // Must be unique and stable across restarts: a restarted instance takes its products back
+    @Value("${warehouse.stock.hot.instance-id:}")
+    private String instanceId;
+
+    @Value("${warehouse.stock.hot.journal-dir:data/hot-stock-journal}")
+    private String journalDirectory = "data/hot-stock-journal";
+
+    @Value("${warehouse.stock.hot.stripes:0}")
+    private int stripes;
+
+    // Disable only for benchmarks: without fsync a power loss can drop acknowledged sales
+    @Value("${warehouse.stock.hot.fsync:true}")
+    private boolean fsync = true;
+
+    private final Map<Integer, HotProduct> hotProducts = new ConcurrentHashMap<>();
+
+    private TransactionTemplate transaction;
+    private HotStockJournal journal;
+
+    // Batch whose flush failed, retried together with the next one
+    private HotStockJournal.Batch unflushed;
+
+    @PostConstruct
+    void init() throws IOException {
+        transaction = new TransactionTemplate(transactionManager);
+        if (instanceId == null || instanceId.isBlank()) {
+            instanceId = InetAddress.getLocalHost().getHostName();
+        }
+        long lastSequence = recoverJournal();
+
+        // The previous run's journal is applied, so its claims are dropped; the configured
+        // products are claimed again in the same transaction, before any other instance can
+        int stripeCount = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors();
+        Map<Integer, HotProduct> claimed = transaction.execute(status -> {
+            productRepository.releaseHotStock(instanceId);
+            Map<Integer, HotProduct> products = new HashMap<>();
+            for (Integer productId : hotProductIds) {
+                if (productRepository.claimHotStock(productId, instanceId) == 0) {
+                    Optional<String> owner = productRepository.findHotStockOwnerById(productId);
+                    if (owner.isPresent()) {
+                        log.error("Hot product {} is owned by warehouse instance {}, not enabling it here", productId, owner.get());
+                    } else {
+                        log.warn("Hot product {} does not exist, using the database stock path", productId);
+                    }
+                    continue;
+                }
+                // Holds whose reservation change never committed may have been replayed: recount them
+                productRepository.recountReservedStock(productId);
+                Object[] row = productRepository.findStockAvailabilityByIds(List.of(productId)).get(0);
+                products.put(productId, new HotProduct(stripeCount, (Integer) row[1], (Integer) row[2]));
+            }
+            return products;
+        });
+        if (claimed.isEmpty()) {
+            return;
+        }
+
+        journal = new HotStockJournal(Path.of(journalDirectory), lastSequence, fsync);
+        hotProducts.putAll(claimed);
+        log.info("Hot stock mode enabled for products {} as instance {}", hotProducts.keySet(), instanceId);
+    }
+
+    // Applies the journal segments left by the previous run and returns the last sequence
+    // in use, so new records continue after it
+    private long recoverJournal() throws IOException {
+        List<Path> segments = HotStockJournal.listSegments(Path.of(journalDirectory));
+        List<HotStockJournal.Entry> entries = new ArrayList<>();
+        for (Path segment : segments) {
+            entries.addAll(HotStockJournal.read(segment));
+        }
+
+        Long lastSequence = transaction.execute(status -> {
+            Map<Integer, HotStockJournal.Delta> deltas = new HashMap<>();
+            Map<Integer, Long> applied = new HashMap<>();
+            for (HotStockJournal.Entry entry : entries) {
+                long appliedSequence = applied.computeIfAbsent(entry.productId,
+                        id -> productRepository.findStockJournalSeqById(id).orElse(Long.MAX_VALUE));
+                if (entry.sequence > appliedSequence) {
+                    deltas.computeIfAbsent(entry.productId, id -> new HotStockJournal.Delta())
+                            .add(entry.stockDelta, entry.reservedDelta, entry.sequence);
+                }
+            }
+            deltas.forEach(this::applyJournal);
+            if (!deltas.isEmpty()) {
+                log.info("Recovered hot stock journal changes of products {}", deltas.keySet());
+            }
+            return productRepository.findMaxStockJournalSeq();
+        });
+
+        long journalSequence = entries.isEmpty() ? 0 : entries.get(entries.size() - 1).sequence;
+        for (Path segment : segments) {
+            Files.delete(segment);
+        }
+        return Math.max(journalSequence, lastSequence != null ? lastSequence : 0);
+    }
+
+    // Applies the net change of one product; replaying an applied change is a no-op, a change
+    // that would leave negative stock throws and rolls the whole batch back
+    private void applyJournal(Integer productId, HotStockJournal.Delta delta) {
+        if (productRepository.applyStockJournal(productId, delta.stockDelta, delta.reservedDelta, delta.sequence) == 0
+                && productRepository.findStockJournalSeqById(productId).map(applied -> applied < delta.sequence).orElse(false)) {
+            throw new IllegalStateException(String.format("Hot stock change of product %d (stock %+d, reserved %+d) "
+                    + "would leave negative stock", productId, delta.stockDelta, delta.reservedDelta));
+        }
+    }
+
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    public boolean isHot(Integer productId) {
+        return hotProducts.containsKey(productId);
+    }
+
+    // Returns the new stock level; throws IllegalStateException when there is not enough
+    // stock outside active reservations
+    public Integer decreaseStock(Integer productId, Integer quantity) {
+        HotProduct product = hotProducts.get(productId);
+        take(product, quantity);
+        record(productId, product, -quantity, -quantity, 0);
+        return (int) product.stock.sum();
+    }
+
+    // Returns the new stock level
+    public Integer increaseStock(Integer productId, Integer quantity) {
+        HotProduct product = hotProducts.get(productId);
+        record(productId, product, quantity, quantity, 0);
+        return (int) product.stock.sum();
+    }
+
+    // Holds units for a reservation; throws IllegalStateException when not enough are available
+    public void reserveStock(Integer productId, Integer quantity) {
+        HotProduct product = hotProducts.get(productId);
+        take(product, quantity);
+        record(productId, product, -quantity, 0, quantity);
+    }
+
+    // Turns held units into a stock decrease
+    public void commitReservedStock(Integer productId, Integer quantity) {
+        HotProduct product = hotProducts.get(productId);
+        record(productId, product, 0, -quantity, -quantity);
+    }
+
+    // Gives held units back to available stock
+    public void releaseReservedStock(Integer productId, Integer quantity) {
+        HotProduct product = hotProducts.get(productId);
+        record(productId, product, quantity, 0, -quantity);
+    }
+
+    public StockAvailabilityDto getStockAvailability(Integer productId) {
+        HotProduct product = hotProducts.get(productId);
+        return new StockAvailabilityDto(productId, (int) product.stock.sum(), (int) product.reserved.sum());
+    }
+
+    public Integer getStockQuantity(Integer productId) {
+        return (int) hotProducts.get(productId).stock.sum();
+    }
+
+    private void take(HotProduct product, int quantity) {
+        if (!product.available.tryTake(quantity)) {
+            throw new IllegalStateException(
+                String.format("Insufficient stock. Available: %d, Requested: %d", product.available.sum(), quantity)
+            );
+        }
+    }
+
+    // Taken units and the on-hand / reserved totals change right away, so concurrent requests
+    // see the units as gone; units given back only become available once the change commits.
+    // The change is journaled when the surrounding transaction commits and undone if it rolls back
+    private void record(Integer productId, HotProduct product, int availableDelta, int stockDelta, int reservedDelta) {
+        product.stock.add(stockDelta);
+        product.reserved.add(reservedDelta);
+        StockChange change = new StockChange(productId, product, availableDelta, stockDelta, reservedDelta);
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            try {
+                journal.sync(journal.append(productId, stockDelta, reservedDelta));
+            } catch (IOException e) {
+                change.undo();
+                throw new UncheckedIOException("Hot stock journal write failed", e);
+            }
+            change.commit();
+            return;
+        }
+        JournaledTransaction journaled = (JournaledTransaction) TransactionSynchronizationManager.getResource(this);
+        if (journaled == null) {
+            journaled = new JournaledTransaction();
+            TransactionSynchronizationManager.bindResource(this, journaled);
+            TransactionSynchronizationManager.registerSynchronization(journaled);
+        }
+        journaled.changes.add(change);
+    }
+
+    // Write-behind: applies the journaled changes to MySQL, one UPDATE per changed product
+    @Scheduled(fixedDelayString = "${warehouse.stock.hot.flush-interval-ms:200}")
+    public synchronized void flush() {
+        if (journal == null) {
+            return;
+        }
+        HotStockJournal.Batch batch;
+        try {
+            HotStockJournal.Batch rolled = journal.roll();
+            batch = unflushed == null ? rolled : rolled == null ? unflushed : unflushed.merge(rolled);
+        } catch (IOException e) {
+            log.error("Hot stock journal could not be rolled: {}", e.getMessage());
+            return;
+        }
+        if (batch == null) {
+            return;
+        }
+
+        try {
+            transaction.executeWithoutResult(status -> batch.deltas.forEach(this::applyJournal));
+            unflushed = null;
+        } catch (RuntimeException e) {
+            // The sealed segments stay on disk, so the changes also survive a crash before the retry
+            unflushed = batch;
+            log.warn("Hot stock flush failed, retrying on the next run: {}", e.getMessage());
+            return;
+        }
+
+        for (Path segment : batch.segments) {
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                // Harmless: replaying it on startup is a no-op thanks to stock_journal_seq
+                log.warn("Flushed hot stock segment {} could not be deleted: {}", segment, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws IOException {
+        if (journal != null) {
+            flush();
+            journal.close();
+            if (unflushed == null) {
+                // Every change is in MySQL, the database stock path can take the products over
+                transaction.executeWithoutResult(status -> productRepository.releaseHotStock(instanceId));
+            }
+        }
+    }
+
+    // In-memory stock of one hot product
+    private static final class HotProduct {
+        final HotStockCounter available;
+        final LongAdder stock = new LongAdder();
+        final LongAdder reserved = new LongAdder();
+
+        HotProduct(int stripes, int stockQuantity, int reservedQuantity) {
+            available = new HotStockCounter(stripes, stockQuantity - reservedQuantity);
+            stock.add(stockQuantity);
+            reserved.add(reservedQuantity);
+        }
+    }
+
+    private static final class StockChange {
+        final Integer productId;
+        final HotProduct product;
+        final int availableDelta;
+        final int stockDelta;
+        final int reservedDelta;
+
+        StockChange(Integer productId, HotProduct product, int availableDelta, int stockDelta, int reservedDelta) {
+            this.productId = productId;
+            this.product = product;
+            this.availableDelta = availableDelta;
+            this.stockDelta = stockDelta;
+            this.reservedDelta = reservedDelta;
+        }
+
+        void commit() {
+            if (availableDelta > 0) {
+                product.available.add(availableDelta);
+            }
+        }
+
+        void undo() {
+            if (availableDelta < 0) {
+                product.available.add(-availableDelta);
+            }
+            product.stock.add(-stockDelta);
+            product.reserved.add(-reservedDelta);
+        }
+    }
+
+    // Hot stock changes of one transaction, journaled once it is about to commit
+    private final class JournaledTransaction implements TransactionSynchronization {
+        final List<StockChange> changes = new ArrayList<>();
+        int journaled;
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            try {
+                long sequence = 0;
+                for (StockChange change : changes) {
+                    sequence = journal.append(change.productId, change.stockDelta, change.reservedDelta);
+                    journaled++;
+                }
+                journal.sync(sequence);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Hot stock journal write failed", e);
+            }
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResource(HotStockBl.this);
+            if (status == STATUS_COMMITTED) {
+                changes.forEach(StockChange::commit);
+                return;
+            }
+            for (int i = 0; i < changes.size(); i++) {
+                StockChange change = changes.get(i);
+                change.undo();
+                if (i < journaled) {
+                    // Journaled in beforeCommit but the database commit failed
+                    appendInverse(change);
+                }
+            }
+        }
+
+        private void appendInverse(StockChange change) {
+            try {
+                journal.sync(journal.append(change.productId, -change.stockDelta, -change.reservedDelta));
+            } catch (IOException e) {
+                log.error("Rolled back hot stock change of product {} could not be journaled: {}",
+                          change.productId, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.market.warehouse.bl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Available stock of one hot product split over several atomic stripes, so concurrent
+// sales mostly CAS on different cache lines instead of one shared value. A stripe is
+// never taken below zero, so the total can never go negative: a request is only granted
+// when it could take every unit it asked for from the stripes.
+final class HotStockCounter {
+
+    // One stripe every 16 longs (128 bytes) keeps stripes on separate cache lines
+    private static final int PADDING = 16;
+
+    // A take that collides with concurrent takes may see units in flight; retry a few times
+    // before reporting the product as short of stock
+    private static final int MAX_ATTEMPTS = 4;
+
+    private final AtomicLongArray cells;
+    private final int stripes;
+
+    HotStockCounter(int stripes, long initial) {
+        this.stripes = Math.max(1, stripes);
+        this.cells = new AtomicLongArray(this.stripes * PADDING);
+        long share = Math.max(0, initial) / this.stripes;
+        long remainder = Math.max(0, initial) % this.stripes;
+        for (int i = 0; i < this.stripes; i++) {
+            cells.set(i * PADDING, share + (i < remainder ? 1 : 0));
+        }
+    }
+
+    // Takes quantity units, starting with the calling thread's home stripe. Returns false
+    // without changing anything when not enough units are available.
+    boolean tryTake(long quantity) {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            long taken = takeUpTo(quantity);
+            if (taken == quantity) {
+                return true;
+            }
+            add(taken);
+            if (sum() < quantity) {
+                return false;
+            }
+            Thread.onSpinWait();
+        }
+        return false;
+    }
+
+    void add(long quantity) {
+        if (quantity != 0) {
+            cells.addAndGet(homeStripe() * PADDING, quantity);
+        }
+    }
+
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < stripes; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    private long takeUpTo(long quantity) {
+        int home = homeStripe();
+        long taken = 0;
+        for (int i = 0; i < stripes && taken < quantity; i++) {
+            int index = ((home + i) % stripes) * PADDING;
+            long current;
+            long take;
+            do {
+                current = cells.get(index);
+                take = Math.min(current, quantity - taken);
+            } while (take > 0 && !cells.compareAndSet(index, current, current - take));
+            if (take > 0) {
+                taken += take;
+            }
+        }
+        return taken;
+    }
+
+    private int homeStripe() {
+        long id = Thread.currentThread().getId();
+        return (int) ((id ^ (id >>> 16)) & Integer.MAX_VALUE) % stripes;
+    }
+}
@@ -0,0 +1,223 @@
+package com.market.warehouse.bl;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+// Append-only write-ahead journal of hot product stock changes. Every change gets a
+// sequence number and is written as a fixed-size, checksummed record; sync() forces the
+// file to disk once for all records appended so far (group commit). The journal is split
+// into segments: roll() seals the current segment together with the changes it holds, and
+// sealed segments are deleted once those changes are stored in MySQL.
+final class HotStockJournal implements Closeable {
+
+    // sequence (8) + productId (4) + stockDelta (4) + reservedDelta (4) + crc (4)
+    static final int RECORD_SIZE = 24;
+
+    private static final String SEGMENT_PREFIX = "hot-stock-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final boolean fsync;
+    private final Object syncLock = new Object();
+
+    // Guarded by this
+    private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE);
+    private final CRC32 crc = new CRC32();
+    private FileChannel channel;
+    private Path segment;
+    private long lastSequence;
+    private Map<Integer, Delta> pending = new HashMap<>();
+
+    // Guarded by syncLock
+    private long syncedSequence;
+
+    HotStockJournal(Path directory, long lastSequence, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.fsync = fsync;
+        this.lastSequence = lastSequence;
+        this.syncedSequence = lastSequence;
+        Files.createDirectories(directory);
+        openSegment();
+    }
+
+    // Writes one change and returns its sequence number; the change is durable after sync()
+    synchronized long append(int productId, int stockDelta, int reservedDelta) throws IOException {
+        long sequence = lastSequence + 1;
+        buffer.clear();
+        buffer.putLong(sequence).putInt(productId).putInt(stockDelta).putInt(reservedDelta);
+        crc.reset();
+        crc.update(buffer.array(), 0, RECORD_SIZE - 4);
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+
+        long start = channel.position();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            // Drop the partial record so later records are not hidden behind a torn one
+            channel.truncate(start);
+            throw e;
+        }
+        lastSequence = sequence;
+        pending.computeIfAbsent(productId, id -> new Delta()).add(stockDelta, reservedDelta, sequence);
+        return sequence;
+    }
+
+    // Forces every record up to the given sequence to disk. Threads waiting here share a
+    // single force() of everything appended before the first of them got the lock
+    void sync(long sequence) throws IOException {
+        if (!fsync) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (syncedSequence >= sequence) {
+                return;
+            }
+            long target;
+            FileChannel current;
+            synchronized (this) {
+                target = lastSequence;
+                current = channel;
+            }
+            current.force(false);
+            syncedSequence = target;
+        }
+    }
+
+    // Seals the current segment and returns the changes it holds, or null if nothing was
+    // appended since the last roll
+    Batch roll() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return null;
+                }
+                FileChannel sealedChannel = channel;
+                Path sealedSegment = segment;
+                openSegment();
+                sealedChannel.force(false);
+                sealedChannel.close();
+                syncedSequence = lastSequence;
+
+                Batch batch = new Batch(pending, sealedSegment);
+                pending = new HashMap<>();
+                return batch;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                channel.force(false);
+                channel.close();
+            }
+        }
+    }
+
+    // Segments are named after the first sequence they can hold, so names sort in write order
+    private void openSegment() throws IOException {
+        segment = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, lastSequence + 1, SEGMENT_SUFFIX));
+        channel = FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // Lists the segments in a journal directory in write order
+    static List<Path> listSegments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    // Reads the records of a segment up to the first torn or corrupt one
+    static List<Entry> read(Path segment) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        CRC32 checksum = new CRC32();
+        try (FileChannel in = FileChannel.open(segment, StandardOpenOption.READ)) {
+            while (true) {
+                record.clear();
+                while (record.hasRemaining()) {
+                    if (in.read(record) < 0) {
+                        // End of segment, possibly in the middle of a torn last record
+                        return entries;
+                    }
+                }
+                checksum.reset();
+                checksum.update(record.array(), 0, RECORD_SIZE - 4);
+                record.flip();
+                Entry entry = new Entry(record.getLong(), record.getInt(), record.getInt(), record.getInt());
+                if (record.getInt() != (int) checksum.getValue()) {
+                    return entries;
+                }
+                entries.add(entry);
+            }
+        }
+    }
+
+    // One journaled change
+    static final class Entry {
+        final long sequence;
+        final int productId;
+        final int stockDelta;
+        final int reservedDelta;
+
+        Entry(long sequence, int productId, int stockDelta, int reservedDelta) {
+            this.sequence = sequence;
+            this.productId = productId;
+            this.stockDelta = stockDelta;
+            this.reservedDelta = reservedDelta;
+        }
+    }
+
+    // Net change of one product and the sequence of its last journaled change
+    static final class Delta {
+        long stockDelta;
+        long reservedDelta;
+        long sequence;
+
+        void add(long stock, long reserved, long lastSequence) {
+            stockDelta += stock;
+            reservedDelta += reserved;
+            sequence = Math.max(sequence, lastSequence);
+        }
+    }
+
+    // Changes of one or more sealed segments, keyed by product id
+    static final class Batch {
+        final Map<Integer, Delta> deltas;
+        final List<Path> segments = new ArrayList<>();
+
+        Batch(Map<Integer, Delta> deltas, Path segment) {
+            this.deltas = deltas;
+            this.segments.add(segment);
+        }
+
+        // Folds a later batch into this one, used when a flush failed and is retried
+        Batch merge(Batch later) {
+            later.deltas.forEach((productId, delta) -> deltas.computeIfAbsent(productId, id -> new Delta())
+                    .add(delta.stockDelta, delta.reservedDelta, delta.sequence));
+            segments.addAll(later.segments);
+            return this;
+        }
+    }
+}
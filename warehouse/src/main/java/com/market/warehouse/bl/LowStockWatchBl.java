@@ -0,0 +1,132 @@
+package com.market.warehouse.bl;
+
+import com.market.warehouse.dto.LowStockEventDto;
+import com.market.warehouse.dto.ProductChangeDto;
+import com.market.warehouse.repository.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+// Low-stock watch list kept in memory. Built from the database at startup, then kept up
+// to date by tailing the product change log, so it sees the changes committed through
+// every warehouse instance and listing low-stock products never scans the product table. Products crossing their minimum stock level in either
+// direction are pushed to subscribers (the SSE stream of ProductApi).
+@Service
+public class LowStockWatchBl {
+
+    private static final Logger log = LoggerFactory.getLogger(LowStockWatchBl.class);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private HotStockBl hotStockBl;
+
+    @Autowired
+    private ProductChangeFeedBl productChangeFeedBl;
+
+    private ProductChangeTail changeTail;
+
+    private final NavigableSet<Integer> lowStockIds = new ConcurrentSkipListSet<>();
+
+    private final List<Consumer<LowStockEventDto>> subscribers = new CopyOnWriteArrayList<>();
+
+    // Subscribers are notified off the request thread, so a slow client never delays a sale
+    private final ExecutorService notifier = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "low-stock-notifier");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    void init() {
+        changeTail = new ProductChangeTail("low-stock watch list", productChangeFeedBl, this::rebuild, this::apply);
+        changeTail.start();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        notifier.shutdownNow();
+    }
+
+    // Ids of the products at or below their minimum stock level, in id order
+    public List<Integer> getLowStockProductIds() {
+        return new ArrayList<>(lowStockIds);
+    }
+
+    public void subscribe(Consumer<LowStockEventDto> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Consumer<LowStockEventDto> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    // Changes are applied by this one thread in log order, so a product's crossings are
+    // detected against its latest committed state
+    @Scheduled(fixedDelayString = "${warehouse.product.changes.poll-interval-ms:500}")
+    public void pollChanges() {
+        changeTail.poll();
+    }
+
+    // Reads the stock level of every product (from memory for local hot products) and drops
+    // the products deleted since the list was last built
+    private void rebuild() {
+        Set<Integer> productIds = new HashSet<>();
+        for (Object[] row : productRepository.findStockLevels()) {
+            Integer productId = (Integer) row[0];
+            Integer stockQuantity = hotStockBl.isHot(productId) ? hotStockBl.getStockQuantity(productId) : (Integer) row[1];
+            update(productId, stockQuantity, (Integer) row[2]);
+            productIds.add(productId);
+        }
+        lowStockIds.retainAll(productIds);
+        log.info("Low-stock watch list built: {} products at or below their minimum", lowStockIds.size());
+    }
+
+    private void apply(ProductChangeDto change) {
+        if (change.getProduct() == null) {
+            // Deleted
+            lowStockIds.remove(change.getProductId());
+            return;
+        }
+        update(change.getProductId(), change.getProduct().getStockQuantity(), change.getProduct().getMinStockLevel());
+    }
+
+    private void update(Integer productId, Integer stockQuantity, Integer minStockLevel) {
+        LowStockEventDto crossing = null;
+        // Synchronized so crossings of a product are detected and queued in order
+        synchronized (this) {
+            int stock = stockQuantity != null ? stockQuantity : 0;
+            boolean low = minStockLevel != null && stock <= minStockLevel;
+            boolean changed = low ? lowStockIds.add(productId) : lowStockIds.remove(productId);
+            if (changed && !subscribers.isEmpty()) {
+                crossing = new LowStockEventDto(productId, stock, minStockLevel, low);
+            }
+        }
+        if (crossing != null) {
+            LowStockEventDto event = crossing;
+            notifier.execute(() -> subscribers.forEach(subscriber -> {
+                try {
+                    subscriber.accept(event);
+                } catch (RuntimeException e) {
+                    log.warn("Low-stock subscriber failed for product {}", event.getProductId(), e);
+                }
+            }));
+        }
+    }
+}
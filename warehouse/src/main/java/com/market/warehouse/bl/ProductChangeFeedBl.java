@@ -0,0 +1,298 @@
+package com.market.warehouse.bl;
+
+import com.market.warehouse.dto.ProductChangeDto;
+import com.market.warehouse.dto.ProductChangeDto.ChangeType;
+import com.market.warehouse.dto.ProductChangesDto;
+import com.market.warehouse.dto.ProductDto;
+import com.market.warehouse.event.ProductChangedEvent;
+import com.market.warehouse.event.StockLevelChangedEvent;
+import com.market.warehouse.repository.ProductChangeLogRepository;
+import com.market.warehouse.repository.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Change feed over the durable product change log, used by sales to keep its product
+// cache fresh and by other services to maintain local replicas incrementally. Every
+// product or stock change is appended to product_change_log in the transaction that makes
+// it, one entry per product per transaction, so the log survives restarts and is shared by
+// all warehouse instances.
+//
+// Seqs come from AUTO_INCREMENT and are allocated right before commit, but two commits
+// can still become visible out of seq order. A reader therefore stops at a gap in the seqs
+// while the entry after it is younger than the commit grace period; older gaps are
+// rolled back transactions or compacted entries.
+//
+// Long polls wait on a single feed thread, woken after each local commit and every poll
+// interval (for changes committed by other instances).
+@Service
+public class ProductChangeFeedBl {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductChangeFeedBl.class);
+
+    public static final int MAX_BATCH_SIZE = 1000;
+
+    public static final int MAX_WAIT_SECONDS = 25;
+
+    private static final long COMPACTION_CHUNK = 10_000;
+
+    // When a transaction changes a product several times its entry gets the weightiest type
+    private static final List<ChangeType> PRECEDENCE =
+            List.of(ChangeType.STOCK, ChangeType.UPDATED, ChangeType.CREATED, ChangeType.DELETED);
+
+    @Autowired
+    private ProductChangeLogRepository productChangeLogRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private HotStockBl hotStockBl;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Latest changes kept verbatim; older ones are compacted to the latest entry per product
+    @Value("${warehouse.product.changes.retained:100000}")
+    private long retainedChanges;
+
+    @Value("${warehouse.product.changes.commit-grace-ms:5000}")
+    private long commitGraceMillis;
+
+    @Value("${warehouse.product.changes.poll-interval-ms:500}")
+    private long pollIntervalMillis;
+
+    private final Set<Waiter> waiters = ConcurrentHashMap.newKeySet();
+
+    private final Object signal = new Object();
+    private boolean signalled;
+
+    private final ExecutorService feed = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "product-change-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    void init() {
+        feed.execute(this::answerWaiters);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        feed.shutdownNow();
+    }
+
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        record(event.getProductId(), ChangeType.valueOf(event.getChangeType().name()));
+    }
+
+    @EventListener
+    public void onStockLevelChanged(StockLevelChangedEvent event) {
+        record(event.getProductId(), ChangeType.STOCK);
+    }
+
+    // Reads up to limit log entries after since and returns the latest change per product
+    // among them, with the product as it is now. since is the cursor of the previous batch,
+    // 0 to read the whole (compacted) log, or null to only get the current cursor.
+    public ProductChangesDto getChangesSince(Long since, int limit) {
+        if (limit < 1 || limit > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        if (since == null) {
+            return new ProductChangesDto(productChangeLogRepository.findLastSeq(), true, List.of());
+        }
+        if (since < 0) {
+            throw new IllegalArgumentException("Cursor cannot be negative");
+        }
+
+        List<ProductChangeLogRepository.Entry> entries = productChangeLogRepository.findChangesAfter(since, limit, commitGraceMillis);
+        // Read after the entries: a compaction that removed one of them is visible here
+        long compactedThrough = productChangeLogRepository.findCompactedThrough();
+        if (since > 0 && since < compactedThrough) {
+            return new ProductChangesDto(0L, true, List.of());
+        }
+        if (entries.isEmpty() && since > productChangeLogRepository.findLastSeq()) {
+            // A cursor from another database
+            return new ProductChangesDto(0L, true, List.of());
+        }
+
+        long cursor = since;
+        Map<Integer, ProductChangeDto> latest = new LinkedHashMap<>();
+        for (ProductChangeLogRepository.Entry entry : entries) {
+            long seq = entry.change.getSeq();
+            if (seq != cursor + 1 && entry.settling && cursor >= compactedThrough) {
+                // The missing seqs may still commit
+                break;
+            }
+            latest.remove(entry.change.getProductId());
+            latest.put(entry.change.getProductId(), entry.change);
+            cursor = seq;
+        }
+        attachProducts(latest);
+        return new ProductChangesDto(cursor, false, new ArrayList<>(latest.values()));
+    }
+
+    // Like getChangesSince, but when there is nothing new yet waits up to waitSeconds for
+    // the next change before answering with an empty batch
+    public CompletableFuture<ProductChangesDto> awaitChangesSince(Long since, int limit, int waitSeconds) {
+        if (waitSeconds < 0 || waitSeconds > MAX_WAIT_SECONDS) {
+            throw new IllegalArgumentException("Wait must be between 0 and " + MAX_WAIT_SECONDS + " seconds");
+        }
+        ProductChangesDto changes = getChangesSince(since, limit);
+        if (waitSeconds == 0 || changes.isReset() || !changes.getChanges().isEmpty()) {
+            return CompletableFuture.completedFuture(changes);
+        }
+        Waiter waiter = new Waiter(since, limit);
+        waiter.result.completeOnTimeout(changes, waitSeconds, TimeUnit.SECONDS)
+                .whenComplete((result, error) -> waiters.remove(waiter));
+        waiters.add(waiter);
+        // A change may have committed between the read above and the registration
+        wakeUp();
+        return waiter.result;
+    }
+
+    // Compacts the log below the retained tail: superseded entries and tombstones are
+    // deleted in chunks, each in its own short transaction
+    @Scheduled(fixedDelayString = "${warehouse.product.changes.compaction-interval-ms:60000}")
+    public void compact() {
+        long horizon = productChangeLogRepository.findLastSeq() - retainedChanges;
+        long from = productChangeLogRepository.findCompactedThrough();
+        if (horizon <= from) {
+            return;
+        }
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int deleted = 0;
+        for (long lo = from; lo < horizon; lo += COMPACTION_CHUNK) {
+            long chunkFrom = lo;
+            long chunkTo = Math.min(lo + COMPACTION_CHUNK, horizon);
+            Integer chunkDeleted = transaction.execute(status -> productChangeLogRepository.compact(chunkFrom, chunkTo));
+            deleted += chunkDeleted != null ? chunkDeleted : 0;
+        }
+        log.info("Product change log compacted through seq {}: {} entries deleted", horizon, deleted);
+    }
+
+    private void record(Integer productId, ChangeType changeType) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            productChangeLogRepository.append(Map.of(productId, changeType));
+            wakeUp();
+            return;
+        }
+        PendingChanges pending = (PendingChanges) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingChanges();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        pending.changes.merge(productId, changeType,
+                (recorded, next) -> PRECEDENCE.indexOf(next) > PRECEDENCE.indexOf(recorded) ? next : recorded);
+    }
+
+    // Attaches the current product to every change but deletions, in one query
+    private void attachProducts(Map<Integer, ProductChangeDto> changes) {
+        List<Integer> productIds = changes.values().stream()
+                .filter(change -> change.getChangeType() != ChangeType.DELETED)
+                .map(ProductChangeDto::getProductId)
+                .toList();
+        if (productIds.isEmpty()) {
+            return;
+        }
+        for (ProductDto product : productRepository.findProductDtosByIds(productIds)) {
+            if (hotStockBl.isHot(product.getId())) {
+                // The database lags behind the in-memory stock of hot products
+                product.setStockQuantity(hotStockBl.getStockQuantity(product.getId()));
+            }
+            changes.get(product.getId()).setProduct(product);
+        }
+    }
+
+    private void wakeUp() {
+        synchronized (signal) {
+            signalled = true;
+            signal.notifyAll();
+        }
+    }
+
+    // Feed thread: re-reads the log for the waiting long polls after each wake up, sharing
+    // one read between the waiters at the same cursor
+    private void answerWaiters() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                synchronized (signal) {
+                    if (!signalled) {
+                        signal.wait(pollIntervalMillis);
+                    }
+                    signalled = false;
+                }
+                if (waiters.isEmpty()) {
+                    continue;
+                }
+                Map<List<Long>, ProductChangesDto> reads = new HashMap<>();
+                for (Waiter waiter : waiters) {
+                    ProductChangesDto changes = reads.computeIfAbsent(
+                            List.of(waiter.since, (long) waiter.limit), key -> getChangesSince(waiter.since, waiter.limit));
+                    if (changes.isReset() || !changes.getChanges().isEmpty()) {
+                        waiter.result.complete(changes);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                // Waiters still get an empty batch when they time out
+                log.warn("Product change feed read failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static final class Waiter {
+        final Long since;
+        final int limit;
+        final CompletableFuture<ProductChangesDto> result = new CompletableFuture<>();
+
+        Waiter(Long since, int limit) {
+            this.since = since;
+            this.limit = limit;
+        }
+    }
+
+    // Changes of one transaction, appended to the log right before it commits
+    private final class PendingChanges implements TransactionSynchronization {
+        final Map<Integer, ChangeType> changes = new LinkedHashMap<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            productChangeLogRepository.append(changes);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResource(ProductChangeFeedBl.this);
+            if (status == STATUS_COMMITTED) {
+                wakeUp();
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.market.warehouse.bl;
+
+import com.market.warehouse.dto.ProductChangeDto;
+import com.market.warehouse.dto.ProductChangesDto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.Consumer;
+
+// Follows the durable product change log for an in-memory view that every warehouse
+// instance keeps (low-stock watch list, search index), so changes made through any
+// instance reach the view, in log order. Each change carries the product as it is now,
+// so applying one twice is harmless. When the cursor was compacted away the view is
+// rebuilt from the database.
+final class ProductChangeTail {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductChangeTail.class);
+
+    private final String view;
+    private final ProductChangeFeedBl feed;
+    private final Runnable rebuild;
+    private final Consumer<ProductChangeDto> apply;
+
+    // Guarded by this
+    private long cursor;
+
+    ProductChangeTail(String view, ProductChangeFeedBl feed, Runnable rebuild, Consumer<ProductChangeDto> apply) {
+        this.view = view;
+        this.feed = feed;
+        this.rebuild = rebuild;
+        this.apply = apply;
+    }
+
+    // Takes the end of the log, then rebuilds the view; changes committed during the
+    // rebuild are applied again by the next poll
+    synchronized void start() {
+        long end = feed.getChangesSince(null, 1).getCursor();
+        rebuild.run();
+        cursor = end;
+    }
+
+    // Applies every change logged since the previous poll
+    synchronized void poll() {
+        try {
+            while (true) {
+                ProductChangesDto changes = feed.getChangesSince(cursor, ProductChangeFeedBl.MAX_BATCH_SIZE);
+                if (changes.isReset()) {
+                    log.info("Product change log compacted past the {} cursor {}, rebuilding", view, cursor);
+                    start();
+                    return;
+                }
+                changes.getChanges().forEach(apply);
+                if (changes.getCursor() == cursor) {
+                    return;
+                }
+                cursor = changes.getCursor();
+            }
+        } catch (RuntimeException e) {
+            // The cursor only moves past applied changes, the next poll picks up from there
+            log.warn("Product change log read for the {} failed: {}", view, e.getMessage());
+        }
+    }
+}
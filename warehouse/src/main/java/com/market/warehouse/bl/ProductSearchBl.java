@@ -0,0 +1,90 @@
+package com.market.warehouse.bl;
+
+import com.market.warehouse.dto.ProductChangeDto;
+import com.market.warehouse.dto.ProductDto;
+import com.market.warehouse.dto.ProductSearchHitDto;
+import com.market.warehouse.repository.ProductStreamRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Product search over name, SKU, brand, category and supplier. The index lives in memory:
+// it is built from a streaming read of the catalog at startup, then kept current by tailing
+// the product change log, so products created, updated or deleted through any warehouse
+// instance show up in the results of every instance.
+@Service
+public class ProductSearchBl {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchBl.class);
+
+    public static final int MAX_LIMIT = 100;
+    public static final int MAX_OFFSET = 10_000;
+
+    @Autowired
+    private ProductStreamRepository productStreamRepository;
+
+    @Autowired
+    private ProductChangeFeedBl productChangeFeedBl;
+
+    // Replaced as a whole when the index is rebuilt, so searches never see a half-built one
+    private volatile ProductSearchIndex index = new ProductSearchIndex();
+
+    private ProductChangeTail changeTail;
+
+    @PostConstruct
+    void init() {
+        changeTail = new ProductChangeTail("search index", productChangeFeedBl, this::rebuild, this::apply);
+        changeTail.start();
+    }
+
+    @Scheduled(fixedDelayString = "${warehouse.product.changes.poll-interval-ms:500}")
+    public void pollChanges() {
+        changeTail.poll();
+    }
+
+    // Ranked hits offset to offset + limit - 1; throws IllegalArgumentException for an empty
+    // query or an out of range page
+    public List<ProductSearchHitDto> search(String query, int offset, int limit) {
+        if (query == null || ProductSearchIndex.tokenize(query).isEmpty()) {
+            throw new IllegalArgumentException("Query must contain at least one letter or digit");
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+        if (offset < 0 || offset > MAX_OFFSET) {
+            throw new IllegalArgumentException("Offset must be between 0 and " + MAX_OFFSET);
+        }
+        return index.search(query, offset, limit).stream()
+                .map(hit -> new ProductSearchHitDto(hit.document.productId, hit.document.name, hit.document.sku,
+                        hit.document.brand, hit.document.category, hit.score))
+                .collect(Collectors.toList());
+    }
+
+    private void rebuild() {
+        long start = System.nanoTime();
+        ProductSearchIndex rebuilt = new ProductSearchIndex();
+        productStreamRepository.streamProductsAfter(0, product -> put(rebuilt, product));
+        index = rebuilt;
+        log.info("Product search index built: {} products in {} ms", rebuilt.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private void apply(ProductChangeDto change) {
+        if (change.getProduct() == null) {
+            // Deleted
+            index.remove(change.getProductId());
+        } else {
+            put(index, change.getProduct());
+        }
+    }
+
+    private static void put(ProductSearchIndex index, ProductDto product) {
+        index.put(product.getId(), product.getName(), product.getSku(), product.getBrand(),
+                product.getCategory(), product.getSupplier());
+    }
+}
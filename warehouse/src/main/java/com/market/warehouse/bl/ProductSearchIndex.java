@@ -0,0 +1,438 @@
+package com.market.warehouse.bl;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+// In-memory edge n-gram index over the searchable product fields. Every term is indexed
+// under each of its prefixes (up to MAX_GRAM characters) in a per-field map of sorted int
+// postings, and under its full text in a per-field exact map, so a typeahead lookup is a
+// hash probe instead of a scan. SKUs are unique, so their prefixes would each hold one id:
+// SKU terms are kept in a sorted dictionary and a prefix is a range scan over it instead.
+// Terms are lower-cased and accent-folded.
+//
+// Ranking: each query term scores 2 * field weight (+1 when it matches a whole term) in
+// the best field it matches, and a product must match every query term. Ties go to the
+// lower product id (for SKU prefix matches of a single term, to the lower SKU).
+// Single-term queries (the typeahead case) walk the postings tier by tier in score order
+// and stop once the page is full.
+final class ProductSearchIndex {
+
+    // Search fields, highest weight first
+    enum Field {
+        SKU(5),
+        NAME(4),
+        BRAND(3),
+        CATEGORY(2),
+        SUPPLIER(1);
+
+        final int weight;
+
+        Field(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    // Longer query terms are looked up by their first MAX_GRAM characters and verified
+    static final int MAX_GRAM = 12;
+
+    static final int MAX_QUERY_TERMS = 8;
+
+    private static final Field[] FIELDS = Field.values();
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    private final List<Map<String, Postings>> prefixes = new ArrayList<>();
+    private final List<Map<String, Postings>> terms = new ArrayList<>();
+    private final NavigableMap<String, Postings> skuTerms = new TreeMap<>();
+    private final Map<Integer, Document> documents = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    ProductSearchIndex() {
+        for (Field field : FIELDS) {
+            prefixes.add(field == Field.SKU ? null : new HashMap<>());
+            terms.add(field == Field.SKU ? skuTerms : new HashMap<>());
+        }
+    }
+
+    // Adds or replaces a product; a product whose searchable fields did not change (e.g. a
+    // stock change) is left as is
+    void put(int productId, String name, String sku, String brand, String category, String supplier) {
+        Document document = new Document(productId, name, sku, brand, category, supplier);
+        lock.writeLock().lock();
+        try {
+            Document previous = documents.get(productId);
+            if (previous != null && previous.sameAs(document)) {
+                return;
+            }
+            documents.put(productId, document);
+            if (previous != null) {
+                unindex(previous);
+            }
+            index(document);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(int productId) {
+        lock.writeLock().lock();
+        try {
+            Document previous = documents.remove(productId);
+            if (previous != null) {
+                unindex(previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Returns the hits ranked offset to offset + limit - 1 for the query
+    List<Hit> search(String query, int offset, int limit) {
+        List<String> queryTerms = new ArrayList<>(tokenize(query));
+        if (queryTerms.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (queryTerms.size() > MAX_QUERY_TERMS) {
+            queryTerms = queryTerms.subList(0, MAX_QUERY_TERMS);
+        }
+        lock.readLock().lock();
+        try {
+            return queryTerms.size() == 1
+                    ? searchTerm(queryTerms.get(0), offset, limit)
+                    : searchTerms(queryTerms, offset, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Walks (exact, prefix) postings of each field in weight order: the first tier a
+    // product shows up in is its best score, so the walk stops as soon as the page is full
+    private List<Hit> searchTerm(String term, int offset, int limit) {
+        List<Hit> hits = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+        int skipped = 0;
+        for (Field field : FIELDS) {
+            for (boolean exact : new boolean[] {true, false}) {
+                Iterable<Postings> matches = exact ? exactPostings(field, term) : prefixPostings(field, term);
+                for (Postings postings : matches) {
+                    for (int i = 0; i < postings.size; i++) {
+                        int productId = postings.ids[i];
+                        if (seen.contains(productId)) {
+                            continue;
+                        }
+                        Document document = documents.get(productId);
+                        if (!exact && term.length() > MAX_GRAM && !document.matches(field, term)) {
+                            continue;
+                        }
+                        seen.add(productId);
+                        if (skipped < offset) {
+                            skipped++;
+                            continue;
+                        }
+                        hits.add(new Hit(document, 2 * field.weight + (exact ? 1 : 0)));
+                        if (hits.size() == limit) {
+                            return hits;
+                        }
+                    }
+                }
+            }
+        }
+        return hits;
+    }
+
+    // Driven by the rarest query term, walked tier by tier like a single term; every
+    // candidate is scored against all terms and the best offset + limit are kept in a
+    // bounded heap. A candidate can score at most its tier plus the best tier of each
+    // other term, so the walk stops once the heap holds a full page that no remaining
+    // candidate can beat.
+    private List<Hit> searchTerms(List<String> queryTerms, int offset, int limit) {
+        String rarest = null;
+        int rarestCount = Integer.MAX_VALUE;
+        for (String term : queryTerms) {
+            int count = 0;
+            for (Field field : FIELDS) {
+                for (Postings postings : prefixPostings(field, term)) {
+                    count += postings.size;
+                    if (count >= rarestCount) {
+                        break;
+                    }
+                }
+            }
+            if (count < rarestCount) {
+                rarest = term;
+                rarestCount = count;
+            }
+        }
+        if (rarestCount == 0) {
+            return new ArrayList<>();
+        }
+        int othersBest = 0;
+        for (String term : queryTerms) {
+            if (!term.equals(rarest)) {
+                int best = bestTier(term);
+                if (best < 0) {
+                    return new ArrayList<>();
+                }
+                othersBest += best;
+            }
+        }
+
+        Comparator<Hit> ranking = Comparator.comparingInt((Hit hit) -> hit.score).reversed()
+                .thenComparingInt(hit -> hit.document.productId);
+        PriorityQueue<Hit> best = new PriorityQueue<>(ranking.reversed());
+        int wanted = offset + limit;
+        Set<Integer> seen = new HashSet<>();
+        tiers:
+        for (Field field : FIELDS) {
+            for (boolean exact : new boolean[] {true, false}) {
+                int bound = 2 * field.weight + (exact ? 1 : 0) + othersBest;
+                if (best.size() == wanted && best.peek().score > bound) {
+                    break tiers;
+                }
+                // Within one postings list ids ascend, so later candidates also lose ties
+                boolean ascending = exact || field != Field.SKU;
+                for (Postings postings : exact ? exactPostings(field, rarest) : prefixPostings(field, rarest)) {
+                    for (int i = 0; i < postings.size; i++) {
+                        if (ascending && best.size() == wanted && best.peek().score >= bound) {
+                            break;
+                        }
+                        if (!seen.add(postings.ids[i])) {
+                            continue;
+                        }
+                        Document document = documents.get(postings.ids[i]);
+                        int score = score(document, queryTerms);
+                        if (score < 0) {
+                            continue;
+                        }
+                        best.add(new Hit(document, score));
+                        if (best.size() > wanted) {
+                            best.poll();
+                        }
+                    }
+                }
+            }
+        }
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(ranking);
+        return offset < hits.size() ? new ArrayList<>(hits.subList(offset, hits.size())) : new ArrayList<>();
+    }
+
+    // Highest score any product can get for the term, or -1 when nothing matches it
+    private int bestTier(String term) {
+        for (Field field : FIELDS) {
+            if (exactPostings(field, term).iterator().hasNext()) {
+                return 2 * field.weight + 1;
+            }
+            if (prefixPostings(field, term).iterator().hasNext()) {
+                return 2 * field.weight;
+            }
+        }
+        return -1;
+    }
+
+    private Iterable<Postings> exactPostings(Field field, String term) {
+        Postings postings = terms.get(field.ordinal()).get(term);
+        return postings != null ? List.of(postings) : List.of();
+    }
+
+    // Postings of the field's terms starting with the query term; longer than MAX_GRAM
+    // terms get the postings of their first MAX_GRAM characters, to be verified
+    private Iterable<Postings> prefixPostings(Field field, String term) {
+        if (field == Field.SKU) {
+            return skuTerms.subMap(term, true, term + Character.MAX_VALUE, false).values();
+        }
+        Postings postings = prefixes.get(field.ordinal()).get(gramOf(term));
+        return postings != null ? List.of(postings) : List.of();
+    }
+
+    // Sum of each term's best field score, or -1 when some term matches no field
+    private int score(Document document, List<String> queryTerms) {
+        int score = 0;
+        for (String term : queryTerms) {
+            int best = -1;
+            for (Field field : FIELDS) {
+                for (String indexed : document.terms[field.ordinal()]) {
+                    if (indexed.startsWith(term)) {
+                        best = Math.max(best, 2 * field.weight + (indexed.length() == term.length() ? 1 : 0));
+                    }
+                }
+                if (best >= 0) {
+                    // Fields are in weight order, a later field cannot score higher
+                    break;
+                }
+            }
+            if (best < 0) {
+                return -1;
+            }
+            score += best;
+        }
+        return score;
+    }
+
+    private void index(Document document) {
+        for (Field field : FIELDS) {
+            for (String term : document.terms[field.ordinal()]) {
+                terms.get(field.ordinal()).computeIfAbsent(term, key -> new Postings()).add(document.productId);
+            }
+            if (field == Field.SKU) {
+                continue;
+            }
+            for (String gram : gramsOf(document.terms[field.ordinal()])) {
+                prefixes.get(field.ordinal()).computeIfAbsent(gram, key -> new Postings()).add(document.productId);
+            }
+        }
+    }
+
+    private void unindex(Document document) {
+        for (Field field : FIELDS) {
+            for (String term : document.terms[field.ordinal()]) {
+                remove(terms.get(field.ordinal()), term, document.productId);
+            }
+            if (field == Field.SKU) {
+                continue;
+            }
+            for (String gram : gramsOf(document.terms[field.ordinal()])) {
+                remove(prefixes.get(field.ordinal()), gram, document.productId);
+            }
+        }
+    }
+
+    private static void remove(Map<String, Postings> map, String key, int productId) {
+        Postings postings = map.get(key);
+        if (postings != null && postings.remove(productId) && postings.size == 0) {
+            map.remove(key);
+        }
+    }
+
+    // Distinct prefixes of a field's terms
+    private static Set<String> gramsOf(String[] fieldTerms) {
+        Set<String> grams = new HashSet<>();
+        for (String term : fieldTerms) {
+            for (int length = 1; length <= Math.min(term.length(), MAX_GRAM); length++) {
+                grams.add(term.substring(0, length));
+            }
+        }
+        return grams;
+    }
+
+    private static String gramOf(String term) {
+        return term.length() > MAX_GRAM ? term.substring(0, MAX_GRAM) : term;
+    }
+
+    // Lower-cased, accent-folded terms split on anything that is not a letter or digit
+    static Set<String> tokenize(String text) {
+        Set<String> tokens = new LinkedHashSet<>();
+        if (text == null) {
+            return tokens;
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase();
+        for (String token : SEPARATORS.split(folded)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    // The indexed form of one product
+    static final class Document {
+        final int productId;
+        final String name;
+        final String sku;
+        final String brand;
+        final String category;
+        final String[][] terms = new String[FIELDS.length][];
+
+        Document(int productId, String name, String sku, String brand, String category, String supplier) {
+            this.productId = productId;
+            this.name = name;
+            this.sku = sku;
+            this.brand = brand;
+            this.category = category;
+            terms[Field.SKU.ordinal()] = tokenize(sku).toArray(new String[0]);
+            terms[Field.NAME.ordinal()] = tokenize(name).toArray(new String[0]);
+            terms[Field.BRAND.ordinal()] = tokenize(brand).toArray(new String[0]);
+            terms[Field.CATEGORY.ordinal()] = tokenize(category).toArray(new String[0]);
+            terms[Field.SUPPLIER.ordinal()] = tokenize(supplier).toArray(new String[0]);
+        }
+
+        boolean sameAs(Document other) {
+            return Objects.equals(name, other.name) && Objects.equals(sku, other.sku)
+                    && Objects.equals(brand, other.brand) && Objects.equals(category, other.category)
+                    && Arrays.deepEquals(terms, other.terms);
+        }
+
+        boolean matches(Field field, String term) {
+            for (String indexed : terms[field.ordinal()]) {
+                if (indexed.startsWith(term)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    static final class Hit {
+        final Document document;
+        final int score;
+
+        Hit(Document document, int score) {
+            this.document = document;
+            this.score = score;
+        }
+    }
+
+    // Sorted product ids; products are mostly added in id order, which appends
+    static final class Postings {
+        int[] ids = new int[2];
+        int size;
+
+        void add(int productId) {
+            int index = Arrays.binarySearch(ids, 0, size, productId);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            }
+            System.arraycopy(ids, index, ids, index + 1, size - index);
+            ids[index] = productId;
+            size++;
+        }
+
+        boolean remove(int productId) {
+            int index = Arrays.binarySearch(ids, 0, size, productId);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            size--;
+            return true;
+        }
+    }
+}
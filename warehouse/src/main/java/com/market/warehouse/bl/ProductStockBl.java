@@ -1,25 +1,75 @@
 package com.market.warehouse.bl;
 
 import com.market.warehouse.dto.ProductDto;
+import com.market.warehouse.dto.StockAdjustmentDto;
+import com.market.warehouse.dto.StockAdjustmentResultDto;
+import com.market.warehouse.dto.StockAdjustmentResultDto.Status;
+import com.market.warehouse.dto.StockAvailabilityDto;
+import com.market.warehouse.dto.StockChangeDto;
+import com.market.warehouse.dto.StockLevelDto;
 import com.market.warehouse.entity.Product;
 import com.market.warehouse.entity.Product.ProductStatus;
+import com.market.warehouse.event.ProductChangedEvent;
+import com.market.warehouse.event.ProductChangedEvent.ChangeType;
+import com.market.warehouse.event.StockLevelChangedEvent;
 import com.market.warehouse.repository.ProductRepository;
+import com.market.warehouse.repository.ProductStockBatchRepository;
+import com.market.warehouse.repository.ProductStreamRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Service
 @Transactional
 public class ProductStockBl {
 
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    public static final int MAX_STOCK_ADJUSTMENTS = 5000;
+
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private HotStockBl hotStockBl;
+
+    @Autowired
+    private ProductStreamRepository productStreamRepository;
+
+    @Autowired
+    private LowStockWatchBl lowStockWatchBl;
+
+    @Autowired
+    private ProductStockBatchRepository productStockBatchRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${warehouse.product.optimistic-retries:0}")
+    private int optimisticRetries;
+
     public Product createProduct(ProductDto productDto) {
         Product product = new Product();
         product.setName(productDto.getName());
@@ -39,7 +89,9 @@ public class ProductStockBl {
         product.setCreatedAt(LocalDateTime.now());
         product.setUpdatedAt(LocalDateTime.now());
         
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(new ProductChangedEvent(savedProduct.getId(), ChangeType.CREATED));
+        return savedProduct;
     }
 
     @Transactional(readOnly = true)
@@ -47,20 +99,58 @@ public class ProductStockBl {
         return productRepository.findById(id);
     }
 
+    // Current version of a product, or null if it does not exist; a primary key lookup of
+    // one column, used to answer conditional GETs without loading the product
+    @Transactional(readOnly = true)
+    public Long getProductVersion(Integer id) {
+        return productRepository.findVersionById(id).orElse(null);
+    }
+
+    // Version token of a category listing, derived from the version column of its products
+    @Transactional(readOnly = true)
+    public String getCategoryVersion(String category) {
+        Object[] row = productRepository.findCategoryVersion(category).get(0);
+        return ((Number) row[0]).longValue() + "-" + ((Number) row[1]).longValue() + "-" + ((Number) row[2]).longValue();
+    }
+
+    // Keyset pagination by id: pass the last id of the previous page as afterId (null for the first page)
+    @Transactional(readOnly = true)
+    public List<ProductDto> getProductsPage(Integer afterId, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return productRepository.findProductDtosAfter(afterId != null ? afterId : 0, PageRequest.of(0, limit));
+    }
+
+    // Streams the catalog after afterId row by row, without loading it in memory
     @Transactional(readOnly = true)
-    public List<Product> getAllProducts() {
-        return productRepository.findAll();
+    public void streamProducts(Integer afterId, Consumer<ProductDto> consumer) {
+        productStreamRepository.streamProductsAfter(afterId != null ? afterId : 0, consumer);
     }
 
-    public Product updateProduct(Integer id, ProductDto productDto) {
-        Optional<Product> existingProduct = productRepository.findById(id);
-        if (existingProduct.isPresent()) {
+    // Entity read-modify-write under the optimistic lock. expectedVersion is the If-Match
+    // version (null for an unconditional write); a stale one throws
+    // OptimisticLockingFailureException, see withOptimisticRetry for concurrent writes.
+    // Like adjustStock, the new stock must cover the reserved units, otherwise
+    // IllegalStateException is thrown. The stockQuantity of a hot product (owned by this or
+    // another instance) is ignored, as updateStock rejects absolute writes to it.
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Product updateProduct(Integer id, ProductDto productDto, Long expectedVersion) {
+        return withOptimisticRetry(expectedVersion, () -> {
+            Optional<Product> existingProduct = productRepository.lockById(id);
+            if (existingProduct.isEmpty()) {
+                return null;
+            }
             Product product = existingProduct.get();
+            checkVersion(product, expectedVersion);
+            if (product.getHotStockOwner() == null) {
+                checkReserved(product, productDto.getStockQuantity());
+                product.setStockQuantity(productDto.getStockQuantity());
+            }
             product.setName(productDto.getName());
             product.setDescription(productDto.getDescription());
             product.setPrice(productDto.getPrice());
             product.setCost(productDto.getCost());
-            product.setStockQuantity(productDto.getStockQuantity());
             product.setMinStockLevel(productDto.getMinStockLevel());
             product.setMaxStockLevel(productDto.getMaxStockLevel());
             product.setCategory(productDto.getCategory());
@@ -71,64 +161,310 @@ public class ProductStockBl {
             product.setDimensions(productDto.getDimensions());
             product.setStatus(ProductStatus.valueOf(productDto.getStatus()));
             product.setUpdatedAt(LocalDateTime.now());
-            
-            return productRepository.save(product);
-        }
-        return null;
+
+            Product savedProduct = productRepository.saveAndFlush(product);
+            eventPublisher.publishEvent(new ProductChangedEvent(id, ChangeType.UPDATED));
+            return savedProduct;
+        });
     }
 
     public boolean deleteProduct(Integer id) {
         if (productRepository.existsById(id)) {
             productRepository.deleteById(id);
+            eventPublisher.publishEvent(new ProductChangedEvent(id, ChangeType.DELETED));
             return true;
         }
         return false;
     }
 
-    public Product updateStock(Integer productId, Integer newQuantity) {
-        Optional<Product> existingProduct = productRepository.findById(productId);
-        if (existingProduct.isPresent()) {
+    // Sets an absolute stock count under the optimistic lock, like updateProduct
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public Product updateStock(Integer productId, Integer newQuantity, Long expectedVersion) {
+        if (hotStockBl.isHot(productId)) {
+            // An absolute write would overwrite changes still waiting in the write-behind journal
+            throw new IllegalStateException("Stock of hot product " + productId + " can only be increased or decreased");
+        }
+        return withOptimisticRetry(expectedVersion, () -> {
+            Optional<Product> existingProduct = productRepository.lockById(productId);
+            if (existingProduct.isEmpty()) {
+                return null;
+            }
             Product product = existingProduct.get();
+            if (product.getHotStockOwner() != null) {
+                throw new IllegalStateException("Stock of product " + productId + " is kept by hot stock instance "
+                        + product.getHotStockOwner());
+            }
+            checkVersion(product, expectedVersion);
+            checkReserved(product, newQuantity);
             product.setStockQuantity(newQuantity);
             product.setUpdatedAt(LocalDateTime.now());
-            return productRepository.save(product);
+            Product savedProduct = productRepository.saveAndFlush(product);
+            eventPublisher.publishEvent(new StockLevelChangedEvent(productId));
+            return savedProduct;
+        });
+    }
+
+    // Runs a write in its own transaction. When a concurrent write bumps the version
+    // between the read and the flush, an unconditional write (no If-Match) does not depend
+    // on what was read, so it is retried on the fresh row up to optimisticRetries times
+    // (opt-in, 0 by default). A conditional write is never retried: the client must
+    // re-read and decide.
+    private <T> T withOptimisticRetry(Long expectedVersion, Supplier<T> write) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int attempt = 0;
+        while (true) {
+            try {
+                return transaction.execute(status -> write.get());
+            } catch (OptimisticLockingFailureException e) {
+                if (expectedVersion != null || attempt++ >= optimisticRetries) {
+                    throw e;
+                }
+            }
         }
-        return null;
     }
 
-    public Product increaseStock(Integer productId, Integer quantity) {
-        Optional<Product> existingProduct = productRepository.findById(productId);
-        if (existingProduct.isPresent()) {
-            Product product = existingProduct.get();
-            product.setStockQuantity(product.getStockQuantity() + quantity);
-            product.setUpdatedAt(LocalDateTime.now());
-            return productRepository.save(product);
+    private void checkVersion(Product product, Long expectedVersion) {
+        if (expectedVersion != null && !expectedVersion.equals(product.getVersion())) {
+            throw new OptimisticLockingFailureException(String.format(
+                    "Product %d is at version %d, not %d", product.getId(), product.getVersion(), expectedVersion));
         }
-        return null;
     }
 
-    public Product decreaseStock(Integer productId, Integer quantity) {
-        Optional<Product> existingProduct = productRepository.findById(productId);
-        if (existingProduct.isPresent()) {
-            Product product = existingProduct.get();
-            if (product.getStockQuantity() >= quantity) {
-                product.setStockQuantity(product.getStockQuantity() - quantity);
-                product.setUpdatedAt(LocalDateTime.now());
-                return productRepository.save(product);
+    // The row is locked, so reserved_quantity cannot grow before the write
+    private void checkReserved(Product product, Integer newQuantity) {
+        if (newQuantity != null && newQuantity < product.getReservedQuantity()) {
+            throw new IllegalStateException(String.format(
+                    "Stock of product %d cannot be set below its %d reserved units", product.getId(), product.getReservedQuantity()));
+        }
+    }
+
+    // Returns the new stock level, or null if the product does not exist
+    public Integer increaseStock(Integer productId, Integer quantity) {
+        validateStockDelta(quantity);
+        Integer newStock;
+        if (hotStockBl.isHot(productId)) {
+            newStock = hotStockBl.increaseStock(productId, quantity);
+        } else if (productRepository.incrementStock(productId, quantity) == 0) {
+            requireNotHotElsewhere(productId);
+            return null;
+        } else {
+            newStock = productRepository.findStockQuantityById(productId).orElse(null);
+        }
+        eventPublisher.publishEvent(new StockLevelChangedEvent(productId));
+        return newStock;
+    }
+
+    // Single conditional UPDATE so concurrent sales never overwrite each other's stock.
+    // Returns the new stock level, null if the product does not exist, and throws
+    // IllegalStateException when there is not enough stock.
+    public Integer decreaseStock(Integer productId, Integer quantity) {
+        validateStockDelta(quantity);
+        if (hotStockBl.isHot(productId)) {
+            Integer newStock = hotStockBl.decreaseStock(productId, quantity);
+            eventPublisher.publishEvent(new StockLevelChangedEvent(productId));
+            return newStock;
+        }
+        if (productRepository.decrementStockIfAvailable(productId, quantity) == 0) {
+            Optional<Integer> currentStock = productRepository.findStockQuantityById(productId);
+            if (currentStock.isEmpty()) {
+                return null;
+            }
+            requireNotHotElsewhere(productId);
+            throw new IllegalStateException(
+                String.format("Insufficient stock. Available: %d, Requested: %d", currentStock.get(), quantity)
+            );
+        }
+        eventPublisher.publishEvent(new StockLevelChangedEvent(productId));
+        return productRepository.findStockQuantityById(productId).orElse(null);
+    }
+
+    // All-or-nothing decrease of several products. Lines are applied in product id order so
+    // concurrent orders always lock rows in the same order; any missing product or short
+    // line throws and rolls back every decrement of the batch.
+    public List<StockLevelDto> decreaseStock(List<StockChangeDto> changes) {
+        Map<Integer, Integer> quantities = mergeStockChanges(changes);
+        for (Map.Entry<Integer, Integer> change : quantities.entrySet()) {
+            if (decreaseStock(change.getKey(), change.getValue()) == null) {
+                throw new NoSuchElementException("Product with ID " + change.getKey() + " not found");
             }
         }
-        return null;
+        return findStockLevels(quantities.keySet());
     }
 
+    // All-or-nothing increase of several products, used to compensate a bulk decrease
+    public List<StockLevelDto> increaseStock(List<StockChangeDto> changes) {
+        Map<Integer, Integer> quantities = mergeStockChanges(changes);
+        for (Map.Entry<Integer, Integer> change : quantities.entrySet()) {
+            if (increaseStock(change.getKey(), change.getValue()) == null) {
+                throw new NoSuchElementException("Product with ID " + change.getKey() + " not found");
+            }
+        }
+        return findStockLevels(quantities.keySet());
+    }
+
+    // Goods receipts and cycle counts: sets (stockQuantity) or changes (delta) the stock of
+    // many products in one transaction. Rows are locked and written in product id order
+    // with batched SQL. Each line gets its own result, in product id order: a missing
+    // product or a line that would leave less stock than is reserved is skipped, the
+    // other lines are applied. Invalid or duplicate lines throw IllegalArgumentException.
+    public List<StockAdjustmentResultDto> adjustStock(List<StockAdjustmentDto> adjustments) {
+        Map<Integer, StockAdjustmentDto> lines = validateStockAdjustments(adjustments);
+        List<Integer> coldIds = lines.keySet().stream().filter(id -> !hotStockBl.isHot(id)).toList();
+        Map<Integer, StockAvailabilityDto> current = productStockBatchRepository.lockStockByIds(coldIds);
+
+        List<StockAdjustmentResultDto> results = new ArrayList<>();
+        Map<Integer, Integer> updates = new TreeMap<>();
+        for (StockAdjustmentDto line : lines.values()) {
+            StockAdjustmentResultDto result = hotStockBl.isHot(line.getProductId())
+                    ? adjustHotStock(line)
+                    : adjustStock(line, current.get(line.getProductId()));
+            if (result.getStatus() == Status.APPLIED) {
+                if (!hotStockBl.isHot(line.getProductId())) {
+                    updates.put(line.getProductId(), result.getStockQuantity());
+                }
+                eventPublisher.publishEvent(new StockLevelChangedEvent(line.getProductId()));
+            }
+            results.add(result);
+        }
+        productStockBatchRepository.updateStockQuantities(updates);
+        return results;
+    }
+
+    private StockAdjustmentResultDto adjustStock(StockAdjustmentDto line, StockAvailabilityDto stock) {
+        if (stock == null) {
+            // Rows owned by another hot stock instance are not locked either
+            return productRepository.findHotStockOwnerById(line.getProductId()).isPresent()
+                    ? new StockAdjustmentResultDto(line.getProductId(), Status.REJECTED, null)
+                    : new StockAdjustmentResultDto(line.getProductId(), Status.NOT_FOUND, null);
+        }
+        long newStock = line.getStockQuantity() != null
+                ? line.getStockQuantity()
+                : (long) stock.getStockQuantity() + line.getDelta();
+        if (newStock > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Stock of product " + line.getProductId() + " would overflow");
+        }
+        if (newStock < stock.getReservedQuantity() || newStock < 0) {
+            return new StockAdjustmentResultDto(line.getProductId(), Status.INSUFFICIENT_STOCK, stock.getStockQuantity());
+        }
+        return new StockAdjustmentResultDto(line.getProductId(), Status.APPLIED, (int) newStock);
+    }
+
+    private StockAdjustmentResultDto adjustHotStock(StockAdjustmentDto line) {
+        Integer productId = line.getProductId();
+        if (line.getStockQuantity() != null) {
+            // Same rule as updateStock: an absolute count would overwrite unflushed changes
+            return new StockAdjustmentResultDto(productId, Status.REJECTED, hotStockBl.getStockQuantity(productId));
+        }
+        try {
+            Integer newStock = line.getDelta() > 0
+                    ? hotStockBl.increaseStock(productId, line.getDelta())
+                    : hotStockBl.decreaseStock(productId, -line.getDelta());
+            return new StockAdjustmentResultDto(productId, Status.APPLIED, newStock);
+        } catch (IllegalStateException e) {
+            return new StockAdjustmentResultDto(productId, Status.INSUFFICIENT_STOCK, hotStockBl.getStockQuantity(productId));
+        }
+    }
+
+    // Checks each line sets exactly one of stockQuantity and delta and returns the lines
+    // keyed by product id, in product id order
+    private Map<Integer, StockAdjustmentDto> validateStockAdjustments(List<StockAdjustmentDto> adjustments) {
+        if (adjustments == null || adjustments.isEmpty()) {
+            throw new IllegalArgumentException("At least one stock adjustment is required");
+        }
+        if (adjustments.size() > MAX_STOCK_ADJUSTMENTS) {
+            throw new IllegalArgumentException("At most " + MAX_STOCK_ADJUSTMENTS + " stock adjustments are allowed");
+        }
+        Map<Integer, StockAdjustmentDto> lines = new TreeMap<>();
+        for (StockAdjustmentDto line : adjustments) {
+            if (line == null || line.getProductId() == null) {
+                throw new IllegalArgumentException("Product ID is required");
+            }
+            if ((line.getStockQuantity() == null) == (line.getDelta() == null)) {
+                throw new IllegalArgumentException("Product " + line.getProductId() + ": set either stockQuantity or delta");
+            }
+            if (line.getStockQuantity() != null && line.getStockQuantity() < 0) {
+                throw new IllegalArgumentException("Stock quantity cannot be negative");
+            }
+            if (line.getDelta() != null && line.getDelta() == 0) {
+                throw new IllegalArgumentException("Delta must not be 0");
+            }
+            if (lines.put(line.getProductId(), line) != null) {
+                throw new IllegalArgumentException("Product " + line.getProductId() + " is adjusted more than once");
+            }
+        }
+        return lines;
+    }
+
+    // Validates the lines and sums quantities per product, in product id order
+    Map<Integer, Integer> mergeStockChanges(List<StockChangeDto> changes) {
+        if (changes == null || changes.isEmpty()) {
+            throw new IllegalArgumentException("At least one stock change is required");
+        }
+        Map<Integer, Integer> quantities = new TreeMap<>();
+        for (StockChangeDto change : changes) {
+            if (change == null || change.getProductId() == null) {
+                throw new IllegalArgumentException("Product ID is required");
+            }
+            validateStockDelta(change.getQuantity());
+            quantities.merge(change.getProductId(), change.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    private List<StockLevelDto> findStockLevels(Collection<Integer> productIds) {
+        List<StockLevelDto> stockLevels = new ArrayList<>();
+        for (Object[] row : productRepository.findStockQuantitiesByIds(productIds)) {
+            Integer productId = (Integer) row[0];
+            Integer stockQuantity = hotStockBl.isHot(productId) ? hotStockBl.getStockQuantity(productId) : (Integer) row[1];
+            stockLevels.add(new StockLevelDto(productId, stockQuantity));
+        }
+        return stockLevels;
+    }
+
+    // Called when a conditional stock update matched no row: throws IllegalStateException if
+    // that is because another warehouse instance keeps the product's stock in memory
+    void requireNotHotElsewhere(Integer productId) {
+        Optional<String> owner = productRepository.findHotStockOwnerById(productId);
+        if (owner.isPresent()) {
+            throw new IllegalStateException("Stock of product " + productId + " is kept by hot stock instance " + owner.get());
+        }
+    }
+
+    private void validateStockDelta(Integer quantity) {
+        if (quantity == null || quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than 0");
+        }
+    }
+
+    // On-hand stock minus active holds, read from the product row alone; returns null if
+    // the product does not exist
     @Transactional(readOnly = true)
-    public List<Product> getLowStockProducts() {
-        return productRepository.findProductsWithLowStock();
+    public StockAvailabilityDto getStockAvailability(Integer productId) {
+        if (hotStockBl.isHot(productId)) {
+            return hotStockBl.getStockAvailability(productId);
+        }
+        List<Object[]> rows = productRepository.findStockAvailabilityByIds(List.of(productId));
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Object[] row = rows.get(0);
+        return new StockAvailabilityDto((Integer) row[0], (Integer) row[1], (Integer) row[2]);
+    }
+
+    // Served from the in-memory watch list, so only the low-stock rows are read
+    @Transactional(readOnly = true)
+    public List<ProductDto> getLowStockProducts() {
+        List<Integer> productIds = lowStockWatchBl.getLowStockProductIds();
+        if (productIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return productRepository.findProductDtosByIds(productIds);
     }
 
     @Transactional(readOnly = true)
     public boolean isProductInStock(Integer productId, Integer requiredQuantity) {
-        Optional<Product> product = productRepository.findById(productId);
-        return product.isPresent() && product.get().getStockQuantity() >= requiredQuantity;
+        StockAvailabilityDto availability = getStockAvailability(productId);
+        return availability != null && availability.getAvailableQuantity() >= requiredQuantity;
     }
 
     @Transactional(readOnly = true)
@@ -137,8 +473,8 @@ public class ProductStockBl {
     }
 
     @Transactional(readOnly = true)
-    public List<Product> getProductsByCategory(String category) {
-        return productRepository.findByCategory(category);
+    public List<ProductDto> getProductsByCategory(String category) {
+        return productRepository.findProductDtosByCategory(category);
     }
 
     @Transactional(readOnly = true)
@@ -0,0 +1,225 @@
+package com.market.warehouse.bl;
+
+import com.market.warehouse.dto.ReservationDto;
+import com.market.warehouse.dto.StockChangeDto;
+import com.market.warehouse.entity.StockReservation;
+import com.market.warehouse.entity.StockReservation.ReservationStatus;
+import com.market.warehouse.event.StockLevelChangedEvent;
+import com.market.warehouse.repository.ProductRepository;
+import com.market.warehouse.repository.StockReservationRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+// Stock reservations (holds) with a TTL. Reserving only moves units into
+// product.reserved_quantity, so available stock is stock_quantity - reserved_quantity
+// on the product row and never needs to scan the reservation table. A hold is then
+// committed (turned into a stock decrease), released, or expired by the sweeper.
+@Service
+@Transactional
+public class StockReservationBl {
+
+    @Autowired
+    private StockReservationRepository stockReservationRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductStockBl productStockBl;
+
+    @Autowired
+    private HotStockBl hotStockBl;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${warehouse.reservation.default-ttl-seconds:300}")
+    private int defaultTtlSeconds;
+
+    @Value("${warehouse.reservation.max-ttl-seconds:3600}")
+    private int maxTtlSeconds;
+
+    @Value("${warehouse.reservation.sweep-batch-size:500}")
+    private int sweepBatchSize;
+
+    // Holds the lines of a reservation, all-or-nothing. Calling it again with the same key
+    // and lines returns the existing reservation, so callers can retry safely. Throws
+    // NoSuchElementException for an unknown product and IllegalStateException when a line
+    // does not have enough available stock.
+    public ReservationDto reserve(String reservationKey, List<StockChangeDto> lines, Integer ttlSeconds) {
+        if (reservationKey == null || reservationKey.isBlank()) {
+            throw new IllegalArgumentException("Reservation key is required");
+        }
+        int ttl = ttlSeconds != null ? ttlSeconds : defaultTtlSeconds;
+        if (ttl <= 0 || ttl > maxTtlSeconds) {
+            throw new IllegalArgumentException("TTL must be between 1 and " + maxTtlSeconds + " seconds");
+        }
+        Map<Integer, Integer> quantities = productStockBl.mergeStockChanges(lines);
+
+        List<StockReservation> existing = stockReservationRepository.findByReservationKeyOrderByProductIdAsc(reservationKey);
+        if (!existing.isEmpty()) {
+            if (!quantities.equals(quantitiesOf(existing))) {
+                throw new IllegalArgumentException("Reservation " + reservationKey + " already exists with different lines");
+            }
+            return toDto(existing);
+        }
+
+        // Insert the lines first: a concurrent request with the same key fails on the unique
+        // constraint before either of them touches product rows
+        LocalDateTime expiresAt = LocalDateTime.now().plusSeconds(ttl);
+        List<StockReservation> reservations = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> line : quantities.entrySet()) {
+            reservations.add(new StockReservation(reservationKey, line.getKey(), line.getValue(), expiresAt));
+        }
+        reservations = stockReservationRepository.saveAllAndFlush(reservations);
+
+        // Product id order, so concurrent reservations lock rows in the same order
+        for (StockReservation reservation : reservations) {
+            reserveLine(reservation.getProductId(), reservation.getQuantity());
+        }
+        return toDto(reservations);
+    }
+
+    // Turns an active hold into a stock decrease. Committing twice is a no-op; a released or
+    // expired reservation cannot be committed anymore.
+    public ReservationDto commit(String reservationKey) {
+        List<StockReservation> reservations = lockReservation(reservationKey);
+        ReservationStatus status = reservations.get(0).getStatus();
+        if (status == ReservationStatus.COMMITTED) {
+            return toDto(reservations);
+        }
+        if (status != ReservationStatus.ACTIVE) {
+            throw new IllegalStateException("Reservation " + reservationKey + " is " + status);
+        }
+        if (!reservations.get(0).getExpiresAt().isAfter(LocalDateTime.now())) {
+            // Left for the sweeper, which gives the units back
+            throw new IllegalStateException("Reservation " + reservationKey + " has expired");
+        }
+
+        changeStatus(reservations, ReservationStatus.COMMITTED);
+        for (StockReservation reservation : reservations) {
+            if (hotStockBl.isHot(reservation.getProductId())) {
+                hotStockBl.commitReservedStock(reservation.getProductId(), reservation.getQuantity());
+            } else if (productRepository.commitReservedStock(reservation.getProductId(), reservation.getQuantity()) == 0) {
+                productStockBl.requireNotHotElsewhere(reservation.getProductId());
+                // The held units are gone, e.g. the product row was changed by hand; roll the commit back
+                throw new IllegalStateException("Product " + reservation.getProductId()
+                        + " no longer holds the units of reservation " + reservationKey);
+            }
+            eventPublisher.publishEvent(new StockLevelChangedEvent(reservation.getProductId()));
+        }
+        return toDto(reservations);
+    }
+
+    // Gives the units of a reservation back. An active hold is dropped, a committed one is
+    // added back to stock (compensation), and a released or expired one is left as is.
+    public ReservationDto release(String reservationKey) {
+        List<StockReservation> reservations = lockReservation(reservationKey);
+        ReservationStatus status = reservations.get(0).getStatus();
+        if (status == ReservationStatus.RELEASED || status == ReservationStatus.EXPIRED) {
+            return toDto(reservations);
+        }
+
+        changeStatus(reservations, ReservationStatus.RELEASED);
+        for (StockReservation reservation : reservations) {
+            if (status == ReservationStatus.ACTIVE) {
+                releaseLine(reservation.getProductId(), reservation.getQuantity());
+            } else {
+                productStockBl.increaseStock(reservation.getProductId(), reservation.getQuantity());
+            }
+        }
+        return toDto(reservations);
+    }
+
+    // Returns the reservation, or null if the key is unknown
+    @Transactional(readOnly = true)
+    public ReservationDto getReservation(String reservationKey) {
+        List<StockReservation> reservations = stockReservationRepository.findByReservationKeyOrderByProductIdAsc(reservationKey);
+        return reservations.isEmpty() ? null : toDto(reservations);
+    }
+
+    // Expires active holds past their TTL. Uses the (status, expires_at) index and only
+    // touches due rows; rows locked by a concurrent commit or release are skipped and
+    // picked up on a later run.
+    @Scheduled(fixedDelayString = "${warehouse.reservation.sweep-interval-ms:1000}")
+    public void expireReservations() {
+        List<StockReservation> expired = new ArrayList<>(
+                stockReservationRepository.lockExpired(LocalDateTime.now(), hotStockBl.getInstanceId(), sweepBatchSize));
+        if (expired.isEmpty()) {
+            return;
+        }
+        expired.sort(Comparator.comparing(StockReservation::getProductId));
+        changeStatus(expired, ReservationStatus.EXPIRED);
+        for (StockReservation reservation : expired) {
+            releaseLine(reservation.getProductId(), reservation.getQuantity());
+        }
+    }
+
+    private void reserveLine(Integer productId, Integer quantity) {
+        if (hotStockBl.isHot(productId)) {
+            hotStockBl.reserveStock(productId, quantity);
+            return;
+        }
+        if (productRepository.reserveStockIfAvailable(productId, quantity) == 0) {
+            if (productRepository.findStockQuantityById(productId).isEmpty()) {
+                throw new NoSuchElementException("Product with ID " + productId + " not found");
+            }
+            productStockBl.requireNotHotElsewhere(productId);
+            throw new IllegalStateException("Insufficient available stock for product " + productId
+                    + ", requested: " + quantity);
+        }
+    }
+
+    private void releaseLine(Integer productId, Integer quantity) {
+        if (hotStockBl.isHot(productId)) {
+            hotStockBl.releaseReservedStock(productId, quantity);
+        } else if (productRepository.releaseReservedStock(productId, quantity) == 0) {
+            productStockBl.requireNotHotElsewhere(productId);
+        }
+    }
+
+    private List<StockReservation> lockReservation(String reservationKey) {
+        List<StockReservation> reservations = stockReservationRepository.lockByReservationKey(reservationKey);
+        if (reservations.isEmpty()) {
+            throw new NoSuchElementException("Reservation " + reservationKey + " not found");
+        }
+        return reservations;
+    }
+
+    // Flushed before the product updates, whose bulk queries clear the persistence context
+    private void changeStatus(List<StockReservation> reservations, ReservationStatus status) {
+        for (StockReservation reservation : reservations) {
+            reservation.setStatus(status);
+        }
+        stockReservationRepository.saveAllAndFlush(reservations);
+    }
+
+    private Map<Integer, Integer> quantitiesOf(List<StockReservation> reservations) {
+        Map<Integer, Integer> quantities = new TreeMap<>();
+        for (StockReservation reservation : reservations) {
+            quantities.put(reservation.getProductId(), reservation.getQuantity());
+        }
+        return quantities;
+    }
+
+    private ReservationDto toDto(List<StockReservation> reservations) {
+        StockReservation first = reservations.get(0);
+        List<StockChangeDto> lines = new ArrayList<>();
+        for (StockReservation reservation : reservations) {
+            lines.add(new StockChangeDto(reservation.getProductId(), reservation.getQuantity()));
+        }
+        return new ReservationDto(first.getReservationKey(), first.getStatus().name(), first.getExpiresAt(), lines);
+    }
+}
@@ -0,0 +1,39 @@
+package com.market.warehouse.dto;
+
+/**
+ * DTO pushed to low-stock subscribers when a product crosses its minimum stock level
+ */
+public class LowStockEventDto {
+
+    private Integer productId;
+
+    private Integer stockQuantity;
+
+    private Integer minStockLevel;
+
+    // true when the product dropped to or below its minimum, false when it was restocked above it
+    private boolean lowStock;
+
+    // Default constructor
+    public LowStockEventDto() {}
+
+    public LowStockEventDto(Integer productId, Integer stockQuantity, Integer minStockLevel, boolean lowStock) {
+        this.productId = productId;
+        this.stockQuantity = stockQuantity;
+        this.minStockLevel = minStockLevel;
+        this.lowStock = lowStock;
+    }
+
+    // Getters and Setters
+    public Integer getProductId() { return productId; }
+    public void setProductId(Integer productId) { this.productId = productId; }
+
+    public Integer getStockQuantity() { return stockQuantity; }
+    public void setStockQuantity(Integer stockQuantity) { this.stockQuantity = stockQuantity; }
+
+    public Integer getMinStockLevel() { return minStockLevel; }
+    public void setMinStockLevel(Integer minStockLevel) { this.minStockLevel = minStockLevel; }
+
+    public boolean isLowStock() { return lowStock; }
+    public void setLowStock(boolean lowStock) { this.lowStock = lowStock; }
+}
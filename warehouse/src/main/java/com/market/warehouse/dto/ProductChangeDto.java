@@ -0,0 +1,56 @@
+package com.market.warehouse.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO for one entry of the product change log
+ * Carries the current state of the product, so a replica can apply it without another call
+ */
+public class ProductChangeDto {
+
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        // Only the stock (on-hand or reserved units) changed
+        STOCK,
+        DELETED
+    }
+
+    // Position in the log; entries are returned in this order
+    private Long seq;
+
+    private Integer productId;
+
+    private ChangeType changeType;
+
+    private LocalDateTime changedAt;
+
+    // Product as it is now (it may already include later changes), null once deleted
+    private ProductDto product;
+
+    // Default constructor
+    public ProductChangeDto() {}
+
+    public ProductChangeDto(Long seq, Integer productId, ChangeType changeType, LocalDateTime changedAt) {
+        this.seq = seq;
+        this.productId = productId;
+        this.changeType = changeType;
+        this.changedAt = changedAt;
+    }
+
+    // Getters and Setters
+    public Long getSeq() { return seq; }
+    public void setSeq(Long seq) { this.seq = seq; }
+
+    public Integer getProductId() { return productId; }
+    public void setProductId(Integer productId) { this.productId = productId; }
+
+    public ChangeType getChangeType() { return changeType; }
+    public void setChangeType(ChangeType changeType) { this.changeType = changeType; }
+
+    public LocalDateTime getChangedAt() { return changedAt; }
+    public void setChangedAt(LocalDateTime changedAt) { this.changedAt = changedAt; }
+
+    public ProductDto getProduct() { return product; }
+    public void setProduct(ProductDto product) { this.product = product; }
+}
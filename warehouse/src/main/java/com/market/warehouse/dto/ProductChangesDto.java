@@ -0,0 +1,39 @@
+package com.market.warehouse.dto;
+
+import java.util.List;
+
+/**
+ * DTO returned by the product change feed
+ * One bounded batch of the change log after the requested cursor
+ */
+public class ProductChangesDto {
+
+    // Pass as "since" on the next poll
+    private Long cursor;
+
+    // True when changes after "since" were compacted away and clients must drop their
+    // replica and read again from since=0
+    private boolean reset;
+
+    // Latest change per product in this batch, in log order
+    private List<ProductChangeDto> changes;
+
+    // Default constructor
+    public ProductChangesDto() {}
+
+    public ProductChangesDto(Long cursor, boolean reset, List<ProductChangeDto> changes) {
+        this.cursor = cursor;
+        this.reset = reset;
+        this.changes = changes;
+    }
+
+    // Getters and Setters
+    public Long getCursor() { return cursor; }
+    public void setCursor(Long cursor) { this.cursor = cursor; }
+
+    public boolean isReset() { return reset; }
+    public void setReset(boolean reset) { this.reset = reset; }
+
+    public List<ProductChangeDto> getChanges() { return changes; }
+    public void setChanges(List<ProductChangeDto> changes) { this.changes = changes; }
+}
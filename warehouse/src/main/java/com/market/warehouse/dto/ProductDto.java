@@ -1,5 +1,6 @@
 package com.market.warehouse.dto;
 
+import com.market.warehouse.entity.Product.ProductStatus;
 import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
@@ -66,6 +67,30 @@ public class ProductDto {
         this.stockQuantity = stockQuantity;
     }
     
+    // Constructor used by the JPQL projections of ProductRepository
+    public ProductDto(Integer id, String name, String description, String category, BigDecimal price,
+                      BigDecimal cost, String sku, Integer stockQuantity, Integer minStockLevel,
+                      Integer maxStockLevel, String supplier, String brand, BigDecimal weight,
+                      String dimensions, ProductStatus status, LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.category = category;
+        this.price = price;
+        this.cost = cost;
+        this.sku = sku;
+        this.stockQuantity = stockQuantity;
+        this.minStockLevel = minStockLevel;
+        this.maxStockLevel = maxStockLevel;
+        this.supplier = supplier;
+        this.brand = brand;
+        this.weight = weight;
+        this.dimensions = dimensions;
+        this.status = status != null ? status.name() : null;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+
     // Getters and Setters
     public Integer getId() { return id; }
     public void setId(Integer id) { this.id = id; }
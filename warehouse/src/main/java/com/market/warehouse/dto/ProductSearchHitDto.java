@@ -0,0 +1,51 @@
+package com.market.warehouse.dto;
+
+/**
+ * DTO for one ranked product search result
+ * Carries the fields a typeahead needs, served from the search index without a database read
+ */
+public class ProductSearchHitDto {
+
+    private Integer productId;
+
+    private String name;
+
+    private String sku;
+
+    private String brand;
+
+    private String category;
+
+    private Integer score;
+
+    // Default constructor
+    public ProductSearchHitDto() {}
+
+    public ProductSearchHitDto(Integer productId, String name, String sku, String brand, String category, Integer score) {
+        this.productId = productId;
+        this.name = name;
+        this.sku = sku;
+        this.brand = brand;
+        this.category = category;
+        this.score = score;
+    }
+
+    // Getters and Setters
+    public Integer getProductId() { return productId; }
+    public void setProductId(Integer productId) { this.productId = productId; }
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public String getSku() { return sku; }
+    public void setSku(String sku) { this.sku = sku; }
+
+    public String getBrand() { return brand; }
+    public void setBrand(String brand) { this.brand = brand; }
+
+    public String getCategory() { return category; }
+    public void setCategory(String category) { this.category = category; }
+
+    public Integer getScore() { return score; }
+    public void setScore(Integer score) { this.score = score; }
+}
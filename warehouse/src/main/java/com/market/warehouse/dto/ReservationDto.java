@@ -0,0 +1,41 @@
+package com.market.warehouse.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO returned by the stock reservation operations
+ */
+public class ReservationDto {
+
+    private String reservationKey;
+
+    private String status;
+
+    private LocalDateTime expiresAt;
+
+    private List<StockChangeDto> lines;
+
+    // Default constructor
+    public ReservationDto() {}
+
+    public ReservationDto(String reservationKey, String status, LocalDateTime expiresAt, List<StockChangeDto> lines) {
+        this.reservationKey = reservationKey;
+        this.status = status;
+        this.expiresAt = expiresAt;
+        this.lines = lines;
+    }
+
+    // Getters and Setters
+    public String getReservationKey() { return reservationKey; }
+    public void setReservationKey(String reservationKey) { this.reservationKey = reservationKey; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+
+    public List<StockChangeDto> getLines() { return lines; }
+    public void setLines(List<StockChangeDto> lines) { this.lines = lines; }
+}
@@ -0,0 +1,41 @@
+package com.market.warehouse.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * DTO to place a stock reservation (hold) on one or more products
+ * The reservation key is chosen by the caller, so retrying the same request is safe
+ */
+public class ReservationRequestDto {
+
+    @NotBlank(message = "Reservation key is required")
+    @Size(max = 64, message = "Reservation key must not exceed 64 characters")
+    private String reservationKey;
+
+    // Optional, the configured default TTL is used when missing
+    @Min(value = 1, message = "TTL must be greater than 0")
+    private Integer ttlSeconds;
+
+    @NotEmpty(message = "At least one line is required")
+    @Valid
+    private List<StockChangeDto> lines;
+
+    // Default constructor
+    public ReservationRequestDto() {}
+
+    // Getters and Setters
+    public String getReservationKey() { return reservationKey; }
+    public void setReservationKey(String reservationKey) { this.reservationKey = reservationKey; }
+
+    public Integer getTtlSeconds() { return ttlSeconds; }
+    public void setTtlSeconds(Integer ttlSeconds) { this.ttlSeconds = ttlSeconds; }
+
+    public List<StockChangeDto> getLines() { return lines; }
+    public void setLines(List<StockChangeDto> lines) { this.lines = lines; }
+}
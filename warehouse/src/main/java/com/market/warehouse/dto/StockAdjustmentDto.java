@@ -0,0 +1,38 @@
+package com.market.warehouse.dto;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+/**
+ * DTO for one line of a bulk stock adjustment
+ * Either sets the stock to an absolute count (stockQuantity) or changes it by a signed delta
+ */
+public class StockAdjustmentDto {
+
+    @NotNull(message = "Product ID is required")
+    private Integer productId;
+
+    @Min(value = 0, message = "Stock quantity cannot be negative")
+    private Integer stockQuantity;
+
+    private Integer delta;
+
+    // Default constructor
+    public StockAdjustmentDto() {}
+
+    public StockAdjustmentDto(Integer productId, Integer stockQuantity, Integer delta) {
+        this.productId = productId;
+        this.stockQuantity = stockQuantity;
+        this.delta = delta;
+    }
+
+    // Getters and Setters
+    public Integer getProductId() { return productId; }
+    public void setProductId(Integer productId) { this.productId = productId; }
+
+    public Integer getStockQuantity() { return stockQuantity; }
+    public void setStockQuantity(Integer stockQuantity) { this.stockQuantity = stockQuantity; }
+
+    public Integer getDelta() { return delta; }
+    public void setDelta(Integer delta) { this.delta = delta; }
+}
@@ -0,0 +1,42 @@
+package com.market.warehouse.dto;
+
+/**
+ * DTO with the outcome of one line of a bulk stock adjustment
+ */
+public class StockAdjustmentResultDto {
+
+    public enum Status {
+        APPLIED,
+        NOT_FOUND,
+        // The new stock would drop below zero or below the units held by reservations
+        INSUFFICIENT_STOCK,
+        // Absolute counts are not accepted for hot products
+        REJECTED
+    }
+
+    private Integer productId;
+
+    private Status status;
+
+    // Stock after the adjustment, or the unchanged stock when the line was not applied
+    private Integer stockQuantity;
+
+    // Default constructor
+    public StockAdjustmentResultDto() {}
+
+    public StockAdjustmentResultDto(Integer productId, Status status, Integer stockQuantity) {
+        this.productId = productId;
+        this.status = status;
+        this.stockQuantity = stockQuantity;
+    }
+
+    // Getters and Setters
+    public Integer getProductId() { return productId; }
+    public void setProductId(Integer productId) { this.productId = productId; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public Integer getStockQuantity() { return stockQuantity; }
+    public void setStockQuantity(Integer stockQuantity) { this.stockQuantity = stockQuantity; }
+}
@@ -0,0 +1,38 @@
+package com.market.warehouse.dto;
+
+/**
+ * DTO with the stock of a product that is not held by active reservations
+ */
+public class StockAvailabilityDto {
+
+    private Integer productId;
+
+    private Integer stockQuantity;
+
+    private Integer reservedQuantity;
+
+    private Integer availableQuantity;
+
+    // Default constructor
+    public StockAvailabilityDto() {}
+
+    public StockAvailabilityDto(Integer productId, Integer stockQuantity, Integer reservedQuantity) {
+        this.productId = productId;
+        this.stockQuantity = stockQuantity;
+        this.reservedQuantity = reservedQuantity;
+        this.availableQuantity = stockQuantity - reservedQuantity;
+    }
+
+    // Getters and Setters
+    public Integer getProductId() { return productId; }
+    public void setProductId(Integer productId) { this.productId = productId; }
+
+    public Integer getStockQuantity() { return stockQuantity; }
+    public void setStockQuantity(Integer stockQuantity) { this.stockQuantity = stockQuantity; }
+
+    public Integer getReservedQuantity() { return reservedQuantity; }
+    public void setReservedQuantity(Integer reservedQuantity) { this.reservedQuantity = reservedQuantity; }
+
+    public Integer getAvailableQuantity() { return availableQuantity; }
+    public void setAvailableQuantity(Integer availableQuantity) { this.availableQuantity = availableQuantity; }
+}
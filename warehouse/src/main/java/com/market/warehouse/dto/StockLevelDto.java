@@ -0,0 +1,27 @@
+package com.market.warehouse.dto;
+
+/**
+ * DTO returned by the atomic stock operations
+ * Carries the stock level left after the update
+ */
+public class StockLevelDto {
+
+    private Integer productId;
+
+    private Integer stockQuantity;
+
+    // Default constructor
+    public StockLevelDto() {}
+
+    public StockLevelDto(Integer productId, Integer stockQuantity) {
+        this.productId = productId;
+        this.stockQuantity = stockQuantity;
+    }
+
+    // Getters and Setters
+    public Integer getProductId() { return productId; }
+    public void setProductId(Integer productId) { this.productId = productId; }
+
+    public Integer getStockQuantity() { return stockQuantity; }
+    public void setStockQuantity(Integer stockQuantity) { this.stockQuantity = stockQuantity; }
+}
@@ -58,6 +58,16 @@ public class Product {
     @Column(name = "stock_quantity", nullable = false)
     private Integer stockQuantity;
 
+    // Units held by active reservations; only changed by the atomic reservation updates,
+    // never written back from a loaded entity
+    @Column(name = "reserved_quantity", insertable = false, updatable = false)
+    private Integer reservedQuantity = 0;
+
+    // Warehouse instance keeping this product's stock in memory (hot stock mode), null
+    // otherwise; only set by HotStockBl's claim and release updates
+    @Column(name = "hot_stock_owner", insertable = false, updatable = false)
+    private String hotStockOwner;
+
     @Min(value = 0, message = "Minimum stock level must be non-negative")
     @Column(name = "min_stock_level")
     private Integer minStockLevel;
@@ -85,6 +95,12 @@ public class Product {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    // Optimistic lock, also bumped by every atomic stock update; GET responses use it as
+    // their ETag and PUT requests can send it back in If-Match
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version = 0L;
+
     // Default constructor
     public Product() {}
 
@@ -201,6 +217,26 @@ public class Product {
         this.stockQuantity = stockQuantity;
     }
 
+    public Integer getReservedQuantity() {
+        return reservedQuantity;
+    }
+
+    public void setReservedQuantity(Integer reservedQuantity) {
+        this.reservedQuantity = reservedQuantity;
+    }
+
+    public String getHotStockOwner() {
+        return hotStockOwner;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Integer getMinStockLevel() {
         return minStockLevel;
     }
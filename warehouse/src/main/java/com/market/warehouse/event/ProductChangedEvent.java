@@ -0,0 +1,30 @@
+package com.market.warehouse.event;
+
+/**
+ * Published by ProductStockBl whenever product metadata (price, status, catalog data) changes.
+ * Listeners should use @TransactionalEventListener so they only see committed changes.
+ */
+public class ProductChangedEvent {
+
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Integer productId;
+    private final ChangeType changeType;
+
+    public ProductChangedEvent(Integer productId, ChangeType changeType) {
+        this.productId = productId;
+        this.changeType = changeType;
+    }
+
+    public Integer getProductId() {
+        return productId;
+    }
+
+    public ChangeType getChangeType() {
+        return changeType;
+    }
+}
@@ -0,0 +1,19 @@
+package com.market.warehouse.event;
+
+/**
+ * Published whenever the on-hand stock of a product changes (stock updates, increases,
+ * decreases and committed reservations). Listeners should use @TransactionalEventListener
+ * so they only see committed changes.
+ */
+public class StockLevelChangedEvent {
+
+    private final Integer productId;
+
+    public StockLevelChangedEvent(Integer productId) {
+        this.productId = productId;
+    }
+
+    public Integer getProductId() {
+        return productId;
+    }
+}
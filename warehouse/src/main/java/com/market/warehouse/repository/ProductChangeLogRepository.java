@@ -0,0 +1,95 @@
+package com.market.warehouse.repository;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.market.warehouse.dto.ProductChangeDto;
+import com.market.warehouse.dto.ProductChangeDto.ChangeType;
+
+// Durable, ordered log of product and stock changes (product_change_log). Entries are
+// appended right before the changing transaction commits, so their AUTO_INCREMENT seq
+// is allocated only moments before they become visible. Compaction keeps the latest entry
+// per product below a horizon and drops tombstones there; product_change_log_state
+// records that horizon.
+@Repository
+public class ProductChangeLogRepository {
+
+    private static final String INSERT_CHANGE =
+            "INSERT INTO product_change_log (product_id, change_type) VALUES (?, ?)";
+
+    // settling: the entry was written less than the commit grace period ago, so a
+    // transaction holding a lower seq may not have committed yet
+    private static final String SELECT_CHANGES_AFTER =
+            "SELECT seq, product_id, change_type, changed_at, " +
+            "changed_at > NOW(3) - INTERVAL ? MICROSECOND AS settling " +
+            "FROM product_change_log WHERE seq > ? ORDER BY seq LIMIT ?";
+
+    private static final String DELETE_SUPERSEDED =
+            "DELETE older FROM product_change_log older " +
+            "JOIN product_change_log newer ON newer.product_id = older.product_id AND newer.seq > older.seq " +
+            "WHERE newer.seq > ? AND newer.seq <= ?";
+
+    private static final String DELETE_TOMBSTONES =
+            "DELETE FROM product_change_log WHERE seq > ? AND seq <= ? AND change_type = 'DELETED'";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ProductChangeLogRepository(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    // Appends one entry per product (id -> change type), as one JDBC batch
+    public void append(Map<Integer, ChangeType> changes) {
+        jdbcTemplate.batchUpdate(INSERT_CHANGE, List.copyOf(changes.entrySet()), changes.size(), (ps, change) -> {
+            ps.setInt(1, change.getKey());
+            ps.setString(2, change.getValue().name());
+        });
+    }
+
+    // Up to limit entries after the given seq, in seq order
+    public List<Entry> findChangesAfter(long seq, int limit, long commitGraceMillis) {
+        return jdbcTemplate.query(SELECT_CHANGES_AFTER, (rs, rowNum) -> new Entry(
+                new ProductChangeDto(rs.getLong("seq"), rs.getInt("product_id"),
+                        ChangeType.valueOf(rs.getString("change_type")),
+                        rs.getTimestamp("changed_at").toLocalDateTime()),
+                rs.getBoolean("settling")), commitGraceMillis * 1000, seq, limit);
+    }
+
+    // Highest seq handed out so far, 0 for an empty log
+    public long findLastSeq() {
+        Long seq = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(seq), 0) FROM product_change_log", Long.class);
+        return seq != null ? seq : 0;
+    }
+
+    // Entries up to this seq may have been compacted away
+    public long findCompactedThrough() {
+        Long seq = jdbcTemplate.queryForObject("SELECT compacted_through FROM product_change_log_state WHERE id = 1", Long.class);
+        return seq != null ? seq : 0;
+    }
+
+    // Compacts the entries with fromSeq < seq <= toSeq: every older entry of a product that
+    // has one in the range is deleted, then the tombstones in the range. The horizon moves
+    // in the same transaction (its row lock also serializes concurrent compactions), so a
+    // reader that sees an entry missing also sees the horizon and resets.
+    // Returns the number of deleted entries.
+    public int compact(long fromSeq, long toSeq) {
+        jdbcTemplate.update("UPDATE product_change_log_state SET compacted_through = GREATEST(compacted_through, ?) WHERE id = 1", toSeq);
+        return jdbcTemplate.update(DELETE_SUPERSEDED, fromSeq, toSeq)
+                + jdbcTemplate.update(DELETE_TOMBSTONES, fromSeq, toSeq);
+    }
+
+    public static final class Entry {
+        public final ProductChangeDto change;
+        public final boolean settling;
+
+        Entry(ProductChangeDto change, boolean settling) {
+            this.change = change;
+            this.settling = settling;
+        }
+    }
+}
@@ -1,12 +1,23 @@
 package com.market.warehouse.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import com.market.warehouse.dto.ProductDto;
 import com.market.warehouse.entity.Product;
 import com.market.warehouse.entity.Product.ProductStatus;
 
@@ -19,16 +30,138 @@ public interface ProductRepository extends JpaRepository<Product, Integer> {
     // Find product by sku
     Optional<Product> findBySku(String sku);
     
-    // Find products with low stock (stock_quantity <= min_stock_level)
-    @Query("SELECT p FROM Product p WHERE p.stockQuantity <= p.minStockLevel")
-    List<Product> findProductsWithLowStock();
+    // Read (id, stockQuantity, minStockLevel) of every product, used to build the low-stock watch list
+    @Query("SELECT p.id, p.stockQuantity, p.minStockLevel FROM Product p")
+    List<Object[]> findStockLevels();
+
+    // Read (id, stockQuantity, minStockLevel) of several products by primary key
+    @Query("SELECT p.id, p.stockQuantity, p.minStockLevel FROM Product p WHERE p.id IN :ids")
+    List<Object[]> findStockLevelsByIds(@Param("ids") Collection<Integer> ids);
     
+    // Load a product and lock its row until the transaction ends, so reservations cannot
+    // change reserved_quantity between a check and the write
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM Product p WHERE p.id = :id")
+    Optional<Product> lockById(@Param("id") Integer id);
+
     // Find products by status
     List<Product> findByStatus(ProductStatus status);
-    
-    // Find products by category
-    List<Product> findByCategory(String category);
+
+    // The list endpoints select straight into ProductDto: no managed entities, no dirty
+    // checking snapshots and no entity-to-DTO copy
+    String SELECT_PRODUCT_DTO = "SELECT new com.market.warehouse.dto.ProductDto(p.id, p.name, p.description, " +
+            "p.category, p.price, p.cost, p.sku, p.stockQuantity, p.minStockLevel, p.maxStockLevel, p.supplier, " +
+            "p.brand, p.weight, p.dimensions, p.status, p.createdAt, p.updatedAt) FROM Product p ";
+
+    // Keyset page: the next products after the given id, served by the primary key index
+    @Query(SELECT_PRODUCT_DTO + "WHERE p.id > :afterId ORDER BY p.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    List<ProductDto> findProductDtosAfter(@Param("afterId") Integer afterId, Pageable pageable);
+
+    // Find products by category, in id order
+    @Query(SELECT_PRODUCT_DTO + "WHERE p.category = :category ORDER BY p.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    List<ProductDto> findProductDtosByCategory(@Param("category") String category);
+
+    // Find products by primary key, in id order
+    @Query(SELECT_PRODUCT_DTO + "WHERE p.id IN :ids ORDER BY p.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    List<ProductDto> findProductDtosByIds(@Param("ids") Collection<Integer> ids);
+
+    // Version of one product, read without loading the entity
+    @Query("SELECT p.version FROM Product p WHERE p.id = :id")
+    Optional<Long> findVersionById(@Param("id") Integer id);
+
+    // (count, sum of ids, sum of versions) of a category: any insert, update, delete or move
+    // in or out of the category changes at least one of them
+    @Query("SELECT COUNT(p), COALESCE(SUM(p.id), 0), COALESCE(SUM(p.version), 0) FROM Product p WHERE p.category = :category")
+    List<Object[]> findCategoryVersion(@Param("category") String category);
     
     // Find products by supplier
     List<Product> findBySupplier(String supplier);
+
+    // Read only the current stock level of a product
+    @Query("SELECT p.stockQuantity FROM Product p WHERE p.id = :id")
+    Optional<Integer> findStockQuantityById(@Param("id") Integer id);
+
+    // Read the current stock levels of several products as (id, stockQuantity) pairs
+    @Query("SELECT p.id, p.stockQuantity FROM Product p WHERE p.id IN :ids")
+    List<Object[]> findStockQuantitiesByIds(@Param("ids") Collection<Integer> ids);
+
+    // Read on-hand and reserved stock of several products as (id, stockQuantity, reservedQuantity) rows
+    @Query("SELECT p.id, p.stockQuantity, p.reservedQuantity FROM Product p WHERE p.id IN :ids")
+    List<Object[]> findStockAvailabilityByIds(@Param("ids") Collection<Integer> ids);
+
+    // The conditional stock updates below skip products whose stock is kept in memory by a
+    // hot stock instance (hot_stock_owner set), so only that instance changes their stock
+
+    // Atomically decrease stock only if enough units are available outside active reservations (returns affected rows)
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE product SET stock_quantity = stock_quantity - :quantity, updated_at = CURRENT_TIMESTAMP, version = version + 1 " +
+                   "WHERE id = :id AND stock_quantity - reserved_quantity >= :quantity AND hot_stock_owner IS NULL", nativeQuery = true)
+    int decrementStockIfAvailable(@Param("id") Integer id, @Param("quantity") Integer quantity);
+
+    // Atomically increase stock (returns affected rows)
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE product SET stock_quantity = stock_quantity + :quantity, updated_at = CURRENT_TIMESTAMP, version = version + 1 " +
+                   "WHERE id = :id AND hot_stock_owner IS NULL", nativeQuery = true)
+    int incrementStock(@Param("id") Integer id, @Param("quantity") Integer quantity);
+
+    // Atomically hold units for a reservation if enough stock is available (returns affected rows)
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE product SET reserved_quantity = reserved_quantity + :quantity " +
+                   "WHERE id = :id AND stock_quantity - reserved_quantity >= :quantity AND hot_stock_owner IS NULL", nativeQuery = true)
+    int reserveStockIfAvailable(@Param("id") Integer id, @Param("quantity") Integer quantity);
+
+    // Turn held units into a stock decrease, only if the product still has them (returns affected rows)
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE product SET stock_quantity = stock_quantity - :quantity, " +
+                   "reserved_quantity = reserved_quantity - :quantity, updated_at = CURRENT_TIMESTAMP, version = version + 1 " +
+                   "WHERE id = :id AND reserved_quantity >= :quantity AND stock_quantity >= :quantity AND hot_stock_owner IS NULL", nativeQuery = true)
+    int commitReservedStock(@Param("id") Integer id, @Param("quantity") Integer quantity);
+
+    // Give held units back to available stock (returns affected rows)
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE product SET reserved_quantity = reserved_quantity - :quantity " +
+                   "WHERE id = :id AND hot_stock_owner IS NULL", nativeQuery = true)
+    int releaseReservedStock(@Param("id") Integer id, @Param("quantity") Integer quantity);
+
+    // Apply the net journaled change of a hot product; the sequence guard makes replaying
+    // an already applied journal batch a no-op, and a change that would leave negative
+    // stock or holds is not applied either
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE product SET stock_quantity = stock_quantity + :stockDelta, " +
+                   "reserved_quantity = reserved_quantity + :reservedDelta, stock_journal_seq = :sequence, " +
+                   "updated_at = CURRENT_TIMESTAMP, version = version + 1 WHERE id = :id AND stock_journal_seq < :sequence " +
+                   "AND stock_quantity + :stockDelta >= 0 AND reserved_quantity + :reservedDelta >= 0", nativeQuery = true)
+    int applyStockJournal(@Param("id") Integer id, @Param("stockDelta") long stockDelta,
+                          @Param("reservedDelta") long reservedDelta, @Param("sequence") long sequence);
+
+    // Hot stock instance owning a product, empty if the product is not hot or does not exist
+    @Query("SELECT p.hotStockOwner FROM Product p WHERE p.id = :id AND p.hotStockOwner IS NOT NULL")
+    Optional<String> findHotStockOwnerById(@Param("id") Integer id);
+
+    // Drop this instance's claim on every product it owns
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE product SET hot_stock_owner = NULL WHERE hot_stock_owner = :owner", nativeQuery = true)
+    int releaseHotStock(@Param("owner") String owner);
+
+    // Claim a product for hot stock mode unless another instance owns it (returns affected rows)
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE product SET hot_stock_owner = :owner WHERE id = :id " +
+                   "AND (hot_stock_owner IS NULL OR hot_stock_owner = :owner)", nativeQuery = true)
+    int claimHotStock(@Param("id") Integer id, @Param("owner") String owner);
+
+    // Last hot stock journal sequence applied to a product
+    @Query(value = "SELECT stock_journal_seq FROM product WHERE id = :id", nativeQuery = true)
+    Optional<Long> findStockJournalSeqById(@Param("id") Integer id);
+
+    @Query(value = "SELECT COALESCE(MAX(stock_journal_seq), 0) FROM product", nativeQuery = true)
+    long findMaxStockJournalSeq();
+
+    // Recompute the held units of a product from its active reservations
+    @Modifying(clearAutomatically = true)
+    @Query(value = "UPDATE product SET reserved_quantity = (SELECT COALESCE(SUM(r.quantity), 0) FROM stock_reservation r " +
+                   "WHERE r.product_id = :id AND r.status = 'ACTIVE') WHERE id = :id", nativeQuery = true)
+    int recountReservedStock(@Param("id") Integer id);
 }
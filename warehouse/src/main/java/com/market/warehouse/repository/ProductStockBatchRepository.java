@@ -0,0 +1,62 @@
+package com.market.warehouse.repository;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import com.market.warehouse.dto.StockAvailabilityDto;
+
+// Set-based stock writes for bulk adjustments. Rows are locked with a few multi-row
+// SELECT ... FOR UPDATE statements and written back with one JDBC batch, instead of one
+// findById + save round trip per product. With rewriteBatchedStatements=true on the
+// datasource URL MySQL receives each batch as a single request.
+@Repository
+public class ProductStockBatchRepository {
+
+    private static final String UPDATE_STOCK =
+            "UPDATE product SET stock_quantity = ?, updated_at = CURRENT_TIMESTAMP, version = version + 1 " +
+            "WHERE id = ? AND hot_stock_owner IS NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int batchSize;
+
+    public ProductStockBatchRepository(DataSource dataSource,
+                                       @Value("${warehouse.stock.adjust.batch-size:500}") int batchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.batchSize = batchSize;
+    }
+
+    // Locks the product rows until the transaction ends and returns their stock by id.
+    // Ids must be sorted so concurrent adjustments always lock rows in the same order;
+    // ids without a product, or whose stock a hot stock instance keeps in memory, are
+    // missing from the result.
+    public Map<Integer, StockAvailabilityDto> lockStockByIds(List<Integer> sortedIds) {
+        Map<Integer, StockAvailabilityDto> stock = new LinkedHashMap<>();
+        for (int from = 0; from < sortedIds.size(); from += batchSize) {
+            List<Integer> chunk = sortedIds.subList(from, Math.min(from + batchSize, sortedIds.size()));
+            String sql = "SELECT id, stock_quantity, reserved_quantity FROM product WHERE id IN (" +
+                    String.join(",", Collections.nCopies(chunk.size(), "?")) + ") AND hot_stock_owner IS NULL " +
+                    "ORDER BY id FOR UPDATE";
+            jdbcTemplate.query(sql, rs -> {
+                int id = rs.getInt("id");
+                stock.put(id, new StockAvailabilityDto(id, rs.getInt("stock_quantity"), rs.getInt("reserved_quantity")));
+            }, chunk.toArray());
+        }
+        return stock;
+    }
+
+    // Writes the new stock of each product (id -> stock quantity), in the map's order
+    public void updateStockQuantities(Map<Integer, Integer> stockQuantities) {
+        jdbcTemplate.batchUpdate(UPDATE_STOCK, List.copyOf(stockQuantities.entrySet()), batchSize, (ps, entry) -> {
+            ps.setInt(1, entry.getValue());
+            ps.setInt(2, entry.getKey());
+        });
+    }
+}
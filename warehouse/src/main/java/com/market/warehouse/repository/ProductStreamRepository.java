@@ -0,0 +1,68 @@
+package com.market.warehouse.repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.function.Consumer;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import com.market.warehouse.converter.ProductStatusConverter;
+import com.market.warehouse.dto.ProductDto;
+import com.market.warehouse.entity.Product.ProductStatus;
+
+// Forward-only JDBC cursor over the catalog. Rows are handed to the consumer one at a time
+// and never collected, so memory stays constant whatever the catalog size. With
+// useCursorFetch=true on the datasource URL MySQL sends fetchSize rows per round trip.
+@Repository
+public class ProductStreamRepository {
+
+    private static final String SELECT_PRODUCTS_AFTER =
+            "SELECT id, name, description, category, price, cost, sku, stock_quantity, min_stock_level, " +
+            "max_stock_level, supplier, brand, weight, dimensions, status, created_at, updated_at " +
+            "FROM product WHERE id > ? ORDER BY id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductStatusConverter statusConverter = new ProductStatusConverter();
+
+    public ProductStreamRepository(DataSource dataSource,
+                                   @Value("${warehouse.product.stream.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+    }
+
+    // Stream every product with an id greater than afterId, in id order
+    public void streamProductsAfter(int afterId, Consumer<ProductDto> consumer) {
+        jdbcTemplate.query(SELECT_PRODUCTS_AFTER, (RowCallbackHandler) rs -> consumer.accept(toDto(rs)), afterId);
+    }
+
+    private ProductDto toDto(ResultSet rs) throws SQLException {
+        ProductDto dto = new ProductDto();
+        dto.setId(rs.getInt("id"));
+        dto.setName(rs.getString("name"));
+        dto.setDescription(rs.getString("description"));
+        dto.setCategory(rs.getString("category"));
+        dto.setPrice(rs.getBigDecimal("price"));
+        dto.setCost(rs.getBigDecimal("cost"));
+        dto.setSku(rs.getString("sku"));
+        dto.setStockQuantity(rs.getObject("stock_quantity", Integer.class));
+        dto.setMinStockLevel(rs.getObject("min_stock_level", Integer.class));
+        dto.setMaxStockLevel(rs.getObject("max_stock_level", Integer.class));
+        dto.setSupplier(rs.getString("supplier"));
+        dto.setBrand(rs.getString("brand"));
+        dto.setWeight(rs.getBigDecimal("weight"));
+        dto.setDimensions(rs.getString("dimensions"));
+        ProductStatus status = statusConverter.convertToEntityAttribute(rs.getString("status"));
+        dto.setStatus(status != null ? status.name() : null);
+        Timestamp createdAt = rs.getTimestamp("created_at");
+        dto.setCreatedAt(createdAt != null ? createdAt.toLocalDateTime() : null);
+        Timestamp updatedAt = rs.getTimestamp("updated_at");
+        dto.setUpdatedAt(updatedAt != null ? updatedAt.toLocalDateTime() : null);
+        return dto;
+    }
+}
@@ -0,0 +1,35 @@
+package com.market.warehouse.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import com.market.warehouse.entity.StockReservation;
+
+import jakarta.persistence.LockModeType;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    // Find the lines of a reservation
+    List<StockReservation> findByReservationKeyOrderByProductIdAsc(String reservationKey);
+
+    // Lock the lines of a reservation so concurrent commit / release / expiry apply only once
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM StockReservation r WHERE r.reservationKey = :reservationKey ORDER BY r.productId")
+    List<StockReservation> lockByReservationKey(@Param("reservationKey") String reservationKey);
+
+    // Claim the next expired holds through the (status, expires_at) index; SKIP LOCKED lets
+    // several warehouse instances sweep concurrently. Holds on products owned by another
+    // hot stock instance are left to that instance
+    @Query(value = "SELECT * FROM stock_reservation WHERE status = 'ACTIVE' AND expires_at <= :now " +
+                   "AND product_id NOT IN (SELECT id FROM product WHERE hot_stock_owner <> :instanceId) " +
+                   "ORDER BY expires_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<StockReservation> lockExpired(@Param("now") LocalDateTime now, @Param("instanceId") String instanceId,
+                                       @Param("limit") int limit);
+}
@@ -0,0 +1,196 @@
+package com.market.warehouse.bl;
+
+import com.market.warehouse.dto.ProductDto;
+import com.market.warehouse.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Single-product sales against a real warehouse database: the row-locked stock path and
+ * the hot stock mode (striped counter, fsynced journal, write-behind), each selling more
+ * attempts than there are units from many threads. Logs the throughput of both and checks
+ * that neither oversells nor loses a sale, and that an unflushed journal reaches MySQL
+ * after a crash. Only runs when WAREHOUSE_BENCHMARK_DB_URL is set, e.g.
+ * jdbc:mysql://localhost:13306/warehouse
+ */
+@SpringBootTest(properties = {"eureka.client.enabled=false", "spring.jpa.show-sql=false"})
+@EnabledIfEnvironmentVariable(named = "WAREHOUSE_BENCHMARK_DB_URL", matches = ".+")
+class HotStockBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(HotStockBenchmarkTest.class);
+
+    private static final int THREADS = 16;
+    private static final int STOCK = 4_000;
+    private static final int ATTEMPTS = 5_000;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("WAREHOUSE_BENCHMARK_DB_URL"));
+        registry.add("spring.datasource.username", () -> envOrDefault("WAREHOUSE_BENCHMARK_DB_USERNAME", "root"));
+        registry.add("spring.datasource.password", () -> envOrDefault("WAREHOUSE_BENCHMARK_DB_PASSWORD", "123456"));
+    }
+
+    @Autowired
+    private ProductStockBl productStockBl;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @TempDir
+    Path journalDirectory;
+
+    private Integer productId;
+
+    private final List<HotStockBl> hotInstances = new ArrayList<>();
+
+    @BeforeEach
+    void createProduct() {
+        ProductDto product = new ProductDto("Hot stock benchmark", new BigDecimal("10.00"), STOCK);
+        product.setCost(new BigDecimal("5.00"));
+        product.setCategory("Benchmark");
+        product.setSku("HOT-" + System.nanoTime());
+        product.setStatus("ACTIVE");
+        productId = productStockBl.createProduct(product).getId();
+    }
+
+    @AfterEach
+    void deleteProduct() {
+        // Flushes and gives the product back to the database stock path
+        for (HotStockBl hotStockBl : hotInstances) {
+            ReflectionTestUtils.invokeMethod(hotStockBl, "shutdown");
+        }
+        productStockBl.deleteProduct(productId);
+    }
+
+    @Test
+    void databaseStockPathNeverOversells() throws Exception {
+        Result database = sell(quantity -> productStockBl.decreaseStock(productId, quantity));
+        log.info("Database row lock: {} threads, {} attempts for {} units, {} ops/s",
+                THREADS, ATTEMPTS, STOCK, String.format("%,.0f", database.opsPerSecond()));
+
+        assertEquals(STOCK, database.sold);
+        assertEquals(0, storedStock());
+    }
+
+    @Test
+    void hotStockNeverOversellsAndFlushesEverySale() throws Exception {
+        HotStockBl hotStockBl = startHotInstance();
+        Result hot = sell(quantity -> hotStockBl.decreaseStock(productId, quantity));
+        log.info("Hot stock: {} threads, {} attempts for {} units, {} ops/s",
+                THREADS, ATTEMPTS, STOCK, String.format("%,.0f", hot.opsPerSecond()));
+
+        assertEquals(STOCK, hot.sold, "Hot stock sold more or fewer units than available");
+        assertEquals(0, hotStockBl.getStockAvailability(productId).getAvailableQuantity());
+        hotStockBl.flush();
+        assertEquals(0, storedStock());
+    }
+
+    @Test
+    void unflushedJournalIsReplayedOnRestart() throws Exception {
+        HotStockBl crashed = startHotInstance();
+        for (int i = 0; i < 10; i++) {
+            crashed.decreaseStock(productId, 3);
+        }
+        hotInstances.remove(crashed);
+
+        // Crash: the instance dies without flushing; a new one starts on the same journal
+        HotStockBl restarted = startHotInstance();
+        assertEquals(STOCK - 30, storedStock());
+        assertEquals(STOCK - 30, restarted.getStockQuantity(productId));
+    }
+
+    private HotStockBl startHotInstance() throws Exception {
+        HotStockBl hotStockBl = new HotStockBl();
+        ReflectionTestUtils.setField(hotStockBl, "productRepository", productRepository);
+        ReflectionTestUtils.setField(hotStockBl, "transactionManager", transactionManager);
+        ReflectionTestUtils.setField(hotStockBl, "hotProductIds", List.of(productId));
+        ReflectionTestUtils.setField(hotStockBl, "instanceId", "hot-stock-benchmark");
+        ReflectionTestUtils.setField(hotStockBl, "journalDirectory", journalDirectory.toString());
+        hotStockBl.init();
+        hotInstances.add(hotStockBl);
+        return hotStockBl;
+    }
+
+    private int storedStock() {
+        return productRepository.findStockQuantityById(productId).orElseThrow();
+    }
+
+    private Result sell(IntConsumer decrease) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicLong remaining = new AtomicLong(ATTEMPTS);
+        List<Future<Integer>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            workers.add(executor.submit(() -> {
+                start.await();
+                int sold = 0;
+                while (remaining.getAndDecrement() > 0) {
+                    try {
+                        decrease.accept(1);
+                        sold++;
+                    } catch (IllegalStateException e) {
+                        // Sold out
+                    }
+                }
+                return sold;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        int sold = 0;
+        for (Future<Integer> worker : workers) {
+            sold += worker.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        return new Result(sold, elapsed);
+    }
+
+    private static String envOrDefault(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+
+    private static class Result {
+        final int sold;
+        final long elapsedNanos;
+
+        Result(int sold, long elapsedNanos) {
+            this.sold = sold;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        double opsPerSecond() {
+            return ATTEMPTS * 1_000_000_000.0 / elapsedNanos;
+        }
+    }
+}
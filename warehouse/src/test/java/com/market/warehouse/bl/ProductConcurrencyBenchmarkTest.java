@@ -0,0 +1,149 @@
+package com.market.warehouse.bl;
+
+import com.market.warehouse.dto.ProductDto;
+import com.market.warehouse.entity.Product;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Concurrent read-modify-write increments of one product's stock: the old blind
+ * overwrite, If-Match conditional writes re-read after a 412, and the atomic increase.
+ * Reports throughput and lost updates (increments acknowledged but missing from the
+ * final stock). Needs a warehouse database, so it only runs when
+ * WAREHOUSE_BENCHMARK_DB_URL is set, e.g. jdbc:mysql://localhost:13306/warehouse
+ */
+@SpringBootTest(properties = {"eureka.client.enabled=false", "spring.jpa.show-sql=false"})
+@EnabledIfEnvironmentVariable(named = "WAREHOUSE_BENCHMARK_DB_URL", matches = ".+")
+class ProductConcurrencyBenchmarkTest {
+
+    private static final int THREADS = 8;
+    private static final int INCREMENTS_PER_THREAD = 200;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("WAREHOUSE_BENCHMARK_DB_URL"));
+        registry.add("spring.datasource.username", () -> envOrDefault("WAREHOUSE_BENCHMARK_DB_USERNAME", "root"));
+        registry.add("spring.datasource.password", () -> envOrDefault("WAREHOUSE_BENCHMARK_DB_PASSWORD", "123456"));
+    }
+
+    @Autowired
+    private ProductStockBl productStockBl;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Integer productId;
+
+    @BeforeEach
+    void createProduct() {
+        ProductDto product = new ProductDto("Concurrency benchmark", new BigDecimal("10.00"), 0);
+        product.setCost(new BigDecimal("5.00"));
+        product.setCategory("Benchmark");
+        product.setSku("BENCH-" + System.nanoTime());
+        product.setStatus("ACTIVE");
+        productId = productStockBl.createProduct(product).getId();
+    }
+
+    @AfterEach
+    void deleteProduct() {
+        productStockBl.deleteProduct(productId);
+    }
+
+    @Test
+    void optimisticWritesLoseNoUpdates() throws Exception {
+        // Before: read the stock, write stock + 1 back without any check
+        Result blind = run(() -> {
+            Product product = productStockBl.getProductById(productId).orElseThrow();
+            jdbcTemplate.update("UPDATE product SET stock_quantity = ? WHERE id = ?", product.getStockQuantity() + 1, productId);
+        });
+
+        // If-Match: the write only applies to the version that was read, a 412 re-reads
+        AtomicInteger conflicts = new AtomicInteger();
+        Result conditional = run(() -> {
+            while (true) {
+                Product product = productStockBl.getProductById(productId).orElseThrow();
+                try {
+                    productStockBl.updateStock(productId, product.getStockQuantity() + 1, product.getVersion());
+                    return;
+                } catch (OptimisticLockingFailureException e) {
+                    conflicts.incrementAndGet();
+                }
+            }
+        });
+
+        Result atomic = run(() -> productStockBl.increaseStock(productId, 1));
+
+        System.out.printf("Concurrent increments of one product, %d threads x %d%n", THREADS, INCREMENTS_PER_THREAD);
+        System.out.printf("  blind overwrite:   %,6.0f ops/s, %d lost updates%n", blind.opsPerSecond(), blind.lostUpdates);
+        System.out.printf("  If-Match + re-read: %,6.0f ops/s, %d lost updates, %d conflicts retried%n",
+                conditional.opsPerSecond(), conditional.lostUpdates, conflicts.get());
+        System.out.printf("  atomic increase:   %,6.0f ops/s, %d lost updates%n", atomic.opsPerSecond(), atomic.lostUpdates);
+
+        assertEquals(0, conditional.lostUpdates);
+        assertEquals(0, atomic.lostUpdates);
+    }
+
+    private Result run(Runnable increment) throws Exception {
+        int before = productStockBl.getProductById(productId).orElseThrow().getStockQuantity();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            workers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < INCREMENTS_PER_THREAD; i++) {
+                    increment.run();
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+
+        int applied = productStockBl.getProductById(productId).orElseThrow().getStockQuantity() - before;
+        return new Result(THREADS * INCREMENTS_PER_THREAD - applied, elapsed);
+    }
+
+    private static String envOrDefault(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+
+    private static class Result {
+        final int lostUpdates;
+        final long elapsedNanos;
+
+        Result(int lostUpdates, long elapsedNanos) {
+            this.lostUpdates = lostUpdates;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        double opsPerSecond() {
+            return THREADS * INCREMENTS_PER_THREAD * 1_000_000_000.0 / elapsedNanos;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.market.warehouse.bl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures typeahead latency of the in-memory search index on a catalog of a million
+ * synthetic products. Builds a large index and is timing based, so it only runs when
+ * WAREHOUSE_BENCHMARK is set
+ */
+@EnabledIfEnvironmentVariable(named = "WAREHOUSE_BENCHMARK", matches = ".+")
+class ProductSearchBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchBenchmarkTest.class);
+
+    private static final int PRODUCTS = 1_000_000;
+    private static final int QUERIES = 20_000;
+
+    private static final String[] ADJECTIVES = {"wireless", "gaming", "compact", "ergonomic", "portable", "smart",
+            "premium", "mechanical", "ultra", "silent", "rugged", "slim", "pro", "mini", "classic", "digital"};
+    private static final String[] NOUNS = {"keyboard", "mouse", "laptop", "monitor", "headset", "charger", "cable",
+            "speaker", "camera", "router", "tablet", "printer", "microphone", "webcam", "adapter", "dock"};
+    private static final String[] BRANDS = {"Asus", "Logitech", "Dell", "Lenovo", "Samsung", "Sony", "Razer",
+            "Corsair", "Anker", "Philips", "Xiaomi", "Acer", "Canon", "Epson", "Kingston", "Belkin"};
+    private static final String[] CATEGORIES = {"Electronics", "Accessories", "Computers", "Audio", "Networking",
+            "Peripherals", "Office", "Gaming"};
+    private static final String[] TYPED = {"w", "wi", "wir", "wire", "ga", "gam", "lap", "lapt", "key", "keyb",
+            "mou", "asu", "logi", "del", "sam", "acc", "elec", "sku-0004", "sku-00123", "head", "wireless mo",
+            "gaming key", "asus lap", "razer mou", "pro dock", "silent key"};
+
+    @Test
+    void typeaheadOnMillionProductsIsSubMillisecond() {
+        ProductSearchIndex index = new ProductSearchIndex();
+        Random random = new Random(42);
+        long buildStart = System.nanoTime();
+        for (int id = 1; id <= PRODUCTS; id++) {
+            index.put(id,
+                    pick(random, ADJECTIVES) + " " + pick(random, NOUNS) + " " + (100 + random.nextInt(900)),
+                    String.format("SKU-%07d", id),
+                    pick(random, BRANDS),
+                    pick(random, CATEGORIES),
+                    pick(random, BRANDS) + " Distribution");
+        }
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+        for (int i = 0; i < QUERIES; i++) {
+            index.search(TYPED[i % TYPED.length], 0, 10);
+        }
+        long[] latencies = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            String query = TYPED[random.nextInt(TYPED.length)];
+            long start = System.nanoTime();
+            index.search(query, 0, 10);
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        long p50 = latencies[QUERIES / 2];
+        long p99 = latencies[QUERIES * 99 / 100];
+
+        log.info("Search index over {} products built in {} ms; typeahead (limit 10): p50 {} us, p99 {} us",
+                PRODUCTS, buildMillis, p50 / 1_000, p99 / 1_000);
+
+        assertTrue(p50 < 1_000_000, "Expected sub-millisecond median latency, got " + p50 / 1_000 + " us");
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,41 @@
+package com.market.warehouse.bl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks ranking and incremental updates of the in-memory search index on a small catalog
+ */
+class ProductSearchIndexTest {
+
+    @Test
+    void ranksByFieldAndFollowsUpdates() {
+        ProductSearchIndex index = new ProductSearchIndex();
+        index.put(1, "Gaming Keyboards", "KEY-001", "Razer", "Accessories", "Keystone Supply");
+        index.put(2, "Keyboard Cover", "COV-002", "Generic", "Accessories", "Acme");
+        index.put(3, "USB Hub", "KEY-003", "Anker", "Accessories", "Acme");
+        index.put(4, "Café Grinder", "CAF-004", "Bodum", "Kitchen", "Keyboard Imports");
+
+        // SKU matches outrank name matches, which outrank supplier matches
+        assertEquals(List.of(1, 3, 2, 4), ids(index.search("key", 0, 10)));
+        // A whole-term match outranks a prefix match in the same field
+        assertEquals(List.of(2, 1, 4), ids(index.search("keyboard", 0, 10)));
+        // Every term must match; accents are folded
+        assertEquals(List.of(1), ids(index.search("razer key", 0, 10)));
+        assertEquals(List.of(4), ids(index.search("cafe", 0, 10)));
+        assertEquals(List.of(3), ids(index.search("KEY-003", 0, 10)));
+        // Pages continue where the previous one stopped
+        assertEquals(List.of(3, 2), ids(index.search("key", 1, 2)));
+
+        index.put(3, "USB Hub", "HUB-003", "Anker", "Accessories", "Acme");
+        index.remove(2);
+        assertEquals(List.of(1, 4), ids(index.search("key", 0, 10)));
+    }
+
+    private static List<Integer> ids(List<ProductSearchIndex.Hit> hits) {
+        return hits.stream().map(hit -> hit.document.productId).toList();
+    }
+}
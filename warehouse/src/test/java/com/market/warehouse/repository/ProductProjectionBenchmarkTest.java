@@ -0,0 +1,107 @@
+package com.market.warehouse.repository;
+
+import com.market.warehouse.dto.ProductDto;
+import com.market.warehouse.entity.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Compares heap allocated per listed row by the old list path (load managed Product
+ * entities, then copy each into a ProductDto) and the JPQL constructor projection.
+ * Needs a warehouse database with products, so it only runs when
+ * WAREHOUSE_BENCHMARK_DB_URL is set, e.g. jdbc:mysql://localhost:13306/warehouse
+ */
+@SpringBootTest(properties = {"eureka.client.enabled=false", "spring.jpa.show-sql=false"})
+@EnabledIfEnvironmentVariable(named = "WAREHOUSE_BENCHMARK_DB_URL", matches = ".+")
+class ProductProjectionBenchmarkTest {
+
+    private static final int PAGE_SIZE = 1000;
+    private static final int WARMUP = 200;
+    private static final int ITERATIONS = 200;
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> System.getenv("WAREHOUSE_BENCHMARK_DB_URL"));
+        registry.add("spring.datasource.username", () -> envOrDefault("WAREHOUSE_BENCHMARK_DB_USERNAME", "root"));
+        registry.add("spring.datasource.password", () -> envOrDefault("WAREHOUSE_BENCHMARK_DB_PASSWORD", "123456"));
+    }
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Test
+    void projectionAllocatesLessPerRowThanEntities() {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        Supplier<List<ProductDto>> entities = () -> readOnly.execute(status -> {
+            List<Product> products = entityManager
+                    .createQuery("SELECT p FROM Product p WHERE p.id > 0 ORDER BY p.id", Product.class)
+                    .setMaxResults(PAGE_SIZE)
+                    .getResultList();
+            List<ProductDto> dtos = new ArrayList<>(products.size());
+            for (Product p : products) {
+                dtos.add(new ProductDto(p.getId(), p.getName(), p.getDescription(), p.getCategory(), p.getPrice(),
+                        p.getCost(), p.getSku(), p.getStockQuantity(), p.getMinStockLevel(), p.getMaxStockLevel(),
+                        p.getSupplier(), p.getBrand(), p.getWeight(), p.getDimensions(), p.getStatus(),
+                        p.getCreatedAt(), p.getUpdatedAt()));
+            }
+            return dtos;
+        });
+        Supplier<List<ProductDto>> projection = () -> readOnly.execute(status ->
+                productRepository.findProductDtosAfter(0, PageRequest.of(0, PAGE_SIZE)));
+
+        int rows = projection.get().size();
+        assumeTrue(rows > 0, "The benchmark database has no products");
+
+        double entityBytes = bytesPerRow(entities, rows);
+        double projectionBytes = bytesPerRow(projection, rows);
+
+        System.out.printf("Product listing, %d rows per page%n", rows);
+        System.out.printf("  managed entities + convertToDto: %,.0f bytes/row%n", entityBytes);
+        System.out.printf("  DTO projection:                  %,.0f bytes/row%n", projectionBytes);
+
+        assertTrue(projectionBytes < entityBytes,
+                "Expected the projection (" + projectionBytes + " B/row) to allocate less than entities (" + entityBytes + " B/row)");
+    }
+
+    private double bytesPerRow(Supplier<List<ProductDto>> query, int rows) {
+        for (int i = 0; i < WARMUP; i++) {
+            query.get();
+        }
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            query.get();
+        }
+        return (double) (threads.getCurrentThreadAllocatedBytes() - before) / ((long) ITERATIONS * rows);
+    }
+
+    private static String envOrDefault(String name, String defaultValue) {
+        String value = System.getenv(name);
+        return value != null ? value : defaultValue;
+    }
+}